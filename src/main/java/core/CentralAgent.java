@@ -1,8 +1,6 @@
 package core;
 
-import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import simudyne.core.abm.Action;
 import simudyne.core.abm.Agent;
@@ -20,13 +18,49 @@ import static core.Utils.sortedCopyBySender;
  */
 public class CentralAgent extends Agent<Globals> {
 
-  public List<Test> testedAgents = new ArrayList<>();
-  private final Map<Long, Double> agentIdToTestSelectionMultipliers = new LinkedHashMap<>();
+  // Test results by the step they are released, see releaseTestResults
+  private TimingWheel<Test> pendingTestResults;
+  // Test selection multipliers by agent id, kept up to date rather than copied for each draw
+  private final WeightedSampler testSelectionSampler = new WeightedSampler();
+  private final VaccineRegistry vaccineRegistry = new VaccineRegistry();
+  // Who is active and who is suppressed, so a change in nActiveAgents only messages who switches
+  private final SuppressionRegistry suppressionRegistry = new SuppressionRegistry();
 
   // Cases to monitor for when symptoms are reported. Elements
-  private final Set<Long> casesToMonitor = new HashSet<>();
-  private final SortedSet<Long> toInterviewThisStep = new TreeSet<>();
-  private final PriorityQueue<QuarantineInfo> quarantineUntilQueue = new PriorityQueue<>();
+  private final LongHashSet casesToMonitor = new LongHashSet();
+  // Interviewed in increasing id order, see toSortedArray
+  private final LongHashSet toInterviewThisStep = new LongHashSet();
+  // Agent ids by the step their quarantine ends, when they stop being monitored
+  private TimingWheel<Long> quarantineEnds;
+  private FastRandom fastRandom;
+
+  /** This agent's {@link FastRandom} stream, seeded from {@link #getPrng()} on first use. */
+  public FastRandom getFastRandom() {
+    if (fastRandom == null) {
+      fastRandom = FastRandom.from(getPrng());
+    }
+    return fastRandom;
+  }
+
+  private TimingWheel<Test> pendingTestResults() {
+    if (pendingTestResults == null) {
+      pendingTestResults = new TimingWheel<>(getGlobals().testDelayTStep + 1);
+    }
+    return pendingTestResults;
+  }
+
+  private TimingWheel<Long> quarantineEnds() {
+    if (quarantineEnds == null) {
+      quarantineEnds = new TimingWheel<>(
+          getGlobals().contactNotifiedNumberOfDaysToIsolate * getGlobals().tOneDay + 1);
+    }
+    return quarantineEnds;
+  }
+
+  /** Stops monitoring {@code agentId} once their quarantine ends on {@code quarantineUntil}. */
+  private void scheduleQuarantineEnd(long agentId, long quarantineUntil) {
+    quarantineEnds().schedule(Math.toIntExact(quarantineUntil), agentId);
+  }
 
   /**
    * Receives a {@link core.Messages.SymptomaticMsg} from {@link Person#reportSymptoms}, from which action may be taken
@@ -56,10 +90,7 @@ public class CentralAgent extends Agent<Globals> {
                         throw new IllegalStateException("Invalid contact tracing protocol.");
                       }
                     });
-            while (!ca.quarantineUntilQueue.isEmpty()
-                && ca.quarantineUntilQueue.peek().quarantineUntil() == ca.getGlobals().tStep) {
-              ca.casesToMonitor.remove(ca.quarantineUntilQueue.poll().agentId());
-            }
+            ca.quarantineEnds().advanceTo(ca.getGlobals().tStep, ca.casesToMonitor::remove);
           });
 
   @VisibleForTesting
@@ -81,7 +112,7 @@ public class CentralAgent extends Agent<Globals> {
                       ca.getGlobals()
                               .getAgentsToTest(
                                       ImmutableSet.of(),
-                                      ImmutableMap.copyOf(ca.agentIdToTestSelectionMultipliers),
+                                      ca.testSelectionSampler.asMap(),
                                       ca.getPrng(),
                                       testsAvailable);
               agentsToTest.forEach(
@@ -105,7 +136,7 @@ public class CentralAgent extends Agent<Globals> {
             long totalTests = msgs.size();
             for(Messages.InfectionStatusMsg msg : msgs) {
               Test test = ca.generateTest(msg);
-              ca.testedAgents.add(test);
+              ca.pendingTestResults().schedule(test.tStepReturn(), test);
               if(test.positive()) {
                 totalPositiveTests++;
               }
@@ -122,9 +153,8 @@ public class CentralAgent extends Agent<Globals> {
       Action.create(
           CentralAgent.class,
           ca -> {
-            ca.testedAgents.stream()
-                .filter(x -> x.tStepReturn() == ca.getGlobals().tStep)
-                .forEach(
+            ca.pendingTestResults().advanceTo(
+                ca.getGlobals().tStep,
                     result -> {
                       ca.getLongAccumulator("totTestsReturnedThisStep").add(1);
                       if (result.positive()) {
@@ -132,15 +162,14 @@ public class CentralAgent extends Agent<Globals> {
                         ca.toInterviewThisStep.add(result.testedPersonID());
                         ca.send(Messages.QuarantineOrderMsg.class).to(result.testedPersonID());
                         ca.casesToMonitor.remove(result.testedPersonID());
-                        ca.quarantineUntilQueue.add(QuarantineInfo.create(result.testedPersonID(),
-                            ca.getGlobals().tStep + ca.getGlobals().contactNotifiedNumberOfDaysToIsolate * ca.getGlobals().tOneDay));
+                        ca.scheduleQuarantineEnd(result.testedPersonID(),
+                            ca.getGlobals().tStep + ca.getGlobals().contactNotifiedNumberOfDaysToIsolate * ca.getGlobals().tOneDay);
                       } else if (ca.getGlobals().contactTracingProtocol
                             == Globals.ContactTracingProtocols.TEST_ONLY.ordinal()) {
                         ca.casesToMonitor.remove(result.testedPersonID());
                         ca.send(Messages.QuarantineReleaseMsg.class).to(result.testedPersonID());
                       }
                     });
-            ca.testedAgents.removeIf(x -> x.tStepReturn() == ca.getGlobals().tStep);
           });
 
   /**
@@ -149,9 +178,9 @@ public class CentralAgent extends Agent<Globals> {
    */
   public static Action<CentralAgent> startInterviews =
       Action.create(CentralAgent.class, ca -> {
-        ca.toInterviewThisStep.forEach(id -> {
+        for (long id : ca.toInterviewThisStep.toSortedArray()) {
           ca.send(Messages.StartInterviewMsg.class).to(id);
-        });
+        }
         ca.toInterviewThisStep.clear();
       });
 
@@ -167,41 +196,131 @@ public class CentralAgent extends Agent<Globals> {
   public static Action<CentralAgent> processInterviewContacts =
       Action.create(CentralAgent.class, ca -> {
         sortedCopyBySender(ca.getMessagesOfType(Messages.InterviewResultsMsg.class)).forEach(
-            msg -> {
-              Set<Long> alreadyQuarantineOrdered = new HashSet<>();
-              Set<Long> alreadyTested = new HashSet<>();
-              long testsAvailable = ca.getGlobals().testsPerDay - ca.getLongAccumulator("numTestsThisStep").value();
-
-              for (int i = msg.contacts.size() - 1; i >= 0; i--) {
-                long exposureTime = ca.getGlobals().tStep - (msg.contacts.size() - (i + 1));
-                for (long contact : msg.contacts.get(i)) {
-                  if (contact == msg.getSender() || ca.casesToMonitor.contains(contact)) {
-                    continue;
-                  }
-                  ca.casesToMonitor.add(contact);
-                  if (!alreadyQuarantineOrdered.contains(contact)) {
-                    ca.send(Messages.QuarantineOrderMsg.class,
-                        quarantineOrderMsg -> quarantineOrderMsg.exposureTime = exposureTime)
-                        .to(contact);
-                    alreadyQuarantineOrdered.add(contact);
-                    ca.quarantineUntilQueue.add(QuarantineInfo.create(contact,
-                        exposureTime + ca.getGlobals().contactNotifiedNumberOfDaysToIsolate * ca.getGlobals().tOneDay));
-                  }
-                  if ((ca.getGlobals().contactTracingProtocol == Globals.ContactTracingProtocols.BEST_PRACTICE.ordinal()
-                      || ca.getGlobals().contactTracingProtocol == Globals.ContactTracingProtocols.TEST_ONLY.ordinal())
-                      && ca.getGlobals().testingAvailableForTracing) {
-                    if (!alreadyTested.contains(contact) && testsAvailable > 0) {
-                      ca.send(Messages.TestAdministeredMsg.class).to(contact);
-                      alreadyTested.add(contact);
-                      testsAvailable--;
-                    }
-                  }
+            msg -> ca.processContacts(msg.getSender(), msg.contacts));
+      });
+
+  /**
+   * Only used when {@link Globals#useContactLog} is set, in place of {@link #startInterviews}
+   * through {@link #processInterviewContacts}.
+   *
+   * <p>Looks up the contacts of the people to interview this step in the {@link ContactLog}, and
+   * processes the ones they recall as {@link #processInterviewContacts} does. With {@link
+   * Globals#contactTracingNumberOfHops} above one, the contacts newly traced are interviewed in
+   * turn by the {@link TracingEngine}, within the same test budget as their case.
+   *
+   * <p>This method may send {@link core.Messages.QuarantineOrderMsg}, {@link core.Messages.TestAdministeredMsg}
+   * to {@link Person#receiveQuarantineStartOrStopAndAdministerTest}.
+   */
+  public static Action<CentralAgent> traceContactsFromLog =
+      Action.create(CentralAgent.class, ca -> {
+        if (ca.toInterviewThisStep.isEmpty()) {
+          return;
+        }
+        ContactLog contactLog = ca.getGlobals().getContactLog();
+        int firstTracedStep = PlaceAgent.firstTracedStep(ca.getGlobals());
+        contactLog.evictBefore(firstTracedStep);
+        TracingEngine tracingEngine = new TracingEngine(contactLog,
+            ca.getGlobals().contactTracingNumberOfHops,
+            ca.getGlobals().contactTracingMaxContactsPerCase);
+        Random r = new Random(ca.getFastRandom().nextLong());
+        for (long caseId : ca.toInterviewThisStep.toSortedArray()) {
+          long[] testsAvailable = {
+              ca.getGlobals().testsPerDay - ca.getLongAccumulator("numTestsThisStep").value()};
+          tracingEngine.trace(caseId, firstTracedStep, ca.getGlobals().tStep,
+              ca.getGlobals().agentInterviewRecall, r, (contact, exposureStep, hop) -> {
+                if (ca.casesToMonitor.contains(contact)) {
+                  return false;
                 }
-              }
+                testsAvailable[0] = ca.notifyContact(contact, exposureStep, testsAvailable[0]);
+                return true;
+              });
+        }
+        ca.toInterviewThisStep.clear();
+      });
+
+  /**
+   * Only used when {@link Globals#useExposureIndex} is set, in place of {@link #startInterviews}
+   * through {@link #processInterviewContacts}.
+   *
+   * <p>Looks up the contacts of the people to interview this step in the {@link ExposureIndex}. Each
+   * step shared with a contact is remembered with probability {@link Globals#agentInterviewRecall},
+   * so a contact is recalled unless every shared step is forgotten. Recalled contacts are processed
+   * as {@link #processInterviewContacts} does, exposed at the last step they were met.
+   *
+   * <p>This method may send {@link core.Messages.QuarantineOrderMsg}, {@link core.Messages.TestAdministeredMsg}
+   * to {@link Person#receiveQuarantineStartOrStopAndAdministerTest}.
+   */
+  public static Action<CentralAgent> traceContactsFromExposureIndex =
+      Action.create(CentralAgent.class, ca -> {
+        if (ca.toInterviewThisStep.isEmpty()) {
+          return;
+        }
+        ExposureIndex exposureIndex = ca.getGlobals().getExposureIndex();
+        int firstTracedStep = PlaceAgent.firstTracedStep(ca.getGlobals());
+        exposureIndex.evictBefore(firstTracedStep);
+        double forgetShare = 1 - ca.getGlobals().agentInterviewRecall;
+        Random r = new Random(ca.getFastRandom().nextLong());
+        for (long caseId : ca.toInterviewThisStep.toSortedArray()) {
+          long testsAvailable =
+              ca.getGlobals().testsPerDay - ca.getLongAccumulator("numTestsThisStep").value();
+          ExposureIndex.Exposures exposures = exposureIndex.exposuresOf(caseId, firstTracedStep);
+          for (int i = 0; i < exposures.size(); i++) {
+            if (r.nextDouble() < Math.pow(forgetShare, exposures.sharedSteps(i))) {
+              continue;
             }
-        );
+            testsAvailable = ca.notifyContact(
+                exposures.contact(i), exposures.lastSharedStep(i), testsAvailable);
+          }
+        }
+        ca.toInterviewThisStep.clear();
       });
 
+  /**
+   * Orders {@code caseId}'s contacts to quarantine and tests them, according to our contact tracing
+   * methods. {@code contacts} holds the people met on each step, oldest first and ending on this
+   * step.
+   *
+   * <p>A contact is ordered to quarantine and tested at most once per step, across all cases: it
+   * joins {@link #casesToMonitor} when first seen, and contacts already monitored are skipped.
+   */
+  private void processContacts(long caseId, List<ContactSet> contacts) {
+    long testsAvailable = getGlobals().testsPerDay - getLongAccumulator("numTestsThisStep").value();
+
+    for (int i = contacts.size() - 1; i >= 0; i--) {
+      long exposureTime = getGlobals().tStep - (contacts.size() - (i + 1));
+      PrimitiveIterator.OfLong contactsAtStep = contacts.get(i).iterator();
+      while (contactsAtStep.hasNext()) {
+        long contact = contactsAtStep.nextLong();
+        if (contact != caseId) {
+          testsAvailable = notifyContact(contact, exposureTime, testsAvailable);
+        }
+      }
+    }
+  }
+
+  /**
+   * Orders {@code contact}, exposed on step {@code exposureTime}, to quarantine and tests them if
+   * the protocol calls for it, unless they are monitored already. Returns how many of {@code
+   * testsAvailable} are left.
+   */
+  private long notifyContact(long contact, long exposureTime, long testsAvailable) {
+    if (!casesToMonitor.add(contact)) {
+      return testsAvailable;
+    }
+    send(Messages.QuarantineOrderMsg.class,
+        quarantineOrderMsg -> quarantineOrderMsg.exposureTime = exposureTime)
+        .to(contact);
+    scheduleQuarantineEnd(contact,
+        exposureTime + getGlobals().contactNotifiedNumberOfDaysToIsolate * getGlobals().tOneDay);
+    if ((getGlobals().contactTracingProtocol == Globals.ContactTracingProtocols.BEST_PRACTICE.ordinal()
+        || getGlobals().contactTracingProtocol == Globals.ContactTracingProtocols.TEST_ONLY.ordinal())
+        && getGlobals().testingAvailableForTracing && testsAvailable > 0) {
+      send(Messages.TestAdministeredMsg.class).to(contact);
+      return testsAvailable - 1;
+    }
+    return testsAvailable;
+  }
+
   public static Action<CentralAgent> agentsDied =
       Action.create(
           CentralAgent.class,
@@ -209,7 +328,8 @@ public class CentralAgent extends Agent<Globals> {
             sortedCopyBySender(ca.getMessagesOfType(Messages.RIPmsg.class))
                 .forEach(
                     msg -> {
-                      ca.agentIdToTestSelectionMultipliers.remove(msg.getSender());
+                      ca.testSelectionSampler.remove(msg.getSender());
+                      ca.vaccineRegistry.remove(msg.getSender());
                     });
           });
 
@@ -262,7 +382,7 @@ public class CentralAgent extends Agent<Globals> {
     boolean personInfected = infectionMsg.infectedStatus == Person.InfectionStatus.INFECTED;
     int tReturnResults = getGlobals().tStep + getGlobals().testDelayTStep;
 
-    double testResult = getPrng().uniform(0.0, 1.0).sample();
+    double testResult = getFastRandom().nextDouble();
     if(testResult > infectionMsg.testAccuracy) {
       personInfected = !personInfected;
     }
@@ -276,6 +396,9 @@ public class CentralAgent extends Agent<Globals> {
       Action.create(
           CentralAgent.class,
           ca -> {
+            if (ca.getGlobals().usePersonStateStore) {
+              ca.countPersonStates();
+            }
             ca.calcTestPositivity();
             ca.getDoubleAccumulator("testPositivity").add(ca.getGlobals().testPositivity);
             ca.updatePerBuildingInfectionRatios();
@@ -298,6 +421,29 @@ public class CentralAgent extends Agent<Globals> {
                 .write(infectionOutput);
           });
 
+  /**
+   * Counts everyone in {@link Globals#getPersonStateStore()}, in place of {@link
+   * Person#countInfected} and each person's {@link Person#updateAccumulators()}.
+   */
+  private void countPersonStates() {
+    PersonStateStore.Counts counts = getGlobals().getPersonStateStore().count(getGlobals().tStep);
+    getLongAccumulator("totSusceptible").add(counts.numSusceptible);
+    getLongAccumulator("totQuarantineSusceptible").add(counts.numQuarantineSusceptible);
+    getLongAccumulator("totInfected").add(counts.numInfected);
+    getLongAccumulator("totQuarantineInfected").add(counts.numQuarantineInfected);
+    getLongAccumulator("totDead").add(counts.numDead);
+    getLongAccumulator("totRecovered").add(counts.numRecovered);
+    getLongAccumulator("numInfectionsThisStep").add(counts.numInfectionsThisStep);
+    getLongAccumulator("currentInfected").add(counts.currentInfected);
+    getLongAccumulator("currentInfectious").add(counts.currentInfectious);
+    getGlobals().numSusceptible += counts.numSusceptible;
+    getGlobals().numQuarantineSusceptible += counts.numQuarantineSusceptible;
+    getGlobals().numInfected += counts.numInfected;
+    getGlobals().numQuarantineInfected += counts.numQuarantineInfected;
+    getGlobals().numDead += counts.numDead;
+    getGlobals().numRecovered += counts.numRecovered;
+  }
+
   public void calcTestPositivity() {
     if (getGlobals().totalTestsAdministered == 0) {
       getGlobals().testPositivity = 0;
@@ -372,13 +518,20 @@ public class CentralAgent extends Agent<Globals> {
                   "Place and schedule initialization can only be done at step 0.");
             }
 
+            ScheduleTemplates templates = ca.getGlobals().getScheduleTemplates();
             ca.getGlobals()
                 .createPlacesAndPersonDailySchedules()
                 .forEach(
                     (personId, schedule) -> {
+                      // The message carries the template itself, so its steps are shared
+                      // within a JVM without every worker needing the registry
+                      Person.DailySchedule interned = Person.DailySchedule.create(
+                          templates.intern(schedule.template()),
+                          schedule.isolationPlaces(),
+                          schedule.secondaryInitialization());
                       ca.send(
                           Messages.ScheduleMessage.class,
-                          scheduleMessage -> scheduleMessage.schedule = schedule)
+                          scheduleMessage -> scheduleMessage.schedule = interned)
                           .to(personId);
                     });
 
@@ -393,6 +546,21 @@ public class CentralAgent extends Agent<Globals> {
             ca.getGlobals().uninitializedPlaceInfos = null;
           });
 
+  /**
+   * Receives {@link Messages.VaccineEligibilityMsg} from {@link Person#registerForVaccine}, and adds
+   * the senders to the people {@link #distributeVaccines} picks from.
+   */
+  public static Action<CentralAgent> registerVaccineEligibility =
+      Action.create(
+          CentralAgent.class,
+          ca -> {
+            sortedCopyBySender(ca.getMessagesOfType(Messages.VaccineEligibilityMsg.class))
+                .forEach(
+                    msg ->
+                        ca.vaccineRegistry.register(
+                            msg.getSender(), msg.priorityTier, msg.isSuppressed));
+          });
+
   public static Action<CentralAgent> receiveTestSelectionMultipliers =
       Action.create(
           CentralAgent.class,
@@ -401,7 +569,7 @@ public class CentralAgent extends Agent<Globals> {
                 ca.getMessagesOfType(Messages.TestSelectionMultiplierMessage.class))
                 .forEach(
                     msg ->
-                        ca.agentIdToTestSelectionMultipliers.put(msg.getSender(), msg.getBody()));
+                        ca.testSelectionSampler.put(msg.getSender(), msg.getBody()));
           });
 
   /**
@@ -430,16 +598,24 @@ public class CentralAgent extends Agent<Globals> {
       );
 
   /**
-   * Accepts {@link Messages.SupressionStatusMessage} from {@link Person} agents from action
-   * {@link Person#reportSuppression}. Compares these messages to {@link Globals#nActiveAgents},
-   * and reassigns some agents (randomly selected) in to align with the new number of active agents.
+   * Receives {@link Messages.SupressionStatusMessage} from {@link Person#reportSuppression}, and
+   * records who is suppressed, so that {@link #reassignSuppression} does not need every agent to
+   * report again.
+   */
+  public static Action<CentralAgent> registerSuppressionStatus =
+      Action.create(CentralAgent.class, CentralAgent::registerSuppressionReports);
+
+  /**
+   * Compares the number of active agents recorded through {@link #registerSuppressionStatus} to
+   * {@link Globals#nActiveAgents}, and reassigns some agents (randomly selected) to align with the
+   * new number of active agents. Only the reassigned agents are sent a {@link
+   * Messages.SupressionStatusMessage}. Any reports received are recorded first.
    */
   public static Action<CentralAgent> reassignSuppression =
       new Action<>(CentralAgent.class,
             ca -> {
-              List<Messages.SupressionStatusMessage> suppressionStatusList =
-                  ca.getMessagesOfType(Messages.SupressionStatusMessage.class);
-              long numActive = suppressionStatusList.stream().filter(m -> !m.isSuppressed).count();
+              ca.registerSuppressionReports();
+              long numActive = ca.suppressionRegistry.numActive();
               long numToBeActive = ca.getGlobals().nActiveAgents;
 
               if (numActive == numToBeActive) {
@@ -447,45 +623,27 @@ public class CentralAgent extends Agent<Globals> {
                 return;
               }
 
-              // Need to convert some suppressed to active
-              if (numActive < numToBeActive) {
-                long numSuppressedToTurn = numToBeActive - numActive;
-                ArrayList<Messages.SupressionStatusMessage> suppressed =
-                    suppressionStatusList.stream().filter(m -> m.isSuppressed).collect(Collectors.toCollection(ArrayList::new));
-                List<Messages.SupressionStatusMessage> agentsToTurn = suppressed;
-                if (numSuppressedToTurn < suppressed.size()) {
-                  Random r = new Random((long)(ca.getPrng().uniform(0, 1).sample() * Long.MAX_VALUE - 1));
-                  Collections.shuffle(suppressed, r);
-                  agentsToTurn = suppressed.subList(0, (int) numSuppressedToTurn);
-                }
-                agentsToTurn.forEach(m -> {
-                  ca.send(Messages.SupressionStatusMessage.class, sup -> sup.isSuppressed = false).to(m.getSender());
-                });
-              }
-              // Need to convert some active to suppressed
-              else if (numActive > numToBeActive){
-                long numActiveToTurn = numActive - numToBeActive;
-                ArrayList<Messages.SupressionStatusMessage> active =
-                    suppressionStatusList.stream().filter(m -> !m.isSuppressed).collect(Collectors.toCollection(ArrayList::new));
-                List<Messages.SupressionStatusMessage> agentsToTurn = active;
-                if (numActiveToTurn < active.size()) {
-                  Random r = new Random((long)(ca.getPrng().uniform(0, 1).sample() * Long.MAX_VALUE - 1));
-                  Collections.shuffle(active, r);
-                  agentsToTurn = active.subList(0, (int) numActiveToTurn);
-                }
-                agentsToTurn.forEach(m -> {
-                  ca.send(Messages.SupressionStatusMessage.class, sup -> sup.isSuppressed = true).to(m.getSender());
-                });
+              // Convert some suppressed to active if there are too few active, or the reverse
+              boolean toActive = numActive < numToBeActive;
+              Random r = new Random(ca.getFastRandom().nextLong());
+              long[] agentsToTurn =
+                  ca.suppressionRegistry.switchRandomly(Math.abs(numToBeActive - numActive), toActive, r);
+              for (long agentId : agentsToTurn) {
+                ca.vaccineRegistry.setSuppressed(agentId, !toActive);
+                ca.send(Messages.SupressionStatusMessage.class, sup -> sup.isSuppressed = !toActive).to(agentId);
               }
             }
           );
 
+  private void registerSuppressionReports() {
+    sortedCopyBySender(getMessagesOfType(Messages.SupressionStatusMessage.class))
+        .forEach(msg -> suppressionRegistry.set(msg.getSender(), msg.isSuppressed));
+  }
+
   /**
-   * Receives {@link Messages.ReportForVaccineMsg} from {@link Person} and returns
-   * {@link Messages.VaccineAdministeredMsg} to the agents receiving vaccines.
-   *
-   * Currently gives vaccines randomly to all reporting agents, but we could
-   * add vaccine priority logic here.
+   * Picks {@link Globals#numToVaccinate} agents from those registered through {@link
+   * #registerVaccineEligibility}, by {@link Person#getVaccinePriorityTier} and then at random, and
+   * sends each of them a {@link Messages.VaccineAdministeredMsg}. Nothing is sent to anyone else.
    */
   public static Action<CentralAgent> distributeVaccines =
           new Action<>(CentralAgent.class,
@@ -493,35 +651,13 @@ public class CentralAgent extends Agent<Globals> {
                     if(ca.getGlobals().numToVaccinate == 0) {
                       return;
                     }
-                    if(!ca.hasMessageOfType(Messages.ReportForVaccineMsg.class)) {
+                    if(ca.vaccineRegistry.numEligible() == 0) {
                       return;
                     }
-                    ArrayList<Messages.ReportForVaccineMsg> agents = new ArrayList<>(ca.getMessagesOfType(Messages.ReportForVaccineMsg.class));
-                    Random r = new Random((long)(ca.getPrng().uniform(0, 1).sample() * Long.MAX_VALUE - 1));
-                    Collections.shuffle(agents, r);
-                    agents.subList(0,ca.getGlobals().numToVaccinate).forEach(msg -> {
-                      ca.send(Messages.VaccineAdministeredMsg.class).to(msg.getSender());
-                    });
+                    Random r = new Random(ca.getFastRandom().nextLong());
+                    for (long agentId : ca.vaccineRegistry.select(ca.getGlobals().numToVaccinate, r)) {
+                      ca.send(Messages.VaccineAdministeredMsg.class).to(agentId);
+                    }
           }
           );
-
-  @AutoValue
-  public static abstract class QuarantineInfo implements Comparable<QuarantineInfo> {
-    public abstract long agentId();
-
-    public abstract long quarantineUntil();
-
-    public static QuarantineInfo create(long agentId, long quarantineUntil) {
-      return new AutoValue_CentralAgent_QuarantineInfo(agentId, quarantineUntil);
-    }
-
-    @Override
-    public int compareTo(QuarantineInfo o) {
-      long quarantineInfo = this.quarantineUntil() - o.quarantineUntil();
-      if (quarantineInfo != 0) {
-        return quarantineInfo > 0 ? 1 : -1;
-      }
-      return this.agentId() - o.agentId() > 0 ? 1 : -1;
-    }
-  }
 }
@@ -0,0 +1,475 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free counterpart of {@link PlaceAgent#getWhoToInfect}.
+ *
+ * <p>Occupants are read into reusable primitive columns, and transmissions are written into a
+ * reusable output buffer, so a {@link PlaceAgent} holding one kernel does not allocate per step
+ * once the buffers have grown to the size of its largest crowd. Random draws are made in exactly
+ * the same order as {@link PlaceAgent#getWhoToInfect}, so under the same seed both produce the same
+ * transmissions.
+ *
+ * <p>Usage is {@link #clear()}, one {@link #add} per received {@link Messages.IAmHereMsg}, then
+ * {@link #run}, after which the transmission accessors are valid until the next {@link #clear()}.
+ * How contacts are made is up to the {@link ContactModel} passed to {@link #run}, which works on
+ * the occupant rows through the accessors and record methods here.
+ */
+public final class ContactKernel {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final Person.MaskType[] MASK_TYPES = Person.MaskType.values();
+  private static final byte SUSCEPTIBLE = (byte) Person.InfectionStatus.SUSCEPTIBLE.ordinal();
+  private static final byte INFECTED = (byte) Person.InfectionStatus.INFECTED.ordinal();
+  /** Returned by {@link #indexOf} for an absent person. */
+  public static final int NO_OCCUPANT = -1;
+
+  private int size;
+  private int numDistinct;
+  private int numStartedInfected;
+
+  // Occupants in arrival order
+  private long[] rawIds;
+  private Person.PersonTransmissibilityInfo[] rawInfos;
+  private int[] order;
+  private int[] scratch;
+
+  // Occupants sorted by id. Duplicate ids form a contiguous run [runStart, runEnd).
+  private long[] ids;
+  private byte[] status;
+  private boolean[] infectious;
+  private byte[] mask;
+  private double[] physicalDist;
+  private int[] contactRate;
+  private double[] inImmunity;
+  private double[] outImmunity;
+  private Person.PersonTransmissibilityInfo[] infos;
+  private int[] runStart;
+  private int[] runEnd;
+
+  // Contact events keyed by the first index of the keyed occupant's run. A later event for the same
+  // occupant overwrites an earlier one, as the HashMap in PlaceAgent#getWhoToInfect does.
+  private boolean[] hasEvent;
+  private long[] eventInfected;
+  private int[] eventInfectedBy;
+  private boolean[] eventTransmitted;
+  private int[] eventInfectedInfo;
+  private int[] eventInfectedByInfo;
+
+  // Aggregate-hazard weight of each infectious occupant, see infectByAggregateHazard
+  private double[] hazardWeight;
+
+  // Contacts drawn for the occupant currently being processed
+  private int[] sampled = new int[INITIAL_CAPACITY];
+
+  // Output buffer: event slots that resulted in transmission, sorted by infected id
+  private int numTransmissions;
+  private int[] transmissions;
+
+  public ContactKernel() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  public void clear() {
+    Arrays.fill(rawInfos, 0, size, null);
+    Arrays.fill(infos, 0, size, null);
+    size = 0;
+    numDistinct = 0;
+    numStartedInfected = 0;
+    numTransmissions = 0;
+  }
+
+  public void add(long personId, Person.PersonTransmissibilityInfo info) {
+    if (size == rawIds.length) {
+      grow(size * 2);
+    }
+    rawIds[size] = personId;
+    rawInfos[size] = info;
+    size++;
+  }
+
+  /**
+   * Generates contacts and infections with the default {@link ContactModel} for the place's network
+   * type, using the same draws as {@link PlaceAgent#getWhoToInfect}.
+   */
+  public void run(PlaceInfo place, Globals globals, FastRandom random) {
+    run(ContactModel.forNetworkType(place.networkType()), place, globals, random);
+  }
+
+  /** Generates contacts and infections among the added occupants with the given model. */
+  public void run(ContactModel model, PlaceInfo place, Globals globals, FastRandom random) {
+    sortOccupants();
+    numTransmissions = 0;
+    Arrays.fill(hasEvent, 0, size, false);
+
+    if (size <= 1) {
+      return;
+    }
+
+    double baseInfectionRate = globals.getInfectionRate(place.placeType()) / globals.tOneDay;
+    model.generateContacts(this, place, baseInfectionRate, globals, random);
+
+    collectTransmissions();
+  }
+
+  /**
+   * Number of occupant rows. A person present through more than one place has one row per place,
+   * and these rows are adjacent; use {@link #nextDistinct} to visit each person once.
+   */
+  public int size() {
+    return size;
+  }
+
+  /** Index of the first row after the rows of the person at {@code occupant}. */
+  public int nextDistinct(int occupant) {
+    return runEnd[occupant];
+  }
+
+  /** Index of the first row of {@code personId}, or {@link #NO_OCCUPANT} if they are absent. */
+  public int indexOf(long personId) {
+    for (int i = 0; i < size; i++) {
+      if (ids[i] == personId) {
+        return i;
+      }
+    }
+    return NO_OCCUPANT;
+  }
+
+  public long id(int occupant) {
+    return ids[occupant];
+  }
+
+  public boolean isInfectious(int occupant) {
+    return infectious[occupant];
+  }
+
+  public boolean isSusceptible(int occupant) {
+    return status[occupant] == SUSCEPTIBLE;
+  }
+
+  public int contactRate(int occupant) {
+    return contactRate[occupant];
+  }
+
+  /** Number of distinct people present, valid after {@link #run}. */
+  public int numDistinctOccupants() {
+    return numDistinct;
+  }
+
+  /** Number of received messages whose sender was {@link Person.InfectionStatus#INFECTED}. */
+  public int numStartedInfected() {
+    return numStartedInfected;
+  }
+
+  /** Sorted, distinct ids of the people present, valid after {@link #run}. */
+  public ImmutableList<Long> distinctOccupants() {
+    ImmutableList.Builder<Long> builder = ImmutableList.builder();
+    for (int i = 0; i < size; i = runEnd[i]) {
+      builder.add(ids[i]);
+    }
+    return builder.build();
+  }
+
+  public int numTransmissions() {
+    return numTransmissions;
+  }
+
+  public long transmissionInfected(int transmission) {
+    return eventInfected[transmissions[transmission]];
+  }
+
+  public boolean transmissionHasInfectedBy(int transmission) {
+    return eventInfectedBy[transmissions[transmission]] != NO_OCCUPANT;
+  }
+
+  public long transmissionInfectedBy(int transmission) {
+    return ids[eventInfectedBy[transmissions[transmission]]];
+  }
+
+  public Person.PersonTransmissibilityInfo transmissionInfectedInfo(int transmission) {
+    return infos[eventInfectedInfo[transmissions[transmission]]];
+  }
+
+  public Person.PersonTransmissibilityInfo transmissionInfectedByInfo(int transmission) {
+    int occupant = eventInfectedByInfo[transmissions[transmission]];
+    return occupant == NO_OCCUPANT
+        ? Person.PersonTransmissibilityInfo.dummyInfected()
+        : infos[occupant];
+  }
+
+  /**
+   * Draws {@code num} contacts, with replacement, for the occupant at {@code except} from everyone
+   * but that person. Returns the number of contacts drawn, which are read with {@link
+   * #sampledContact} until the next call.
+   */
+  public int sampleContactsExcept(int except, int num, FastRandom random) {
+    sampled = ContactSampler.ensureCapacity(sampled, num);
+    int excludedStart = runStart[except];
+    return ContactSampler.sampleExcept(
+        size, excludedStart, runEnd[except] - excludedStart, num, random, sampled);
+  }
+
+  public int sampledContact(int contact) {
+    return sampled[contact];
+  }
+
+  /**
+   * Records that {@code infectedBy} had contact with {@code infectee}. A later contact with the same
+   * infectee replaces this one.
+   */
+  public void recordContact(int infectee, int infectedBy, boolean transmitted) {
+    putEvent(infectee, ids[infectee], infectedBy, transmitted, infectee, infectedBy);
+  }
+
+  /** Records an exposure of {@code occupant} that has no particular infector. */
+  public void recordExposure(int occupant, boolean transmitted) {
+    putEvent(occupant, ids[occupant], NO_OCCUPANT, transmitted, occupant, NO_OCCUPANT);
+  }
+
+  /**
+   * Whether FULLY_CONNECTED style contacts at this place should use {@link
+   * #infectByAggregateHazard}, per {@link Globals#aggregateHazardNetworkTypes} and {@link
+   * Globals#aggregateHazardMinOccupants}.
+   */
+  public boolean useAggregateHazard(PlaceInfo place, Globals globals) {
+    return globals.aggregateHazardNetworkTypes.contains(place.networkType())
+        || numDistinct >= globals.aggregateHazardMinOccupants;
+  }
+
+  /**
+   * Replaces per-contact sampling in FULLY_CONNECTED style places with one pass over the
+   * infectious pool and one over the susceptibles.
+   *
+   * <p>In the pairwise process each infectious occupant i draws contactRate contacts, with
+   * replacement, from the N - 1 other occupants, and a later contact with an occupant overwrites an
+   * earlier one. The chance that i makes the last contact with a given susceptible j is therefore
+   * w_i = (1 - miss_i) * prod_{k > i} miss_k, where miss_i = (1 - 1 / (N - 1))^contactRate_i, and
+   * that contact infects j with probability (1 - d_i * d_j) * out_i * in_j, using the expected mask
+   * efficiencies. Summing over i factors into two pool totals, so each susceptible's infection
+   * probability takes O(1) to compute and matches the pairwise process in expectation.
+   */
+  public void infectByAggregateHazard(double baseInfectionRate, FastRandom random) {
+    int numOthers = numDistinct - 1;
+    if (numOthers <= 0) {
+      return;
+    }
+    double missPerContact = numOthers == 1 ? 0 : 1 - 1.0 / numOthers;
+
+    double laterMiss = 1;
+    double pressure = 0;
+    double distancedPressure = 0;
+    for (int i = size - 1; i >= 0; i--) {
+      if (!infectious[i]) {
+        hazardWeight[i] = 0;
+        continue;
+      }
+      double miss = Math.pow(missPerContact, contactRate[i]);
+      hazardWeight[i] =
+          (1 - miss) * laterMiss * DefaultModulesImpl.getExpectedOutTransmissionLikelihood(
+              baseInfectionRate, MASK_TYPES[mask[i]], outImmunity[i]);
+      laterMiss *= miss;
+      pressure += hazardWeight[i];
+      distancedPressure += hazardWeight[i] * physicalDist[i];
+    }
+    if (pressure == 0) {
+      return;
+    }
+
+    for (int j = 0; j < size; j = runEnd[j]) {
+      if (status[j] != SUSCEPTIBLE) {
+        continue;
+      }
+      double pInfect =
+          DefaultModulesImpl.getExpectedInTransmissionLikelihood(MASK_TYPES[mask[j]], inImmunity[j])
+              * (pressure - physicalDist[j] * distancedPressure);
+      if (random.nextDouble() < pInfect) {
+        int infectedBy = drawInfector(j, random);
+        recordContact(j, infectedBy, true);
+      }
+    }
+  }
+
+  /** Picks who infected {@code infectee}, in proportion to each infector's share of its hazard. */
+  private int drawInfector(int infectee, FastRandom random) {
+    double total = 0;
+    for (int i = 0; i < size; i++) {
+      total += hazardWeight[i] * (1 - physicalDist[i] * physicalDist[infectee]);
+    }
+    double selection = random.nextDouble(0, total);
+    double cumulative = 0;
+    int infectedBy = NO_OCCUPANT;
+    for (int i = 0; i < size; i++) {
+      double share = hazardWeight[i] * (1 - physicalDist[i] * physicalDist[infectee]);
+      if (share <= 0) {
+        continue;
+      }
+      infectedBy = i;
+      cumulative += share;
+      if (selection < cumulative) {
+        break;
+      }
+    }
+    return infectedBy;
+  }
+
+  /** Same draws as {@link DefaultModulesImpl#willInfect}. */
+  public boolean willInfect(int infected, int infectee, double baseInfectionRate, FastRandom random) {
+    if (!infectious[infected]) {
+      return false;
+    }
+    if (status[infectee] != SUSCEPTIBLE) {
+      return false;
+    }
+
+    double physicalDistancingStrength = physicalDist[infected] * physicalDist[infectee];
+    double pPhysicalDistancingSuccess = random.nextDouble();
+    if (pPhysicalDistancingSuccess < physicalDistancingStrength) {
+      return false;
+    }
+
+    double pInfectOut = random.nextDouble();
+    double outTransmissionLikelihood =
+        DefaultModulesImpl.getOutTransmissionLikelihood(
+            baseInfectionRate, MASK_TYPES[mask[infected]], outImmunity[infected], random);
+    if (pInfectOut < outTransmissionLikelihood) {
+      double inTransmissionLikelihood =
+          DefaultModulesImpl.getInTransmissionLikelihood(
+              MASK_TYPES[mask[infectee]], inImmunity[infectee], random);
+      double pInfectIn = random.nextDouble();
+      return pInfectIn < inTransmissionLikelihood;
+    }
+    return false;
+  }
+
+  // Package-private for StarContactModel, which keeps the field order of PlaceAgent#getWhoToInfect
+  void putEvent(
+      int keyOccupant,
+      long infected,
+      int infectedBy,
+      boolean transmitted,
+      int infectedInfo,
+      int infectedByInfo) {
+    int slot = runStart[keyOccupant];
+    hasEvent[slot] = true;
+    eventInfected[slot] = infected;
+    eventInfectedBy[slot] = infectedBy;
+    eventTransmitted[slot] = transmitted;
+    eventInfectedInfo[slot] = infectedInfo;
+    eventInfectedByInfo[slot] = infectedByInfo;
+  }
+
+  private void collectTransmissions() {
+    numTransmissions = 0;
+    for (int slot = 0; slot < size; slot = runEnd[slot]) {
+      if (hasEvent[slot] && eventTransmitted[slot]) {
+        transmissions[numTransmissions++] = slot;
+      }
+    }
+    // Stable insertion sort by infected id; slots are already in id order except for STAR places.
+    for (int i = 1; i < numTransmissions; i++) {
+      int slot = transmissions[i];
+      long key = eventInfected[slot];
+      int j = i - 1;
+      while (j >= 0 && eventInfected[transmissions[j]] > key) {
+        transmissions[j + 1] = transmissions[j];
+        j--;
+      }
+      transmissions[j + 1] = slot;
+    }
+  }
+
+  /** Stable sort by id, matching {@link Utils#sortedCopyBySender}, then fills the columns. */
+  private void sortOccupants() {
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    int[] src = order;
+    int[] dst = scratch;
+    for (int width = 1; width < size; width *= 2) {
+      for (int lo = 0; lo < size; lo += 2 * width) {
+        int mid = Math.min(lo + width, size);
+        int hi = Math.min(lo + 2 * width, size);
+        int a = lo;
+        int b = mid;
+        int k = lo;
+        while (a < mid && b < hi) {
+          dst[k++] = rawIds[src[b]] < rawIds[src[a]] ? src[b++] : src[a++];
+        }
+        while (a < mid) {
+          dst[k++] = src[a++];
+        }
+        while (b < hi) {
+          dst[k++] = src[b++];
+        }
+      }
+      int[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+
+    numDistinct = 0;
+    numStartedInfected = 0;
+    for (int i = 0; i < size; i++) {
+      int o = src[i];
+      Person.PersonTransmissibilityInfo info = rawInfos[o];
+      ids[i] = rawIds[o];
+      infos[i] = info;
+      status[i] = (byte) info.status().ordinal();
+      infectious[i] = info.isInfectious();
+      mask[i] = (byte) info.wearsMask().ordinal();
+      physicalDist[i] = info.physicalDistCompliance();
+      contactRate[i] = info.contactRate();
+      inImmunity[i] = info.inTransmissionImmunity();
+      outImmunity[i] = info.outTransmissionImmunity();
+      if (status[i] == INFECTED) {
+        numStartedInfected++;
+      }
+      if (i > 0 && ids[i] == ids[i - 1]) {
+        runStart[i] = runStart[i - 1];
+      } else {
+        runStart[i] = i;
+        numDistinct++;
+      }
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      runEnd[i] = (i + 1 < size && ids[i + 1] == ids[i]) ? runEnd[i + 1] : i + 1;
+    }
+  }
+
+  private void allocate(int capacity) {
+    rawIds = new long[capacity];
+    rawInfos = new Person.PersonTransmissibilityInfo[capacity];
+    order = new int[capacity];
+    scratch = new int[capacity];
+    ids = new long[capacity];
+    status = new byte[capacity];
+    infectious = new boolean[capacity];
+    mask = new byte[capacity];
+    physicalDist = new double[capacity];
+    contactRate = new int[capacity];
+    inImmunity = new double[capacity];
+    outImmunity = new double[capacity];
+    infos = new Person.PersonTransmissibilityInfo[capacity];
+    runStart = new int[capacity];
+    runEnd = new int[capacity];
+    hasEvent = new boolean[capacity];
+    eventInfected = new long[capacity];
+    eventInfectedBy = new int[capacity];
+    eventTransmitted = new boolean[capacity];
+    eventInfectedInfo = new int[capacity];
+    eventInfectedByInfo = new int[capacity];
+    hazardWeight = new double[capacity];
+    transmissions = new int[capacity];
+  }
+
+  // Only the arrival-order columns hold data between add() and run(); the rest are rebuilt by run().
+  private void grow(int capacity) {
+    long[] oldIds = rawIds;
+    Person.PersonTransmissibilityInfo[] oldInfos = rawInfos;
+    allocate(capacity);
+    System.arraycopy(oldIds, 0, rawIds, 0, size);
+    System.arraycopy(oldInfos, 0, rawInfos, 0, size);
+  }
+}
@@ -0,0 +1,280 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Who was at each place on each recent step, kept in one store so that contact tracing can look up
+ * a case's contacts directly, without the interview message round-trips of {@link
+ * Person#requestOccupancyFromPlacesVisited}. Only used when {@link Globals#useContactLog} is set.
+ *
+ * <p>Each step is stored in columns: place ids, the offsets of each place's occupants, and one
+ * array of all occupants, plus an index of every person's rows sorted by person id. A lookup is a
+ * binary search per step, so it does not grow with the number of places or their histories.
+ *
+ * <p>PlaceAgents record into the current step from many threads. A step is sealed into columns the
+ * first time it is read, or when recording moves on to a later step. Rosters recorded for a step
+ * after it was sealed are merged into its columns when it is next read.
+ */
+public final class ContactLog {
+  // Array header plus length, as laid out by a 64-bit JVM with compressed pointers
+  private static final long ARRAY_OVERHEAD_BYTES = 16;
+
+  private final int capacity;
+  private final ArrayDeque<StepColumns> sealedSteps = new ArrayDeque<>();
+
+  private int pendingStep = Integer.MIN_VALUE;
+  private final List<long[]> pendingRosters = new ArrayList<>();
+  private long[] pendingPlaceIds = new long[16];
+
+  /** Keeps up to {@code capacity} steps, see {@link OccupancyHistory#capacityFor}. */
+  public ContactLog(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Records the first {@code length} ids of {@code sortedIds}, which must be sorted and distinct, as
+   * the people at {@code placeId} on {@code step}. The ids are copied. Rosters recorded for the same
+   * place and step, such as from the shards of a sharded place, are merged, including ones recorded
+   * after the step was first read.
+   */
+  public synchronized void record(int step, long placeId, long[] sortedIds, int length) {
+    if (step < pendingStep) {
+      throw new IllegalArgumentException(
+          "Steps must be recorded in increasing order, got " + step + " after " + pendingStep);
+    }
+    if (step > pendingStep) {
+      sealPending();
+      pendingStep = step;
+    }
+    addPending(placeId, Arrays.copyOf(sortedIds, length));
+  }
+
+  private void addPending(long placeId, long[] roster) {
+    int row = pendingRosters.size();
+    if (row == pendingPlaceIds.length) {
+      pendingPlaceIds = Arrays.copyOf(pendingPlaceIds, row * 2);
+    }
+    pendingPlaceIds[row] = placeId;
+    pendingRosters.add(roster);
+  }
+
+  /**
+   * Returns the people who shared a place with {@code personId}, including themselves, for each
+   * step in [fromStep, toStep] on which they shared one, oldest first.
+   */
+  public synchronized ImmutableList<ContactSet> contactsOf(
+      long personId, int fromStep, int toStep) {
+    return contactsByStep(personId, fromStep, toStep).values().asList();
+  }
+
+  /** Like {@link #contactsOf}, but keyed by the step on which each set of contacts was met. */
+  public synchronized ImmutableSortedMap<Integer, ContactSet> contactsByStep(
+      long personId, int fromStep, int toStep) {
+    sealPending();
+    ImmutableSortedMap.Builder<Integer, ContactSet> contacts = ImmutableSortedMap.naturalOrder();
+    for (StepColumns columns : sealedSteps) {
+      if (columns.step < fromStep || columns.step > toStep) {
+        continue;
+      }
+      ContactSet contactsAtStep = columns.contactsOf(personId);
+      if (!contactsAtStep.isEmpty()) {
+        contacts.put(columns.step, contactsAtStep);
+      }
+    }
+    return contacts.build();
+  }
+
+  /** Drops every step before {@code step}. */
+  public synchronized void evictBefore(int step) {
+    sealPending();
+    while (!sealedSteps.isEmpty() && sealedSteps.peekFirst().step < step) {
+      sealedSteps.removeFirst();
+    }
+  }
+
+  /** The number of steps held. */
+  public synchronized int numSteps() {
+    sealPending();
+    return sealedSteps.size();
+  }
+
+  /** An estimate of the heap used by the sealed steps, in bytes. */
+  public synchronized long estimatedBytes() {
+    sealPending();
+    long bytes = 0;
+    for (StepColumns columns : sealedSteps) {
+      bytes += columns.estimatedBytes();
+    }
+    return bytes;
+  }
+
+  private void sealPending() {
+    if (pendingRosters.isEmpty()) {
+      return;
+    }
+    StepColumns last = sealedSteps.peekLast();
+    if (last != null && last.step == pendingStep) {
+      // The step was read before these rosters were recorded, so they join its sealed columns
+      sealedSteps.removeLast();
+      for (int r = 0; r < last.placeIds.length; r++) {
+        addPending(last.placeIds[r], last.roster(r));
+      }
+    }
+    sealedSteps.addLast(StepColumns.create(
+        pendingStep, Arrays.copyOf(pendingPlaceIds, pendingRosters.size()), pendingRosters));
+    pendingRosters.clear();
+    while (sealedSteps.size() > capacity) {
+      sealedSteps.removeFirst();
+    }
+  }
+
+  /** One step of the log in columnar form. */
+  private static final class StepColumns {
+    final int step;
+    // Row r holds the occupants of placeIds[r], at occupants[rowStart[r], rowStart[r + 1])
+    final long[] placeIds;
+    final int[] rowStart;
+    final long[] occupants;
+    // Every (person, row) pair, sorted by person and then row
+    final long[] indexPersonIds;
+    final int[] indexRows;
+
+    private StepColumns(
+        int step,
+        long[] placeIds,
+        int[] rowStart,
+        long[] occupants,
+        long[] indexPersonIds,
+        int[] indexRows) {
+      this.step = step;
+      this.placeIds = placeIds;
+      this.rowStart = rowStart;
+      this.occupants = occupants;
+      this.indexPersonIds = indexPersonIds;
+      this.indexRows = indexRows;
+    }
+
+    /**
+     * Lays out {@code rosters}, recorded at {@code placeIds} in any order, as columns. Rows are
+     * sorted by place and repeated places merged, so the layout does not depend on which thread
+     * recorded first.
+     */
+    static StepColumns create(int step, long[] placeIds, List<long[]> rosters) {
+      Integer[] order = new Integer[placeIds.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> {
+        int byPlace = Long.compare(placeIds[a], placeIds[b]);
+        return byPlace != 0 ? byPlace : compareRosters(rosters.get(a), rosters.get(b));
+      });
+
+      List<Long> rowPlaceIds = new ArrayList<>();
+      List<long[]> rowRosters = new ArrayList<>();
+      for (int i : order) {
+        int last = rowPlaceIds.size() - 1;
+        if (last >= 0 && rowPlaceIds.get(last) == placeIds[i]) {
+          long[] previous = rowRosters.get(last);
+          long[] roster = rosters.get(i);
+          rowRosters.set(
+              last, OccupancyHistory.mergeSorted(previous, previous.length, roster, roster.length));
+        } else {
+          rowPlaceIds.add(placeIds[i]);
+          rowRosters.add(rosters.get(i));
+        }
+      }
+
+      int numRows = rowPlaceIds.size();
+      long[] sortedPlaceIds = new long[numRows];
+      int[] rowStart = new int[numRows + 1];
+      for (int r = 0; r < numRows; r++) {
+        sortedPlaceIds[r] = rowPlaceIds.get(r);
+        rowStart[r + 1] = rowStart[r] + rowRosters.get(r).length;
+      }
+      long[] occupants = new long[rowStart[numRows]];
+      for (int r = 0; r < numRows; r++) {
+        long[] roster = rowRosters.get(r);
+        System.arraycopy(roster, 0, occupants, rowStart[r], roster.length);
+      }
+
+      // Occupants are laid out row by row, so a stable sort by person keeps each person's rows in order
+      int[] occupantRows = new int[occupants.length];
+      for (int r = 0; r < numRows; r++) {
+        Arrays.fill(occupantRows, rowStart[r], rowStart[r + 1], r);
+      }
+      Integer[] byPerson = new Integer[occupants.length];
+      for (int j = 0; j < byPerson.length; j++) {
+        byPerson[j] = j;
+      }
+      Arrays.sort(byPerson, (a, b) -> Long.compare(occupants[a], occupants[b]));
+      long[] indexPersonIds = new long[occupants.length];
+      int[] indexRows = new int[occupants.length];
+      for (int i = 0; i < byPerson.length; i++) {
+        indexPersonIds[i] = occupants[byPerson[i]];
+        indexRows[i] = occupantRows[byPerson[i]];
+      }
+      return new StepColumns(step, sortedPlaceIds, rowStart, occupants, indexPersonIds, indexRows);
+    }
+
+    /** A copy of the occupants of row {@code row}. */
+    long[] roster(int row) {
+      return Arrays.copyOfRange(occupants, rowStart[row], rowStart[row + 1]);
+    }
+
+    ContactSet contactsOf(long personId) {
+      int i = firstIndexOf(personId);
+      if (i < 0) {
+        return ContactSet.empty();
+      }
+      // Each row is sorted, so it converts straight to a bitmap, and rows are unioned block-wise
+      ContactSet contacts = ContactSet.empty();
+      for (; i < indexPersonIds.length && indexPersonIds[i] == personId; i++) {
+        int row = indexRows[i];
+        contacts = contacts.union(
+            ContactSet.fromSorted(occupants, rowStart[row], rowStart[row + 1]));
+      }
+      return contacts;
+    }
+
+    private int firstIndexOf(long personId) {
+      int low = 0;
+      int high = indexPersonIds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (indexPersonIds[mid] < personId) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low < indexPersonIds.length && indexPersonIds[low] == personId ? low : -1;
+    }
+
+    long estimatedBytes() {
+      return 5 * ARRAY_OVERHEAD_BYTES
+          + 8L * placeIds.length
+          + 4L * rowStart.length
+          + 8L * occupants.length
+          + 8L * indexPersonIds.length
+          + 4L * indexRows.length;
+    }
+
+    private static int compareRosters(long[] a, long[] b) {
+      for (int i = 0; i < Math.min(a.length, b.length); i++) {
+        if (a[i] != b[i]) {
+          return Long.compare(a[i], b[i]);
+        }
+      }
+      return Integer.compare(a.length, b.length);
+    }
+  }
+}
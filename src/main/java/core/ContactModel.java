@@ -0,0 +1,42 @@
+package core;
+
+/**
+ * Generates the contacts, and resulting infections, among the people present at a place on one
+ * step.
+ *
+ * <p>A {@link PlaceAgent} resolves its model once, through {@link Modules#getContactModel}, when it
+ * receives its {@link PlaceInfo}, rather than branching on the network type every step. Each network
+ * type has its own implementation so that the call site in each place stays monomorphic.
+ */
+public interface ContactModel {
+
+  /**
+   * Records contacts among the occupants of {@code kernel} with {@link
+   * ContactKernel#recordContact} and {@link ContactKernel#recordExposure}. The kernel holds at
+   * least two occupant rows.
+   */
+  void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random);
+
+  /** The model that reproduces {@link PlaceAgent#getWhoToInfect} for the given network type. */
+  static ContactModel forNetworkType(PlaceInfo.NetworkType networkType) {
+    switch (networkType) {
+      case STAR:
+        return StarContactModel.getInstance();
+      case FULLY_CONNECTED:
+        return FullyConnectedContactModel.getInstance();
+      case FULLY_CONNECTED_DEPENDENT_ON_CENTER:
+        return DependentOnCenterContactModel.getInstance();
+      case FLAT_INFECTION_RATE:
+        return FlatInfectionRateContactModel.getInstance();
+      case FULLY_CONNECTED_WITH_FLAT_INFECTION_RATE:
+        return FullyConnectedWithFlatInfectionRateContactModel.getInstance();
+      default:
+        throw new IllegalArgumentException("Unknown network type " + networkType);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package core;
+
+/**
+ * Draws contact indices directly from an occupant array, instead of copying the candidate
+ * occupants into a new list for every draw.
+ *
+ * <p>Draws are written into a caller-owned buffer, which can be grown with {@link
+ * #ensureCapacity}. All draws come from the given {@link FastRandom}, so results are
+ * deterministic under a fixed seed.
+ */
+public final class ContactSampler {
+
+  /**
+   * Maps an index drawn over an array with the block [excludedStart, excludedStart +
+   * excludedLength) removed back to an index into the full array.
+   */
+  public static int skipExcluded(int drawn, int excludedStart, int excludedLength) {
+    return drawn < excludedStart ? drawn : drawn + excludedLength;
+  }
+
+  /**
+   * Returns {@code buffer}, or a larger array if it cannot hold {@code size} draws. There is always
+   * room for one draw, which {@link #sampleExcept} makes even when asked for none.
+   */
+  public static int[] ensureCapacity(int[] buffer, int size) {
+    int needed = Math.max(size, 1);
+    return buffer.length >= needed ? buffer : new int[Math.max(needed, buffer.length * 2)];
+  }
+
+  /**
+   * Draws {@code num} indices in [0, n) with replacement into {@code out}. Returns the number of
+   * indices drawn.
+   */
+  public static int sampleWithReplacement(int n, int num, FastRandom random, int[] out) {
+    return sampleExcept(n, 0, 0, num, random, out);
+  }
+
+  /**
+   * Draws {@code num} indices in [0, n) with replacement into {@code out}, skipping the block
+   * [excludedStart, excludedStart + excludedLength). Returns the number of indices drawn.
+   *
+   * <p>If exactly one index is left after the exclusion, it is returned once without drawing, as
+   * contacts have always been sampled in this model. That happens even if {@code num} is 0, so
+   * {@code out} must come from {@link #ensureCapacity}.
+   */
+  public static int sampleExcept(
+      int n, int excludedStart, int excludedLength, int num, FastRandom random, int[] out) {
+    int numCandidates = n - excludedLength;
+    if (numCandidates == 1) {
+      out[0] = skipExcluded(0, excludedStart, excludedLength);
+      return 1;
+    }
+    for (int i = 0; i < num; i++) {
+      out[i] = skipExcluded(
+          random.nextInt(numCandidates), excludedStart, excludedLength);
+    }
+    return num;
+  }
+
+  /**
+   * Draws {@code min(num, n)} distinct indices in [0, n) into {@code out}. Returns the number of
+   * indices drawn.
+   */
+  public static int sampleWithoutReplacement(int n, int num, FastRandom random, int[] out) {
+    return sampleExceptWithoutReplacement(n, 0, 0, num, random, out);
+  }
+
+  /**
+   * Draws up to {@code num} distinct indices in [0, n) into {@code out}, skipping the block
+   * [excludedStart, excludedStart + excludedLength). Returns the number of indices drawn.
+   *
+   * <p>Uses Floyd's algorithm, which makes exactly one draw per index. Checking for repeats scans
+   * the indices drawn so far, so this is meant for the small sample sizes of contact rates.
+   */
+  public static int sampleExceptWithoutReplacement(
+      int n, int excludedStart, int excludedLength, int num, FastRandom random, int[] out) {
+    int numCandidates = n - excludedLength;
+    if (num >= numCandidates) {
+      for (int i = 0; i < numCandidates; i++) {
+        out[i] = skipExcluded(i, excludedStart, excludedLength);
+      }
+      return Math.max(numCandidates, 0);
+    }
+    int count = 0;
+    for (int j = numCandidates - num; j < numCandidates; j++) {
+      int drawn = random.nextInt(j + 1);
+      int index = skipExcluded(drawn, excludedStart, excludedLength);
+      if (contains(out, count, index)) {
+        index = skipExcluded(j, excludedStart, excludedLength);
+      }
+      out[count++] = index;
+    }
+    return count;
+  }
+
+  private static boolean contains(int[] values, int size, int value) {
+    for (int i = 0; i < size; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Prevent individual instances of class
+  private ContactSampler() {
+
+  }
+}
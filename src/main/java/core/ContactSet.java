@@ -0,0 +1,245 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set of person ids, stored as a compressed bitmap.
+ *
+ * <p>Ids are split into blocks of 64. Only blocks holding at least one id are stored, as a sorted
+ * array of block keys and a parallel array of 64-bit words. Agent ids are handed out densely, so
+ * the people at a place fall into few blocks, and a set costs about two bits per possible id in
+ * its range instead of a boxed {@link Long} per member. This is also the form sent in {@link
+ * Messages.InterviewResultsMsg}.
+ */
+public final class ContactSet implements Iterable<Long>, Serializable {
+  private static final ContactSet EMPTY = new ContactSet(new long[0], new long[0], 0);
+
+  private final long[] keys;
+  private final long[] words;
+  private final int size;
+  // rankBefore[b] is the number of ids in the blocks before b, built on first use by select
+  private transient int[] rankBefore;
+
+  private ContactSet(long[] keys, long[] words, int size) {
+    this.keys = keys;
+    this.words = words;
+    this.size = size;
+  }
+
+  public static ContactSet empty() {
+    return EMPTY;
+  }
+
+  public static ContactSet of(long... ids) {
+    long[] sorted = ids.clone();
+    Arrays.sort(sorted);
+    return fromSorted(sorted, sorted.length);
+  }
+
+  /** The set of the first {@code length} of {@code sortedIds}, which must be in increasing order. */
+  public static ContactSet fromSorted(long[] sortedIds, int length) {
+    return fromSorted(sortedIds, 0, length);
+  }
+
+  /** The set of {@code sortedIds[from, to)}, which must be in increasing order. */
+  public static ContactSet fromSorted(long[] sortedIds, int from, int to) {
+    if (to <= from) {
+      return EMPTY;
+    }
+    long[] keys = new long[to - from];
+    long[] words = new long[to - from];
+    int numBlocks = 0;
+    int size = 0;
+    for (int i = from; i < to; i++) {
+      long key = sortedIds[i] >> 6;
+      long bit = 1L << sortedIds[i];
+      if (numBlocks == 0 || keys[numBlocks - 1] != key) {
+        keys[numBlocks] = key;
+        words[numBlocks] = bit;
+        numBlocks++;
+        size++;
+      } else if ((words[numBlocks - 1] & bit) == 0) {
+        words[numBlocks - 1] |= bit;
+        size++;
+      }
+    }
+    return new ContactSet(
+        Arrays.copyOf(keys, numBlocks), Arrays.copyOf(words, numBlocks), size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(long id) {
+    int b = Arrays.binarySearch(keys, id >> 6);
+    return b >= 0 && (words[b] & (1L << id)) != 0;
+  }
+
+  /** The union of this set and {@code other}, one word operation per block. */
+  public ContactSet union(ContactSet other) {
+    if (other.size == 0) {
+      return this;
+    }
+    if (size == 0) {
+      return other;
+    }
+    long[] unionKeys = new long[keys.length + other.keys.length];
+    long[] unionWords = new long[unionKeys.length];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    int unionSize = 0;
+    while (i < keys.length || j < other.keys.length) {
+      if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+        unionKeys[n] = keys[i];
+        unionWords[n] = words[i++];
+      } else if (i == keys.length || other.keys[j] < keys[i]) {
+        unionKeys[n] = other.keys[j];
+        unionWords[n] = other.words[j++];
+      } else {
+        unionKeys[n] = keys[i];
+        unionWords[n] = words[i++] | other.words[j++];
+      }
+      unionSize += Long.bitCount(unionWords[n]);
+      n++;
+    }
+    return new ContactSet(Arrays.copyOf(unionKeys, n), Arrays.copyOf(unionWords, n), unionSize);
+  }
+
+  /**
+   * A uniformly random subset of {@code k} ids, or this set if it has no more than {@code k}.
+   * Picks k distinct ranks with Floyd's algorithm, one draw each, and looks each one up, so the
+   * cost grows with k rather than with the size of this set.
+   */
+  public ContactSet sample(int k, Random random) {
+    if (k >= size) {
+      return this;
+    }
+    if (k <= 0) {
+      return EMPTY;
+    }
+    BitSet ranks = new BitSet(size);
+    for (int j = size - k; j < size; j++) {
+      int rank = random.nextInt(j + 1);
+      ranks.set(ranks.get(rank) ? j : rank);
+    }
+    long[] sampled = new long[k];
+    int n = 0;
+    for (int rank = ranks.nextSetBit(0); rank >= 0; rank = ranks.nextSetBit(rank + 1)) {
+      sampled[n++] = select(rank);
+    }
+    return fromSorted(sampled, n);
+  }
+
+  /** The share {@code recall} of this set that an interviewee remembers, picked at random. */
+  public ContactSet recall(double recall, Random random) {
+    return sample((int) Math.rint(recall * size), random);
+  }
+
+  /** The id with {@code rank} smaller ids in this set. */
+  long select(int rank) {
+    if (rankBefore == null) {
+      int[] ranks = new int[keys.length];
+      for (int b = 1; b < keys.length; b++) {
+        ranks[b] = ranks[b - 1] + Long.bitCount(words[b - 1]);
+      }
+      rankBefore = ranks;
+    }
+    int low = 0;
+    int high = keys.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (rankBefore[mid] <= rank) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    long word = words[low];
+    for (int skip = rank - rankBefore[low]; skip > 0; skip--) {
+      word &= word - 1;
+    }
+    return (keys[low] << 6) | Long.numberOfTrailingZeros(word);
+  }
+
+  public long[] toArray() {
+    long[] ids = new long[size];
+    PrimitiveIterator.OfLong it = iterator();
+    for (int i = 0; i < size; i++) {
+      ids[i] = it.nextLong();
+    }
+    return ids;
+  }
+
+  public LongStream stream() {
+    return StreamSupport.longStream(
+        Spliterators.spliterator(iterator(), size,
+            Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL),
+        false);
+  }
+
+  /** Iterates the ids in increasing order; use {@link PrimitiveIterator.OfLong#nextLong} to avoid boxing. */
+  @Override
+  public PrimitiveIterator.OfLong iterator() {
+    return new PrimitiveIterator.OfLong() {
+      private int block = 0;
+      private long remaining = words.length > 0 ? words[0] : 0;
+
+      @Override
+      public boolean hasNext() {
+        while (remaining == 0 && block < words.length - 1) {
+          remaining = words[++block];
+        }
+        return remaining != 0;
+      }
+
+      @Override
+      public long nextLong() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        long id = (keys[block] << 6) | Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        return id;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ContactSet)) {
+      return false;
+    }
+    ContactSet other = (ContactSet) o;
+    return size == other.size
+        && Arrays.equals(keys, other.keys)
+        && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(keys) + Arrays.hashCode(words);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
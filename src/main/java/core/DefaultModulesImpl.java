@@ -1,7 +1,6 @@
 package core;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import simudyne.core.rng.SeededRandom;
 
@@ -87,27 +86,13 @@ public class DefaultModulesImpl implements Modules {
           Map<Long, Double> testSelectionMultipliers,
           SeededRandom random,
           long numTestsToRun) {
+    // Each agent is drawn in proportion to its multiplier among the agents not yet drawn. The
+    // central agent passes a view of its WeightedSampler, so nothing is rebuilt per step.
+    long[] sampled = WeightedSampler.of(testSelectionMultipliers)
+        .sampleWithoutReplacement(numTestsToRun, bound -> random.uniform(0, bound).sample());
     Set<Long> agentsToTest = new HashSet<>();
-
-    double sumAllMultipliers = testSelectionMultipliers.values().stream().reduce(0.0, Double::sum);
-    double sumOfAgentsToTest = 0;
-
-    while (agentsToTest.size() < numTestsToRun
-            && agentsToTest.size() < testSelectionMultipliers.size()) {
-      double selection = random.uniform(0, sumAllMultipliers - sumOfAgentsToTest).sample();
-      double curSum = 0.0;
-      FIND_AGENT_TO_TEST_LOOP:
-      for (Map.Entry<Long, Double> entry : testSelectionMultipliers.entrySet()) {
-        if (agentsToTest.contains(entry.getKey())) {
-          continue;
-        }
-        curSum += entry.getValue();
-        if (selection < curSum) {
-          agentsToTest.add(entry.getKey());
-          sumOfAgentsToTest += entry.getValue();
-          break FIND_AGENT_TO_TEST_LOOP;
-        }
-      }
+    for (long agentId : sampled) {
+      agentsToTest.add(agentId);
     }
     return agentsToTest;
   }
@@ -117,37 +102,16 @@ public class DefaultModulesImpl implements Modules {
     return ImmutableSet.of();
   }
 
-  public static List<Messages.IAmHereMsg> sample(
-      List<Messages.IAmHereMsg> all, int num, SeededRandom random) {
-    ImmutableList.Builder<Messages.IAmHereMsg> builder = ImmutableList.builder();
-
-    if (all.size() == 1) {
-      builder.add(all.get(0));
-      return builder.build();
-    }
-
-    for (int i = 0; i < num; i++) {
-      builder.add(all.get(random.discrete(0, all.size() - 1).sample()));
-    }
-    return builder.build();
-  }
-
-  public static List<Messages.IAmHereMsg> getAllExcept(
-      List<Messages.IAmHereMsg> all, Messages.IAmHereMsg except) {
-    ImmutableList.Builder<Messages.IAmHereMsg> builder = ImmutableList.builder();
-    for (Messages.IAmHereMsg msg : all) {
-      if (except.getSender() != msg.getSender()) {
-        builder.add(msg);
-      }
-    }
-    return builder.build();
+  @Override
+  public ContactModel getContactModel(PlaceInfo placeInfo, Globals globals) {
+    return ContactModel.forNetworkType(placeInfo.networkType());
   }
 
   public static boolean willInfect(
       Messages.IAmHereMsg infected,
       Messages.IAmHereMsg infectee,
       double baseInfectionRate,
-      SeededRandom random) {
+      FastRandom random) {
     if (!infected.transmissibilityInfo.isInfectious()) {
       return false;
     }
@@ -158,13 +122,13 @@ public class DefaultModulesImpl implements Modules {
     double physicalDistancingStrength =
         infected.transmissibilityInfo.physicalDistCompliance()
             * infectee.transmissibilityInfo.physicalDistCompliance();
-    double pPhysicalDistancingSuccess = random.uniform(0, 1).sample();
+    double pPhysicalDistancingSuccess = random.nextDouble();
     if (pPhysicalDistancingSuccess < physicalDistancingStrength) {
       return false;
     }
 
     // generate random uniform probability of infection between 0-1
-    double pInfectOut = random.uniform(0, 1).sample();
+    double pInfectOut = random.nextDouble();
 
     // NPI (Mask wearing): Reduce infectionRate if the infected agent is wearing
     // a mask
@@ -176,57 +140,100 @@ public class DefaultModulesImpl implements Modules {
     if (pInfectOut < outTransmissionLikelihood) {
       double inTransmissionLikelihood =
           getInTransmissionLikelihood(infectee.transmissibilityInfo, random);
-      double pInfectIn = random.uniform(0, 1).sample();
+      double pInfectIn = random.nextDouble();
       return pInfectIn < inTransmissionLikelihood;
     }
     return false;
   }
 
   // Reduce incoming infection chance through NPI's, vaccination, etc.
-  public static double getInTransmissionLikelihood(Person.PersonTransmissibilityInfo inTransmissibility, SeededRandom random) {
+  public static double getInTransmissionLikelihood(Person.PersonTransmissibilityInfo inTransmissibility, FastRandom random) {
+    return getInTransmissionLikelihood(
+        inTransmissibility.wearsMask(), inTransmissibility.inTransmissionImmunity(), random);
+  }
+
+  static double getInTransmissionLikelihood(
+      Person.MaskType maskType, double inTransmissionImmunity, FastRandom random) {
     double inTransmissionChance = 1.0;
 
     // Inward efficiency: protecting the wearer against catching the disease
     double maskInwardEfficiency = 0;
 
-    Person.MaskType maskType = inTransmissibility.wearsMask();
-
     // NPI: Mask wearing
     if (maskType == Person.MaskType.HOMEMADE_CLOTH) {
-      maskInwardEfficiency = random.uniform(0.2, 0.8).sample();
+      maskInwardEfficiency = random.nextDouble(0.2, 0.8);
     } else if (maskType == Person.MaskType.SURGICAL) {
-      maskInwardEfficiency = random.uniform(0.7, 0.9).sample();
+      maskInwardEfficiency = random.nextDouble(0.7, 0.9);
     } else if (maskType == Person.MaskType.N95) {
-      maskInwardEfficiency = random.uniform(0.95, 1).sample();
+      maskInwardEfficiency = random.nextDouble(0.95, 1);
     }
     inTransmissionChance *= (1 - maskInwardEfficiency);
 
-    inTransmissionChance *= (1 - inTransmissibility.inTransmissionImmunity());
+    inTransmissionChance *= (1 - inTransmissionImmunity);
 
     return inTransmissionChance;
   }
 
   // Reduce outgoing infection chance through NPI's, vaccination, etc.
   public static double getOutTransmissionLikelihood(
-      double baseInfectivity, Person.PersonTransmissibilityInfo outTransmissibility, SeededRandom random) {
+      double baseInfectivity, Person.PersonTransmissibilityInfo outTransmissibility, FastRandom random) {
+    return getOutTransmissionLikelihood(
+        baseInfectivity,
+        outTransmissibility.wearsMask(),
+        outTransmissibility.outTransmissionImmunity(),
+        random);
+  }
+
+  static double getOutTransmissionLikelihood(
+      double baseInfectivity,
+      Person.MaskType maskType,
+      double outTransmissionImmunity,
+      FastRandom random) {
     double outInfectivity = baseInfectivity;
 
     // Outward efficency: protecting the wearer from transmiting the disease
     double maskOutwardEfficiency = 0;
-    Person.MaskType maskType = outTransmissibility.wearsMask();
 
     if (maskType == Person.MaskType.HOMEMADE_CLOTH) {
-      maskOutwardEfficiency = random.uniform(0, 0.8).sample();
+      maskOutwardEfficiency = random.nextDouble(0, 0.8);
     } else if (maskType == Person.MaskType.SURGICAL) {
-      maskOutwardEfficiency = random.uniform(0.5, 0.9).sample();
+      maskOutwardEfficiency = random.nextDouble(0.5, 0.9);
     } else if (maskType == Person.MaskType.N95) {
-      maskOutwardEfficiency = random.uniform(0.7, 1).sample();
+      maskOutwardEfficiency = random.nextDouble(0.7, 1);
     }
     outInfectivity *= (1 - maskOutwardEfficiency);
 
-    outInfectivity *= (1 - outTransmissibility.outTransmissionImmunity());
+    outInfectivity *= (1 - outTransmissionImmunity);
 
     return outInfectivity;
   }
 
+  // Mean of getInTransmissionLikelihood over its mask efficiency draw
+  static double getExpectedInTransmissionLikelihood(
+      Person.MaskType maskType, double inTransmissionImmunity) {
+    double maskInwardEfficiency = 0;
+    if (maskType == Person.MaskType.HOMEMADE_CLOTH) {
+      maskInwardEfficiency = 0.5;
+    } else if (maskType == Person.MaskType.SURGICAL) {
+      maskInwardEfficiency = 0.8;
+    } else if (maskType == Person.MaskType.N95) {
+      maskInwardEfficiency = 0.975;
+    }
+    return (1 - maskInwardEfficiency) * (1 - inTransmissionImmunity);
+  }
+
+  // Mean of getOutTransmissionLikelihood over its mask efficiency draw
+  static double getExpectedOutTransmissionLikelihood(
+      double baseInfectivity, Person.MaskType maskType, double outTransmissionImmunity) {
+    double maskOutwardEfficiency = 0;
+    if (maskType == Person.MaskType.HOMEMADE_CLOTH) {
+      maskOutwardEfficiency = 0.4;
+    } else if (maskType == Person.MaskType.SURGICAL) {
+      maskOutwardEfficiency = 0.7;
+    } else if (maskType == Person.MaskType.N95) {
+      maskOutwardEfficiency = 0.85;
+    }
+    return baseInfectivity * (1 - maskOutwardEfficiency) * (1 - outTransmissionImmunity);
+  }
+
 }
@@ -0,0 +1,33 @@
+package core;
+
+/**
+ * FULLY_CONNECTED_DEPENDENT_ON_CENTER places: fully connected, but only if the center agent is
+ * present.
+ */
+public final class DependentOnCenterContactModel implements ContactModel {
+  private static final DependentOnCenterContactModel INSTANCE =
+      new DependentOnCenterContactModel();
+
+  public static DependentOnCenterContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    // The center agent is a no-show, so the event technically does not happen.
+    if (kernel.indexOf(place.center()) == ContactKernel.NO_OCCUPANT) {
+      return;
+    }
+    FullyConnectedContactModel.infectFullyConnected(
+        kernel, place, baseInfectionRate, globals, random);
+  }
+
+  private DependentOnCenterContactModel() {
+
+  }
+}
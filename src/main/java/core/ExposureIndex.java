@@ -0,0 +1,291 @@
+package core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How long each person recently shared a place with each of their contacts, kept up to date as
+ * places record their occupants. Tracing a case is then a lookup of that person's tallies, which
+ * costs in proportion to their contacts rather than to the places they visited and everyone who was
+ * there. Only used when {@link Globals#useExposureIndex} is set.
+ *
+ * <p>Tallies are bucketed by day. Each counts the steps two people shared and the last step they
+ * shared, and whole days are dropped as the tracing window slides past them.
+ *
+ * <p>PlaceAgents record into the current step from many threads. Rosters are only queued then, and
+ * are tallied when recording moves on to a later step or when the index is read.
+ */
+public final class ExposureIndex {
+  private final int stepsPerDay;
+  private final int capacityDays;
+  private final ArrayDeque<DayTallies> days = new ArrayDeque<>();
+
+  private int pendingStep = Integer.MIN_VALUE;
+  private final List<long[]> pendingRosters = new ArrayList<>();
+  private long[] pendingPlaceIds = new long[16];
+
+  /** Keeps up to {@code capacityDays} days of {@code stepsPerDay} steps. */
+  public ExposureIndex(int stepsPerDay, int capacityDays) {
+    if (stepsPerDay <= 0 || capacityDays <= 0) {
+      throw new IllegalArgumentException(
+          "stepsPerDay and capacityDays must be positive, were " + stepsPerDay + ", " + capacityDays);
+    }
+    this.stepsPerDay = stepsPerDay;
+    this.capacityDays = capacityDays;
+  }
+
+  /** The number of days needed to cover a tracing window, which may start part way into a day. */
+  public static int capacityFor(Globals globals) {
+    return Math.max(globals.contactTracingNumberOfDaysTraceback, 0) + 1;
+  }
+
+  /**
+   * Records the first {@code length} ids of {@code sortedIds}, which must be sorted and distinct, as
+   * the people at {@code placeId} on {@code step}. The ids are copied. Rosters recorded for the same
+   * place and step, such as from the shards of a sharded place, are tallied as one.
+   */
+  public synchronized void record(int step, long placeId, long[] sortedIds, int length) {
+    if (step < pendingStep) {
+      throw new IllegalArgumentException(
+          "Steps must be recorded in increasing order, got " + step + " after " + pendingStep);
+    }
+    if (step > pendingStep) {
+      tallyPending();
+      pendingStep = step;
+    }
+    int row = pendingRosters.size();
+    if (row == pendingPlaceIds.length) {
+      pendingPlaceIds = Arrays.copyOf(pendingPlaceIds, row * 2);
+    }
+    pendingPlaceIds[row] = placeId;
+    pendingRosters.add(Arrays.copyOf(sortedIds, length));
+  }
+
+  /**
+   * Returns the people who shared a place with {@code personId} on or after {@code fromStep}, most
+   * recently met first and then by id. Shared steps are counted over whole days, so for the day
+   * holding {@code fromStep} they may include a few steps before it.
+   */
+  public synchronized Exposures exposuresOf(long personId, int fromStep) {
+    tallyPending();
+    int fromDay = Math.floorDiv(fromStep, stepsPerDay);
+    int n = 0;
+    long[] contacts = new long[0];
+    int[] sharedSteps = new int[0];
+    int[] lastSharedSteps = new int[0];
+    for (DayTallies day : days) {
+      ContactTally tally = day.day < fromDay ? null : day.byPerson.get(personId);
+      if (tally == null) {
+        continue;
+      }
+      int needed = n + tally.size;
+      if (needed > contacts.length) {
+        contacts = Arrays.copyOf(contacts, needed);
+        sharedSteps = Arrays.copyOf(sharedSteps, needed);
+        lastSharedSteps = Arrays.copyOf(lastSharedSteps, needed);
+      }
+      for (int s = 0; s < tally.contacts.length; s++) {
+        if (tally.contacts[s] != ContactTally.FREE && tally.lastSharedSteps[s] >= fromStep) {
+          contacts[n] = tally.contacts[s];
+          sharedSteps[n] = tally.sharedSteps[s];
+          lastSharedSteps[n] = tally.lastSharedSteps[s];
+          n++;
+        }
+      }
+    }
+    return Exposures.combine(contacts, sharedSteps, lastSharedSteps, n);
+  }
+
+  /** Drops every day which ends before {@code step}. */
+  public synchronized void evictBefore(int step) {
+    tallyPending();
+    int firstKeptDay = Math.floorDiv(step, stepsPerDay);
+    while (!days.isEmpty() && days.peekFirst().day < firstKeptDay) {
+      days.removeFirst();
+    }
+  }
+
+  /** The number of days held. */
+  public synchronized int numDays() {
+    tallyPending();
+    return days.size();
+  }
+
+  private void tallyPending() {
+    if (pendingRosters.isEmpty()) {
+      return;
+    }
+    int day = Math.floorDiv(pendingStep, stepsPerDay);
+    if (days.isEmpty() || days.peekLast().day != day) {
+      days.addLast(new DayTallies(day));
+      while (days.size() > capacityDays) {
+        days.removeFirst();
+      }
+    }
+    DayTallies tallies = days.peekLast();
+
+    // Merge the rosters of each place first, so people in different shards of a place are tallied
+    // as contacts and nobody is counted twice for one step
+    Map<Long, long[]> rosterByPlace = new HashMap<>();
+    for (int row = 0; row < pendingRosters.size(); row++) {
+      long[] roster = pendingRosters.get(row);
+      rosterByPlace.merge(pendingPlaceIds[row], roster,
+          (a, b) -> OccupancyHistory.mergeSorted(a, a.length, b, b.length));
+    }
+    for (long[] roster : rosterByPlace.values()) {
+      for (long personId : roster) {
+        ContactTally tally = tallies.byPerson.computeIfAbsent(personId, id -> new ContactTally());
+        for (long contact : roster) {
+          if (contact != personId) {
+            tally.add(contact, pendingStep);
+          }
+        }
+      }
+    }
+    pendingRosters.clear();
+  }
+
+  /** The tallies of the people seen on one day. */
+  private static final class DayTallies {
+    final int day;
+    final Map<Long, ContactTally> byPerson = new HashMap<>();
+
+    DayTallies(int day) {
+      this.day = day;
+    }
+  }
+
+  /** One person's contacts on one day, in an open-addressed table keyed by contact id. */
+  private static final class ContactTally {
+    // Marks an empty slot. Agent ids are never negative, so it cannot collide with one
+    static final long FREE = Long.MIN_VALUE;
+
+    long[] contacts = newTable(8);
+    int[] sharedSteps = new int[8];
+    int[] lastSharedSteps = new int[8];
+    int size = 0;
+
+    void add(long contact, int step) {
+      int i = slotOf(contacts, contact);
+      if (contacts[i] == FREE) {
+        contacts[i] = contact;
+        if (++size * 2 > contacts.length) {
+          grow();
+          i = slotOf(contacts, contact);
+        }
+      }
+      sharedSteps[i]++;
+      lastSharedSteps[i] = step;
+    }
+
+    private void grow() {
+      long[] oldContacts = contacts;
+      int[] oldSharedSteps = sharedSteps;
+      int[] oldLastSharedSteps = lastSharedSteps;
+      contacts = newTable(oldContacts.length * 2);
+      sharedSteps = new int[contacts.length];
+      lastSharedSteps = new int[contacts.length];
+      for (int j = 0; j < oldContacts.length; j++) {
+        if (oldContacts[j] != FREE) {
+          int i = slotOf(contacts, oldContacts[j]);
+          contacts[i] = oldContacts[j];
+          sharedSteps[i] = oldSharedSteps[j];
+          lastSharedSteps[i] = oldLastSharedSteps[j];
+        }
+      }
+    }
+
+    // The slot holding contact, or the free slot where it belongs
+    private static int slotOf(long[] table, long contact) {
+      int mask = table.length - 1;
+      int i = (int) ((contact * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+      while (table[i] != FREE && table[i] != contact) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    private static long[] newTable(int capacity) {
+      long[] table = new long[capacity];
+      Arrays.fill(table, FREE);
+      return table;
+    }
+  }
+
+  /** A person's contacts over a tracing window, most recently met first. */
+  public static final class Exposures {
+    private final long[] contacts;
+    private final int[] sharedSteps;
+    private final int[] lastSharedSteps;
+
+    private Exposures(long[] contacts, int[] sharedSteps, int[] lastSharedSteps) {
+      this.contacts = contacts;
+      this.sharedSteps = sharedSteps;
+      this.lastSharedSteps = lastSharedSteps;
+    }
+
+    /** Sums the tallies of each contact over days, and orders contacts by their last shared step. */
+    static Exposures combine(long[] contacts, int[] sharedSteps, int[] lastSharedSteps, int n) {
+      Integer[] byContact = new Integer[n];
+      for (int i = 0; i < n; i++) {
+        byContact[i] = i;
+      }
+      Arrays.sort(byContact, (a, b) -> Long.compare(contacts[a], contacts[b]));
+
+      long[] combinedContacts = new long[n];
+      int[] combinedSharedSteps = new int[n];
+      int[] combinedLastSharedSteps = new int[n];
+      int m = 0;
+      for (int i : byContact) {
+        if (m > 0 && combinedContacts[m - 1] == contacts[i]) {
+          combinedSharedSteps[m - 1] += sharedSteps[i];
+          combinedLastSharedSteps[m - 1] =
+              Math.max(combinedLastSharedSteps[m - 1], lastSharedSteps[i]);
+        } else {
+          combinedContacts[m] = contacts[i];
+          combinedSharedSteps[m] = sharedSteps[i];
+          combinedLastSharedSteps[m] = lastSharedSteps[i];
+          m++;
+        }
+      }
+
+      Integer[] byRecency = new Integer[m];
+      for (int i = 0; i < m; i++) {
+        byRecency[i] = i;
+      }
+      Arrays.sort(byRecency, (a, b) -> combinedLastSharedSteps[a] != combinedLastSharedSteps[b]
+          ? Integer.compare(combinedLastSharedSteps[b], combinedLastSharedSteps[a])
+          : Long.compare(combinedContacts[a], combinedContacts[b]));
+      long[] orderedContacts = new long[m];
+      int[] orderedSharedSteps = new int[m];
+      int[] orderedLastSharedSteps = new int[m];
+      for (int i = 0; i < m; i++) {
+        orderedContacts[i] = combinedContacts[byRecency[i]];
+        orderedSharedSteps[i] = combinedSharedSteps[byRecency[i]];
+        orderedLastSharedSteps[i] = combinedLastSharedSteps[byRecency[i]];
+      }
+      return new Exposures(orderedContacts, orderedSharedSteps, orderedLastSharedSteps);
+    }
+
+    public int size() {
+      return contacts.length;
+    }
+
+    public long contact(int i) {
+      return contacts[i];
+    }
+
+    /** The number of steps the person and the {@code i}th contact were in the same place. */
+    public int sharedSteps(int i) {
+      return sharedSteps[i];
+    }
+
+    public int lastSharedStep(int i) {
+      return lastSharedSteps[i];
+    }
+  }
+}
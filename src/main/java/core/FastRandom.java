@@ -0,0 +1,93 @@
+package core;
+
+import simudyne.core.rng.SeededRandom;
+
+import java.io.Serializable;
+
+/**
+ * Random stream for per-step draws on hot paths, such as movement, contacts and disease
+ * progression.
+ *
+ * <p>Draws from a {@link SeededRandom} build a distribution object on every call. This stream is a
+ * SplitMix64 generator with primitive draws instead. Each agent seeds its own stream from its
+ * {@link SeededRandom} the first time it needs one, so runs remain reproducible under a fixed
+ * seed. The stream's whole state is one long, so it travels with the agent that owns it.
+ */
+public final class FastRandom implements Serializable {
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  private long state;
+
+  private FastRandom(long seed) {
+    this.state = seed;
+  }
+
+  public static FastRandom create(long seed) {
+    return new FastRandom(seed);
+  }
+
+  /** Seeds a stream with two draws from {@code seededRandom}. */
+  public static FastRandom from(SeededRandom seededRandom) {
+    long high = seededRandom.discrete(Integer.MIN_VALUE, Integer.MAX_VALUE).sample();
+    long low = seededRandom.discrete(Integer.MIN_VALUE, Integer.MAX_VALUE).sample();
+    return new FastRandom((high << 32) ^ (low & 0xffffffffL));
+  }
+
+  public long nextLong() {
+    long z = (state += GOLDEN_GAMMA);
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Uniform in [0, 1). */
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  /** Uniform in [origin, bound). */
+  public double nextDouble(double origin, double bound) {
+    return origin + nextDouble() * (bound - origin);
+  }
+
+  /** Uniform in [0, bound). */
+  public int nextInt(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive, was " + bound);
+    }
+    // Rejection sampling over the top 31 bits, as java.util.Random#nextInt(int) does
+    int r = (int) (nextLong() >>> 33);
+    int m = bound - 1;
+    if ((bound & m) == 0) {
+      return (int) ((bound * (long) r) >> 31);
+    }
+    for (int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33)) {
+    }
+    return r;
+  }
+
+  /** Uniform in [origin, bound]; the bounds are inclusive, as with {@link SeededRandom#discrete}. */
+  public int nextInt(int origin, int bound) {
+    return origin + nextInt(bound - origin + 1);
+  }
+
+  /** True with probability {@code p}. */
+  public boolean nextBoolean(double p) {
+    return nextDouble() < p;
+  }
+
+  /** Fills {@code out[from, to)} with uniform draws in [0, 1). */
+  public void fill(double[] out, int from, int to) {
+    for (int i = from; i < to; i++) {
+      out[i] = nextDouble();
+    }
+  }
+
+  /** Fills {@code out[from, to)} with uniform draws in [0, bound). */
+  public void fill(int[] out, int from, int to, int bound) {
+    for (int i = from; i < to; i++) {
+      out[i] = nextInt(bound);
+    }
+  }
+}
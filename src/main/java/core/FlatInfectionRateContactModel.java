@@ -0,0 +1,36 @@
+package core;
+
+/**
+ * FLAT_INFECTION_RATE places: each occupant is infected with probability {@link
+ * Globals#placeTypeFlatInfectionRate}, independent of who else is present.
+ */
+public final class FlatInfectionRateContactModel implements ContactModel {
+  private static final FlatInfectionRateContactModel INSTANCE =
+      new FlatInfectionRateContactModel();
+
+  public static FlatInfectionRateContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    infectAtFlatRate(kernel, globals, random);
+  }
+
+  /** One draw per occupant row, as in {@link PlaceAgent#getWhoToInfect}. */
+  public static void infectAtFlatRate(ContactKernel kernel, Globals globals, FastRandom random) {
+    for (int i = 0; i < kernel.size(); i++) {
+      kernel.recordExposure(
+          i, random.nextDouble() < globals.placeTypeFlatInfectionRate);
+    }
+  }
+
+  private FlatInfectionRateContactModel() {
+
+  }
+}
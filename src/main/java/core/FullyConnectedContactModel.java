@@ -0,0 +1,50 @@
+package core;
+
+/** FULLY_CONNECTED places: each infectious occupant contacts contactRate of the others. */
+public final class FullyConnectedContactModel implements ContactModel {
+  private static final FullyConnectedContactModel INSTANCE = new FullyConnectedContactModel();
+
+  public static FullyConnectedContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    infectFullyConnected(kernel, place, baseInfectionRate, globals, random);
+  }
+
+  /**
+   * Contacts for every FULLY_CONNECTED style network type, by aggregate hazard if {@link
+   * ContactKernel#useAggregateHazard} and pairwise otherwise.
+   */
+  public static void infectFullyConnected(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    if (kernel.useAggregateHazard(place, globals)) {
+      kernel.infectByAggregateHazard(baseInfectionRate, random);
+      return;
+    }
+    for (int i = 0; i < kernel.size(); i++) {
+      if (!kernel.isInfectious(i)) {
+        continue;
+      }
+      int numContacts = kernel.sampleContactsExcept(i, kernel.contactRate(i), random);
+      for (int c = 0; c < numContacts; c++) {
+        int other = kernel.sampledContact(c);
+        kernel.recordContact(other, i, kernel.willInfect(i, other, baseInfectionRate, random));
+      }
+    }
+  }
+
+  private FullyConnectedContactModel() {
+
+  }
+}
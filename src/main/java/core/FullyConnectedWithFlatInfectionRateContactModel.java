@@ -0,0 +1,30 @@
+package core;
+
+/**
+ * FULLY_CONNECTED_WITH_FLAT_INFECTION_RATE places: fully connected contacts, then a flat infection
+ * rate draw for every occupant.
+ */
+public final class FullyConnectedWithFlatInfectionRateContactModel implements ContactModel {
+  private static final FullyConnectedWithFlatInfectionRateContactModel INSTANCE =
+      new FullyConnectedWithFlatInfectionRateContactModel();
+
+  public static FullyConnectedWithFlatInfectionRateContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    FullyConnectedContactModel.infectFullyConnected(
+        kernel, place, baseInfectionRate, globals, random);
+    FlatInfectionRateContactModel.infectAtFlatRate(kernel, globals, random);
+  }
+
+  private FullyConnectedWithFlatInfectionRateContactModel() {
+
+  }
+}
@@ -9,6 +9,7 @@ import tau.Student;
 import tau.UniversityConfiguration;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -601,15 +602,15 @@ public final class Globals extends GlobalState {
 
   public Supplier<Integer> getFitnessTimesPerWeek(Person p) {
     if (p instanceof Student) {
-      return () -> drawFromDistribution(studentPFitnessTimesPerWeek, p.getPrng());
+      return () -> drawFromDistribution(studentPFitnessTimesPerWeek, p.getFastRandom());
     } else if (p instanceof Staff || p instanceof Faculty) {
-      return () -> drawFromDistribution(facultyAndStaffPFitnessTimesPerWeek, p.getPrng());
+      return () -> drawFromDistribution(facultyAndStaffPFitnessTimesPerWeek, p.getFastRandom());
     }
     throw new IllegalStateException("Not given a TAU Person.");
   }
 
-  public static Integer drawFromDistribution(double[] distribution, SeededRandom random) {
-    double draw = random.uniform(0, 1).sample();
+  public static Integer drawFromDistribution(double[] distribution, FastRandom random) {
+    double draw = random.nextDouble();
 
     double cumulativeSum = 1 - (DoubleStream.of(distribution).sum());
     if (cumulativeSum >= draw) {
@@ -642,4 +643,147 @@ public final class Globals extends GlobalState {
   @Input(name = "Compliance Modifier")
   public double complianceModifier = 1.0;
 
+  // Performance switches. These are not model inputs and are left out of the output.
+
+  // When true, PlaceAgents generate contacts with a reusable, primitive-array ContactKernel instead
+  // of PlaceAgent#getWhoToInfect. Both give identical results under the same seed.
+  public boolean usePrimitiveContactKernel = true;
+
+  // When true, only people who are infected send their transmissibility details with their
+  // presence. Everyone else reports a bare id, and is only asked for details by places that had an
+  // infectious visitor. Mask wearing is then only drawn at those places, so runs are not comparable
+  // draw for draw with the default protocol.
+  public boolean useTwoPhasePresence = false;
+
+  // When true, Modules may give some places a contact model of their own in place of the one for
+  // their network type, such as TAU's SmallRoomContactModel for suites and bathrooms. Those models
+  // skip draws the core models make, so runs are not comparable draw for draw with the default.
+  public boolean useModuleContactModels = false;
+
+  // FULLY_CONNECTED style places of these network types, or with at least this many people present,
+  // replace pairwise contact sampling with a single aggregate-hazard pass in the ContactKernel. The
+  // expected attack rate is the same, but individual contacts are not drawn. Off by default.
+  public Set<PlaceInfo.NetworkType> aggregateHazardNetworkTypes =
+      EnumSet.noneOf(PlaceInfo.NetworkType.class);
+  public int aggregateHazardMinOccupants = Integer.MAX_VALUE;
+
+  // Places that expect at least this many people are split over numPlaceShards PlaceAgents, so
+  // that their infection phase runs on several threads. People are assigned to a shard by a stable
+  // hash of their id and only make contacts within it. STAR and center-dependent places are never
+  // sharded. Per-place-type statistics and contact tracing still see the whole place.
+  public int placeShardMinCapacity = Integer.MAX_VALUE;
+  public int numPlaceShards = 4;
+
+  // If positive, infectious people in one shard also expose people in the other shards of their
+  // place, through an aggregate hazard in which each contact crosses shards with this probability.
+  // The shards exchange their infectious people in the presence phase of the infection step.
+  public double crossShardMixing = 0.0;
+
+  // If set, places record their occupants in one shared ContactLog, and the central agent looks up
+  // contacts there instead of interviewing through PlaceAgent messages. Only valid when all agents
+  // run in one JVM, since every agent must see the same log.
+  public boolean useContactLog = false;
+  private transient ContactLog contactLog;
+
+  // With useContactLog, contacts of contacts are traced up to this many hops from a case.
+  // Interviews through messages always trace one hop, so this is not a model input.
+  public int contactTracingNumberOfHops = 1;
+
+  // With useContactLog, tracing from one case stops once it has traced this many contacts, which
+  // bounds the search when contactTracingNumberOfHops is above one.
+  public int contactTracingMaxContactsPerCase = Integer.MAX_VALUE;
+
+  /** The shared {@link ContactLog}, created on first use. See {@link #useContactLog}. */
+  public synchronized ContactLog getContactLog() {
+    if (contactLog == null) {
+      contactLog = new ContactLog(OccupancyHistory.capacityFor(this));
+    }
+    return contactLog;
+  }
+
+  // If set, places tally who they put together into one shared ExposureIndex as the simulation
+  // runs, and the central agent traces cases from those tallies. Contacts met for more steps are
+  // more likely to be recalled. Takes precedence over useContactLog, and like it is only valid
+  // when all agents run in one JVM.
+  public boolean useExposureIndex = false;
+  private transient ExposureIndex exposureIndex;
+
+  /** The shared {@link ExposureIndex}, created on first use. See {@link #useExposureIndex}. */
+  public synchronized ExposureIndex getExposureIndex() {
+    if (exposureIndex == null) {
+      exposureIndex = new ExposureIndex(tOneDay, ExposureIndex.capacityFor(this));
+    }
+    return exposureIndex;
+  }
+
+  // If set, people move and record their place history through the PlaceTable, using int indices
+  // rather than PlaceInfo references. The table is built by PlaceAgent#receivePlace and shared by
+  // all agents in that JVM, so like useContactLog this is only valid when all agents run in one JVM.
+  public boolean usePlaceTable = false;
+  // Every place, numbered for the Person hot paths. See usePlaceTable.
+  private transient volatile PlaceTable placeTable;
+
+  /** The {@link PlaceTable} of every place known so far. */
+  public PlaceTable getPlaceTable() {
+    PlaceTable table = placeTable;
+    return table == null ? PlaceTable.EMPTY : table;
+  }
+
+  synchronized void setPlaceTable(PlaceTable placeTable) {
+    this.placeTable = placeTable;
+  }
+
+  /**
+   * The index of {@code place} in {@link #getPlaceTable()}. A place which is not in the table, such
+   * as one created outside of {@link PlaceAgent#receivePlace}, is added to it first.
+   */
+  public int placeIndexOf(PlaceInfo place) {
+    int index = getPlaceTable().indexOf(place);
+    if (index >= 0) {
+      return index;
+    }
+    synchronized (this) {
+      PlaceTable table = getPlaceTable();
+      index = table.indexOf(place);
+      if (index < 0) {
+        index = table.size();
+        placeTable = table.with(place);
+      }
+      return index;
+    }
+  }
+
+  // The schedules of all people, interned by the central agent so that people on the same schedule
+  // share it. People are sent the template itself, so workers never need to read this.
+  private transient ScheduleTemplates scheduleTemplates;
+
+  /** The shared {@link ScheduleTemplates}, created on first use. */
+  public synchronized ScheduleTemplates getScheduleTemplates() {
+    if (scheduleTemplates == null) {
+      scheduleTemplates = new ScheduleTemplates();
+    }
+    return scheduleTemplates;
+  }
+
+  // If set, people record their disease state in one shared PersonStateStore at the end of
+  // Person#recoverOrDieOrStep, and the central agent counts the store in place of the per person
+  // accumulator updates and the Person#countInfected pass. Like useContactLog, only valid when all
+  // agents run in one JVM.
+  public boolean usePersonStateStore = false;
+  // Read by every person on every step, so only creating it takes the lock
+  private transient volatile PersonStateStore personStateStore;
+
+  /** The shared {@link PersonStateStore}, created on first use. See {@link #usePersonStateStore}. */
+  public PersonStateStore getPersonStateStore() {
+    PersonStateStore store = personStateStore;
+    return store != null ? store : createPersonStateStore();
+  }
+
+  private synchronized PersonStateStore createPersonStateStore() {
+    if (personStateStore == null) {
+      personStateStore = new PersonStateStore();
+    }
+    return personStateStore;
+  }
+
 }
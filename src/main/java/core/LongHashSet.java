@@ -0,0 +1,150 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A set of person ids held in one open-addressed {@code long[]}, so membership checks do not box ids
+ * or allocate entries. Used for the central agent's contact tracing state, which is updated for
+ * every contact of every case, and for the people each place infects on a step.
+ *
+ * <p>Iteration order depends on the table layout, so callers that need a deterministic order use
+ * {@link #toSortedArray()}.
+ */
+public final class LongHashSet implements Serializable {
+  // Marks an empty slot. Agent ids are never negative, so it cannot collide with one
+  private static final long FREE = Long.MIN_VALUE;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] slots;
+  private int shift;
+  private int size = 0;
+
+  public LongHashSet() {
+    this(MIN_CAPACITY);
+  }
+
+  /** A set which can hold {@code expectedSize} ids before it grows. */
+  public LongHashSet(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < 2 * expectedSize) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(long id) {
+    return indexOf(id) >= 0;
+  }
+
+  /** Adds {@code id}, returning false if it was already present. */
+  public boolean add(long id) {
+    checkId(id);
+    int mask = slots.length - 1;
+    for (int i = home(id); ; i = (i + 1) & mask) {
+      if (slots[i] == id) {
+        return false;
+      }
+      if (slots[i] == FREE) {
+        slots[i] = id;
+        if (++size * 2 > slots.length) {
+          rehash(slots.length * 2);
+        }
+        return true;
+      }
+    }
+  }
+
+  /** Removes {@code id}, returning false if it was not present. */
+  public boolean remove(long id) {
+    int gap = indexOf(id);
+    if (gap < 0) {
+      return false;
+    }
+    // Shift later ids of the same probe run back into the gap, so lookups never need tombstones
+    int mask = slots.length - 1;
+    for (int i = (gap + 1) & mask; slots[i] != FREE; i = (i + 1) & mask) {
+      int home = home(slots[i]);
+      if (((i - home) & mask) >= ((i - gap) & mask)) {
+        slots[gap] = slots[i];
+        gap = i;
+      }
+    }
+    slots[gap] = FREE;
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(slots, FREE);
+      size = 0;
+    }
+  }
+
+  /** The ids in increasing order. */
+  public long[] toSortedArray() {
+    long[] ids = new long[size];
+    int n = 0;
+    for (long slot : slots) {
+      if (slot != FREE) {
+        ids[n++] = slot;
+      }
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private int indexOf(long id) {
+    if (id == FREE) {
+      return -1;
+    }
+    int mask = slots.length - 1;
+    for (int i = home(id); slots[i] != FREE; i = (i + 1) & mask) {
+      if (slots[i] == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Fibonacci hashing spreads consecutive ids, which agents are given, across the table
+  private int home(long id) {
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  private void allocate(int capacity) {
+    slots = new long[capacity];
+    Arrays.fill(slots, FREE);
+    shift = Long.numberOfLeadingZeros(capacity - 1);
+  }
+
+  private void rehash(int capacity) {
+    long[] old = slots;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (long id : old) {
+      if (id != FREE) {
+        int i = home(id);
+        while (slots[i] != FREE) {
+          i = (i + 1) & mask;
+        }
+        slots[i] = id;
+      }
+    }
+  }
+
+  private static void checkId(long id) {
+    if (id == FREE) {
+      throw new IllegalArgumentException("Cannot hold id " + id);
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package core;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import simudyne.core.graph.Message;
 
 public class Messages {
@@ -63,6 +62,19 @@ public class Messages {
     }
   }
 
+  /**
+   * Reports presence at a place without transmissibility details. Only sent when {@link
+   * Globals#useTwoPhasePresence} is set.
+   */
+  public static class IAmPresentMsg extends Message.Empty {
+  }
+
+  /**
+   * Asks a person who sent an {@link IAmPresentMsg} for their {@link IAmHereMsg}.
+   */
+  public static class RequestTransmissibilityMsg extends Message.Empty {
+  }
+
   public static class PlaceInfections extends Message {
     int placeType;
     int numGotInfected;
@@ -71,11 +83,8 @@ public class Messages {
   }
 
   public static class OccupancyMsg extends Message implements Copyable {
-    /**
-     * A list of occupants of an agent. The last element represents the occupants of the current step, and every
-     * previous element represents the occupants in each earlier step.
-     */
-    ImmutableList<ImmutableList<java.lang.Long>> peoplePresent;
+    /** The occupants of the place on each recent step it had visitors. */
+    OccupancyHistory.Snapshot occupancy;
 
     @Override
     public void copyInto(Message msg) {
@@ -83,7 +92,7 @@ public class Messages {
         throw new IllegalArgumentException("Message must be occupancy message");
       }
       OccupancyMsg occupancyMsg = (OccupancyMsg) msg;
-      occupancyMsg.peoplePresent = this.peoplePresent;
+      occupancyMsg.occupancy = this.occupancy;
     }
   }
 
@@ -94,7 +103,38 @@ public class Messages {
   public static class QuarantineReleaseMsg extends Message.Empty {
   }
 
-  public static class RequestOccupancyMsg extends Message.Empty {
+  public static class RequestOccupancyMsg extends Message implements Copyable {
+    /** The steps the requester was at the place, in increasing order. */
+    int[] steps;
+
+    @Override
+    public void copyInto(Message msg) {
+      if (!(msg instanceof RequestOccupancyMsg)) {
+        throw new IllegalArgumentException("Message must be request occupancy message");
+      }
+      ((RequestOccupancyMsg) msg).steps = this.steps;
+    }
+  }
+
+  /**
+   * The infectious people at one shard of a sharded place, sent to the other shards, see {@link
+   * Globals#crossShardMixing}.
+   */
+  public static class ShardPressureMsg extends Message implements Copyable {
+    int numOccupants;
+    long[] infectiousIds;
+    Person.PersonTransmissibilityInfo[] infectiousInfos;
+
+    @Override
+    public void copyInto(Message msg) {
+      if (!(msg instanceof ShardPressureMsg)) {
+        throw new IllegalArgumentException("Message must be a ShardPressureMsg");
+      }
+      ShardPressureMsg shardPressureMsg = (ShardPressureMsg) msg;
+      shardPressureMsg.numOccupants = this.numOccupants;
+      shardPressureMsg.infectiousIds = this.infectiousIds;
+      shardPressureMsg.infectiousInfos = this.infectiousInfos;
+    }
   }
 
   public static class StartInterviewMsg extends Message.Empty {
@@ -105,7 +145,7 @@ public class Messages {
      * A list of contacts of an agent. The last element represents the contacts of the current step, and every
      * previous element represents the contacts in each earlier step.
      */
-    ImmutableList<ImmutableSet<java.lang.Long>> contacts;
+    ImmutableList<ContactSet> contacts;
 
     @Override
     public void copyInto(Message msg) {
@@ -196,7 +236,20 @@ public class Messages {
     void copyInto(Message msg);
   }
 
-  public static class ReportForVaccineMsg extends Message.Empty {}
+  public static class VaccineEligibilityMsg extends Message implements Copyable {
+    public int priorityTier;
+    public boolean isSuppressed;
+
+    @Override
+    public void copyInto(Message msg) {
+      if (!(msg instanceof VaccineEligibilityMsg)) {
+        throw new IllegalArgumentException("Can only copy into another VaccineEligibilityMsg.");
+      }
+      VaccineEligibilityMsg eligibilityMsg = (VaccineEligibilityMsg) msg;
+      eligibilityMsg.priorityTier = this.priorityTier;
+      eligibilityMsg.isSuppressed = this.isSuppressed;
+    }
+  }
 
   public static class VaccineAdministeredMsg extends Message.Empty {}
 }
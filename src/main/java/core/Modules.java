@@ -36,4 +36,11 @@ public interface Modules {
           long numTestsToRun);
 
   Set<Integer> getPlaceTypesOmittedFromContactTracing();
+
+  /**
+   * Return the contact model for a place. This is called once per place, when its {@link
+   * PlaceAgent} is created. Models other than {@link ContactModel#forNetworkType} should only be
+   * returned if {@link Globals#useModuleContactModels} is set.
+   */
+  ContactModel getContactModel(PlaceInfo placeInfo, Globals globals);
 }
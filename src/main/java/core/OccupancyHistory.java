@@ -0,0 +1,308 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The people at a place on each recent step it had visitors, kept for contact tracing.
+ *
+ * <p>Entries live in a fixed-capacity ring, so expiring old steps does not shift anything. Each
+ * roster is a sorted {@code long[]} that is never modified once recorded, which lets a {@link
+ * Snapshot} share the rosters instead of copying them.
+ *
+ * <p>Suites, offices and recurring courses tend to see the same people step after step, so rosters
+ * are interned: a roster equal to one already held reuses that array. Serializing a snapshot also
+ * writes each shared array only once.
+ */
+public final class OccupancyHistory {
+  // Array header plus length, as laid out by a 64-bit JVM with compressed pointers
+  private static final long ARRAY_OVERHEAD_BYTES = 16;
+
+  private final int[] steps;
+  private final long[][] rosters;
+  private final int[] rosterHashes;
+  private int head = 0;
+  private int size = 0;
+
+  public OccupancyHistory(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+    }
+    this.steps = new int[capacity];
+    this.rosters = new long[capacity][];
+    this.rosterHashes = new int[capacity];
+  }
+
+  /** The number of steps that fill a tracing window, see {@link Globals#contactTracingNumberOfDaysTraceback}. */
+  public static int capacityFor(Globals globals) {
+    return Math.max(globals.contactTracingNumberOfDaysTraceback * globals.tOneDay, 1);
+  }
+
+  public int capacity() {
+    return steps.length;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int step(int i) {
+    return steps[slot(i)];
+  }
+
+  public int rosterSize(int i) {
+    return rosters[slot(i)].length;
+  }
+
+  public long occupant(int i, int j) {
+    return rosters[slot(i)][j];
+  }
+
+  /**
+   * Records {@code sortedRoster}, which must be sorted and distinct and is not copied, as the people
+   * present on {@code step}. Steps must be added in increasing order; a second roster for the latest
+   * step is merged into it. If the history is full, the oldest step is dropped.
+   */
+  public void add(int step, long[] sortedRoster) {
+    add(step, sortedRoster, sortedRoster.length, sortedRoster);
+  }
+
+  /**
+   * Records the first {@code length} ids of {@code sortedIds}, which must be sorted and distinct, as
+   * the people present on {@code step}. The ids are only copied if no equal roster is held already,
+   * so {@code sortedIds} can be a reused buffer.
+   */
+  public void add(int step, long[] sortedIds, int length) {
+    add(step, sortedIds, length, null);
+  }
+
+  private void add(int step, long[] sortedIds, int length, long[] owned) {
+    if (size > 0) {
+      int latest = step(size - 1);
+      if (step < latest) {
+        throw new IllegalArgumentException(
+            "Steps must be added in increasing order, got " + step + " after " + latest);
+      }
+      if (step == latest) {
+        int s = slot(size - 1);
+        long[] merged = mergeSorted(rosters[s], rosters[s].length, sortedIds, length);
+        int hash = hash(merged, merged.length);
+        rosters[s] = intern(merged, merged.length, hash, merged);
+        rosterHashes[s] = hash;
+        return;
+      }
+    }
+    if (size == capacity()) {
+      dropOldest();
+    }
+    int hash = hash(sortedIds, length);
+    long[] roster = intern(sortedIds, length, hash, owned);
+    int s = slot(size);
+    steps[s] = step;
+    rosters[s] = roster;
+    rosterHashes[s] = hash;
+    size++;
+  }
+
+  /**
+   * Returns a held roster equal to the first {@code length} of {@code ids}, newest first since
+   * repeats are most often recent, or else {@code owned} if given, or a copy.
+   */
+  private long[] intern(long[] ids, int length, int hash, long[] owned) {
+    for (int i = size - 1; i >= 0; i--) {
+      int s = slot(i);
+      if (rosterHashes[s] == hash && equalsPrefix(rosters[s], ids, length)) {
+        return rosters[s];
+      }
+    }
+    return owned != null ? owned : Arrays.copyOf(ids, length);
+  }
+
+  private static int hash(long[] ids, int length) {
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + Long.hashCode(ids[i]);
+    }
+    return hash;
+  }
+
+  private static boolean equalsPrefix(long[] roster, long[] ids, int length) {
+    if (roster.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (roster[i] != ids[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Drops every step before {@code step}. */
+  public void evictBefore(int step) {
+    while (size > 0 && steps[head] < step) {
+      dropOldest();
+    }
+  }
+
+  /**
+   * Returns a read-only view of the steps recorded so far. The view holds on to the recorded
+   * rosters rather than copying them, and later changes to this history do not show through it.
+   */
+  public Snapshot snapshot() {
+    int[] snapshotSteps = new int[size];
+    long[][] snapshotRosters = new long[size][];
+    for (int i = 0; i < size; i++) {
+      int s = slot(i);
+      snapshotSteps[i] = steps[s];
+      snapshotRosters[i] = rosters[s];
+    }
+    return new Snapshot(snapshotSteps, snapshotRosters);
+  }
+
+  /**
+   * Like {@link #snapshot()}, but only holds the steps in {@code sortedSteps}, which must be in
+   * increasing order.
+   */
+  public Snapshot snapshot(int[] sortedSteps) {
+    int[] snapshotSteps = new int[Math.min(size, sortedSteps.length)];
+    long[][] snapshotRosters = new long[snapshotSteps.length][];
+    int n = 0;
+    int i = 0;
+    for (int step : sortedSteps) {
+      while (i < size && step(i) < step) {
+        i++;
+      }
+      if (i == size) {
+        break;
+      }
+      if (step(i) == step && (n == 0 || snapshotSteps[n - 1] != step)) {
+        snapshotSteps[n] = step;
+        snapshotRosters[n] = rosters[slot(i)];
+        n++;
+      }
+    }
+    return new Snapshot(Arrays.copyOf(snapshotSteps, n), Arrays.copyOf(snapshotRosters, n));
+  }
+
+  /** The number of distinct roster arrays held, after interning. */
+  public int numDistinctRosters() {
+    Set<long[]> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < size; i++) {
+      distinct.add(rosters[slot(i)]);
+    }
+    return distinct.size();
+  }
+
+  /** An estimate of the heap used by this history and the rosters it holds, in bytes. */
+  public long estimatedBytes() {
+    long bytes = 2 * (ARRAY_OVERHEAD_BYTES + 4L * steps.length)
+        + ARRAY_OVERHEAD_BYTES + 8L * rosters.length;
+    Set<long[]> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < size; i++) {
+      long[] roster = rosters[slot(i)];
+      if (counted.add(roster)) {
+        bytes += ARRAY_OVERHEAD_BYTES + 8L * roster.length;
+      }
+    }
+    return bytes;
+  }
+
+  private int slot(int i) {
+    int s = head + i;
+    return s < steps.length ? s : s - steps.length;
+  }
+
+  private void dropOldest() {
+    rosters[head] = null;
+    head = slot(1);
+    size--;
+  }
+
+  static long[] mergeSorted(long[] a, int aLength, long[] b, int bLength) {
+    long[] merged = new long[aLength + bLength];
+    int n = mergeSortedInto(a, aLength, b, bLength, merged);
+    return n == merged.length ? merged : Arrays.copyOf(merged, n);
+  }
+
+  /**
+   * Merges two sorted, distinct id arrays into {@code out}, which must hold {@code aLength +
+   * bLength} ids, dropping repeats. Returns the number of ids written.
+   */
+  static int mergeSortedInto(long[] a, int aLength, long[] b, int bLength, long[] out) {
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < aLength || j < bLength) {
+      long next;
+      if (j == bLength || (i < aLength && a[i] <= b[j])) {
+        next = a[i++];
+      } else {
+        next = b[j++];
+      }
+      if (n == 0 || out[n - 1] != next) {
+        out[n++] = next;
+      }
+    }
+    return n;
+  }
+
+  /** A read-only view of an {@link OccupancyHistory}, in increasing step order. */
+  public static final class Snapshot implements Serializable {
+    private static final Snapshot EMPTY = new Snapshot(new int[0], new long[0][]);
+
+    private final int[] steps;
+    private final long[][] rosters;
+
+    private Snapshot(int[] steps, long[][] rosters) {
+      this.steps = steps;
+      this.rosters = rosters;
+    }
+
+    public static Snapshot empty() {
+      return EMPTY;
+    }
+
+    public int size() {
+      return steps.length;
+    }
+
+    public int step(int i) {
+      return steps[i];
+    }
+
+    /** The index of {@code step} in this snapshot, or -1 if the place had no visitors then. */
+    public int indexOfStep(int step) {
+      int i = Arrays.binarySearch(steps, step);
+      return i >= 0 ? i : -1;
+    }
+
+    public int rosterSize(int i) {
+      return rosters[i].length;
+    }
+
+    public long occupant(int i, int j) {
+      return rosters[i][j];
+    }
+
+    public boolean contains(int i, long personId) {
+      return Arrays.binarySearch(rosters[i], personId) >= 0;
+    }
+
+    // The sorted roster of the ith step, which must not be modified
+    long[] roster(int i) {
+      return rosters[i];
+    }
+
+    /** Adds the people present at the {@code i}th step to {@code out}. */
+    public void addOccupantsTo(int i, Collection<Long> out) {
+      for (long personId : rosters[i]) {
+        out.add(personId);
+      }
+    }
+  }
+}
@@ -4,17 +4,16 @@ import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import simudyne.core.abm.Action;
 import simudyne.core.abm.Agent;
 import simudyne.core.annotations.Variable;
+import simudyne.core.graph.Message;
 import simudyne.core.rng.SeededRandom;
 
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import static core.Utils.sortedCopyBySender;
 
@@ -72,8 +71,23 @@ public class Person extends Agent<Globals> implements Suppressible {
   public long startedIsolatingFromContactNotifyAt = Long.MIN_VALUE;
   public DailySchedule dailySchedule = DailySchedule.dummy();
   private boolean infectedFromSusceptibleThisStep = false;
+  // This person's row in Globals#getPersonStateStore, claimed when it is first written
+  private int stateRow = -1;
   @VisibleForTesting
-  List<ImmutableList<Long>> placeHistory = new ArrayList<>();
+  // The places visited on each recent step
+  final PlaceHistory placeHistory = new PlaceHistory();
+  // The places visited this step: the current places, then the additional places
+  private PlaceInfo[] visitedPlaces = new PlaceInfo[4];
+  // The indices of visitedPlaces into Globals#getPlaceTable, if Globals#usePlaceTable is set
+  private int[] visitedPlaceIndices = new int[4];
+  private int numCurrentPlacesVisited = 0;
+  private int numPlacesVisited = 0;
+  // Whether each visited place was only sent an IAmPresentMsg, see Globals#useTwoPhasePresence
+  private boolean[] visitedPresenceOnly = new boolean[4];
+  // The last PersonTransmissibilityInfo sent without and with a mask, at current and then at
+  // additional places, reused while nothing it holds has changed
+  private final PersonTransmissibilityInfo[] transmissibilityInfos = new PersonTransmissibilityInfo[4];
+  private FastRandom fastRandom;
 
   // Compliances
   // TODO: Normalize compliance names
@@ -130,6 +144,14 @@ public class Person extends Agent<Globals> implements Suppressible {
   public static Action<Person> initPerson =
       Action.create(Person.class, Person::init);
 
+  /** This person's {@link FastRandom} stream, seeded from {@link #getPrng()} on first use. */
+  public FastRandom getFastRandom() {
+    if (fastRandom == null) {
+      fastRandom = FastRandom.from(getPrng());
+    }
+    return fastRandom;
+  }
+
   /**
    * Called at simulation start. Subclasses can override, but should call super.init().
    */
@@ -168,7 +190,7 @@ public class Person extends Agent<Globals> implements Suppressible {
     // Determine person that are initially infected
     this.status = info.initialInfectionStatusSupplier().get();
     if (this.status == InfectionStatus.INFECTED) {
-      this.timeInfected = getPrng().discrete(-7, 0).sample();
+      this.timeInfected = getFastRandom().nextInt(-7, 0);
     }
 
     this.suppressed = info.suppressionSupplier().get();
@@ -237,6 +259,7 @@ public class Person extends Agent<Globals> implements Suppressible {
    * May be called in child classes to set the current place.
    */
   public void setCurrentPlaces(List<PlaceInfo> currentPlaceInfos) {
+    // Does not copy a list which is already immutable, such as one from the schedule
     this.currentPlaceInfos = ImmutableList.copyOf(currentPlaceInfos);
   }
 
@@ -256,27 +279,28 @@ public class Person extends Agent<Globals> implements Suppressible {
   }
 
   public ImmutableList<PlaceInfo> getCurrentAndAdditionalPlaceInfos() {
+    ImmutableList<PlaceInfo> currentPlaces = this.getCurrentPlaces();
+    ImmutableList<PlaceInfo> additionalPlaces = this.getAdditionalPlaceInfos();
+    if (additionalPlaces.isEmpty()) {
+      return currentPlaces;
+    }
     return ImmutableList.<PlaceInfo>builder()
-            .addAll(this.getCurrentPlaces())
-            .addAll(this.getAdditionalPlaceInfos())
+            .addAll(currentPlaces)
+            .addAll(additionalPlaces)
             .build();
   }
 
   public ImmutableList<PlaceInfo> getCurrentPlaces() {
-    return ImmutableList.<PlaceInfo>builder()
-        .addAll(this.currentPlaceInfos)
-        .build();
+    return this.currentPlaceInfos;
   }
 
   public ImmutableList<PlaceInfo> getAdditionalPlaceInfos() {
-    return ImmutableList.<PlaceInfo>builder()
-            .addAll(this.additionalPlaceInfos)
-            .build();
+    return this.additionalPlaceInfos;
   }
 
   public boolean choosesToIsolate() {
     return ((isSelfIsolatingBecauseOfSymptoms || isSelfIsolatingBecauseOfContactTracing)
-        && getPrng().uniform(0, 1).sample() < complianceIsolating)
+        && getFastRandom().nextDouble() < complianceIsolating)
         || getGlobals().forceAllAgentsToIsolate;
   }
 
@@ -292,17 +316,35 @@ public class Person extends Agent<Globals> implements Suppressible {
    * Subclasses should override this method if there is any implementation specific schedule logic.
    */
   public void decideNextLocationIfNotIsolating() {
-    setCurrentPlaces(
-        ImmutableList.sortedCopyOf(
-            Comparator.comparingLong(PlaceInfo::placeId),
-            getScheduledPlaces().stream()
-                .filter(this::isAttendingToday)
-                .collect(Collectors.toList())));
+    List<PlaceInfo> scheduledPlaces = getScheduledPlaces();
+    // Every scheduled place is asked about in order, so optional places draw the same randoms
+    // whichever of them are attended. Only a day with a place skipped needs a list of its own.
+    ImmutableList.Builder<PlaceInfo> attending = null;
+    for (int i = 0; i < scheduledPlaces.size(); i++) {
+      PlaceInfo place = scheduledPlaces.get(i);
+      if (isAttendingToday(place)) {
+        if (attending != null) {
+          attending.add(place);
+        }
+      } else if (attending == null) {
+        attending = ImmutableList.builder();
+        attending.addAll(scheduledPlaces.subList(0, i));
+      }
+    }
+    if (attending != null) {
+      setCurrentPlaces(
+          ImmutableList.sortedCopyOf(Comparator.comparingLong(PlaceInfo::placeId), attending.build()));
+    } else if (scheduledPlaces == dailySchedule.placesAt(getGlobals().tStep)) {
+      setCurrentPlaces(dailySchedule.placesByPlaceIdAt(getGlobals().tStep));
+    } else {
+      setCurrentPlaces(
+          ImmutableList.sortedCopyOf(Comparator.comparingLong(PlaceInfo::placeId), scheduledPlaces));
+    }
   }
 
   public List<PlaceInfo> getScheduledPlaces() {
     doRandomSleepIfTesting();
-    return dailySchedule.placesAtStepMap().get(getGlobals().tStep % dailySchedule.placesAtStepMap().size());
+    return dailySchedule.placesAt(getGlobals().tStep);
   }
 
   /**
@@ -353,7 +395,7 @@ public class Person extends Agent<Globals> implements Suppressible {
     // Potential Addition of Inputs: Age of Agent
     // By having the age of an agent as input, we are able to change the proportion of asymptomatic,
     // symptomatic and severe cases
-    double severity = getPrng().uniform(0, 1).sample();
+    double severity = getFastRandom().nextDouble();
     InfectionTrajectoryDistribution trajectoryDistribution = getInfectionTrajectoryDistribution();
 
     int tInfectious = 0;
@@ -364,29 +406,23 @@ public class Person extends Agent<Globals> implements Suppressible {
     // asymptomatic cases
     if (severity < trajectoryDistribution.percentageAsymptomaticCases()) {
       tInfectious =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.infectiousRangeStart(),
-                  trajectoryDistribution.infectiousRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.infectiousRangeStart(),
+              trajectoryDistribution.infectiousRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       illnessDuration =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.illnessDurationNonSevereRangeStart(),
-                  trajectoryDistribution.illnessDurationNonSevereRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.illnessDurationNonSevereRangeStart(),
+              trajectoryDistribution.illnessDurationNonSevereRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       symptomsOnset =
-              getPrng()
-                      .discrete(
-                              trajectoryDistribution.symptomsOnsetRangeStart(),
-                              trajectoryDistribution.symptomsOnsetRangeEnd())
-                      .sample()
-                      * getGlobals().tOneDay
-                      + stepInfected;
+          getFastRandom().nextInt(
+              trajectoryDistribution.symptomsOnsetRangeStart(),
+              trajectoryDistribution.symptomsOnsetRangeEnd())
+              * getGlobals().tOneDay
+              + stepInfected;
       isAsymptomatic = true;
     }
     // symptomatic cases
@@ -395,54 +431,42 @@ public class Person extends Agent<Globals> implements Suppressible {
         < trajectoryDistribution.percentageAsymptomaticCases()
         + trajectoryDistribution.percentageNonSevereSymptomaticCases()) {
       tInfectious =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.infectiousRangeStart(),
-                  trajectoryDistribution.infectiousRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.infectiousRangeStart(),
+              trajectoryDistribution.infectiousRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       illnessDuration =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.illnessDurationNonSevereRangeStart(),
-                  trajectoryDistribution.illnessDurationNonSevereRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.illnessDurationNonSevereRangeStart(),
+              trajectoryDistribution.illnessDurationNonSevereRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       symptomsOnset =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.symptomsOnsetRangeStart(),
-                  trajectoryDistribution.symptomsOnsetRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.symptomsOnsetRangeStart(),
+              trajectoryDistribution.symptomsOnsetRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
     }
     // severe cases
     else if (severity >= (1 - trajectoryDistribution.percentageSevereCases())) {
       tInfectious =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.infectiousRangeStart(),
-                  trajectoryDistribution.infectiousRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.infectiousRangeStart(),
+              trajectoryDistribution.infectiousRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       illnessDuration =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.illnessDurationSevereRangeStart(),
-                  trajectoryDistribution.illnessDurationSevereRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.illnessDurationSevereRangeStart(),
+              trajectoryDistribution.illnessDurationSevereRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
       symptomsOnset =
-          getPrng()
-              .discrete(
-                  trajectoryDistribution.symptomsOnsetRangeStart(),
-                  trajectoryDistribution.symptomsOnsetRangeEnd())
-              .sample()
+          getFastRandom().nextInt(
+              trajectoryDistribution.symptomsOnsetRangeStart(),
+              trajectoryDistribution.symptomsOnsetRangeEnd())
               * getGlobals().tOneDay
               + stepInfected;
     } else {
@@ -491,7 +515,7 @@ public class Person extends Agent<Globals> implements Suppressible {
             * (illnessDuration - symptomOnset);
 
     // Random probability for death
-    double pKilled = getPrng().uniform(0, 1).sample();
+    double pKilled = getFastRandom().nextDouble();
 
     return pKilled < pAgeDeathThres;
   }
@@ -544,6 +568,30 @@ public class Person extends Agent<Globals> implements Suppressible {
     }
   }
 
+  /**
+   * Used instead of {@link #updateAccumulators()} when {@link Globals#usePersonStateStore} is set.
+   * Records this person's state in their row of the store, and {@link
+   * CentralAgent#updateInfectionStatistics} counts every row at once.
+   */
+  private void writeState(boolean leftInfectedThisStep) {
+    PersonStateStore store = getGlobals().getPersonStateStore();
+    if (stateRow < 0) {
+      stateRow = store.addRow();
+    }
+    byte flags = 0;
+    if (isSelfIsolatingBecauseOfSymptoms || isSelfIsolatingBecauseOfContactTracing) {
+      flags |= PersonStateStore.ISOLATING;
+    }
+    if (infectedFromSusceptibleThisStep) {
+      flags |= PersonStateStore.INFECTED_THIS_STEP;
+      infectedFromSusceptibleThisStep = false;
+    }
+    if (leftInfectedThisStep) {
+      flags |= PersonStateStore.LEFT_INFECTED_THIS_STEP;
+    }
+    store.write(stateRow, getGlobals().tStep, status, tInfectious, flags);
+  }
+
   // Used in the initialisation step t=0
   public static Action<Person> setupInitialInfectionState =
       ActionFactory.createSuppressibleAction(
@@ -587,7 +635,7 @@ public class Person extends Agent<Globals> implements Suppressible {
       ActionFactory.createSuppressibleAction(
           Person.class,
           person -> {
-            if (person.getPrng().uniform(0.0, 1.0).sample()
+            if (person.getFastRandom().nextDouble()
                 < person.probHostsAdditionalEvent) {
               person.generateAdditionalPlace().forEach(
                   place -> {
@@ -604,7 +652,7 @@ public class Person extends Agent<Globals> implements Suppressible {
             ImmutableList.Builder<PlaceInfo> builder = ImmutableList.builder();
             sortedCopyBySender(person.getMessagesOfType(Messages.PlaceInfoMessage.class))
                 .forEach(msg -> {
-                  if (person.getPrng().uniform(0.0, 1.0).sample() < person.probAttendsAdditionalEvent) {
+                  if (person.getFastRandom().nextDouble() < person.probAttendsAdditionalEvent) {
                     builder.add(msg.getBody());
                   }
                 });
@@ -625,18 +673,70 @@ public class Person extends Agent<Globals> implements Suppressible {
                     double percInfected = person.getGlobals().numToRandomlyInfect /
                             (double)numActiveNotInfected;
 
-                    if(person.getPrng().uniform(0.0, 1.0).sample() < percInfected) {
+                    if(person.getFastRandom().nextDouble() < percInfected) {
                       person.setInfected();
                     }
                   }
           );
 
-  private void updatePlaceHistory() {
-    ImmutableList.Builder<Long> builder = new ImmutableList.Builder<>();
-    getCurrentAndAdditionalPlaceInfos().stream().map(PlaceInfo::placeId).forEach(builder::add);
-    placeHistory.add(builder.build());
-    if (placeHistory.size() > getGlobals().contactTracingNumberOfDaysTraceback * getGlobals().tOneDay) {
-      placeHistory.remove(0);
+  /**
+   * Reads the places this person is going to this step into reused buffers, so that reporting
+   * presence and recording place history do not rebuild the place lists. If {@link
+   * Globals#usePlaceTable} is set, the places are also looked up in the {@link PlaceTable}, and
+   * places straight from the schedule use the indices their {@link ScheduleStep} already looked up.
+   */
+  @VisibleForTesting
+  void recordPlacesVisited() {
+    ImmutableList<PlaceInfo> currentPlaces = getCurrentPlaces();
+    ImmutableList<PlaceInfo> additionalPlaces = getAdditionalPlaceInfos();
+    int numPlaces = currentPlaces.size() + additionalPlaces.size();
+    if (numPlaces > visitedPlaces.length) {
+      visitedPlaces = new PlaceInfo[Math.max(numPlaces, 2 * visitedPlaces.length)];
+      visitedPlaceIndices = new int[visitedPlaces.length];
+      visitedPresenceOnly = new boolean[visitedPlaces.length];
+    }
+    numPlacesVisited = 0;
+    for (int i = 0; i < currentPlaces.size(); i++) {
+      visitedPlaces[numPlacesVisited++] = currentPlaces.get(i);
+    }
+    numCurrentPlacesVisited = numPlacesVisited;
+    for (int i = 0; i < additionalPlaces.size(); i++) {
+      visitedPlaces[numPlacesVisited++] = additionalPlaces.get(i);
+    }
+    if (getGlobals().usePlaceTable) {
+      lookUpPlacesVisited(currentPlaces);
+    }
+  }
+
+  // Fills in visitedPlaceIndices for the places read by recordPlacesVisited
+  private void lookUpPlacesVisited(ImmutableList<PlaceInfo> currentPlaces) {
+    int firstUnscheduled = 0;
+    ScheduleStep scheduledStep = dailySchedule.template().stepAt(getGlobals().tStep);
+    if (scheduledStep.isPlacesByPlaceId(currentPlaces)) {
+      int[] scheduledPlaceIndices = scheduledStep.placeIndicesByPlaceId(getGlobals());
+      System.arraycopy(
+          scheduledPlaceIndices, 0, visitedPlaceIndices, 0, scheduledPlaceIndices.length);
+      firstUnscheduled = scheduledPlaceIndices.length;
+    }
+    for (int visit = firstUnscheduled; visit < numPlacesVisited; visit++) {
+      visitedPlaceIndices[visit] = getGlobals().placeIndexOf(visitedPlaces[visit]);
+    }
+  }
+
+  /** The PlaceAgent that this person reports to at the {@code visit}th place visited this step. */
+  private long placeIdFor(int visit) {
+    return getGlobals().usePlaceTable
+        ? getGlobals().getPlaceTable().placeIdFor(visitedPlaceIndices[visit], getID())
+        : visitedPlaces[visit].placeIdFor(getID());
+  }
+
+  @VisibleForTesting
+  void updatePlaceHistory() {
+    int capacity = getGlobals().contactTracingNumberOfDaysTraceback * getGlobals().tOneDay;
+    if (getGlobals().usePlaceTable) {
+      placeHistory.record(getGlobals().tStep, visitedPlaceIndices, numPlacesVisited, capacity);
+    } else {
+      placeHistory.record(getGlobals().tStep, visitedPlaces, numPlacesVisited, capacity);
     }
   }
 
@@ -668,17 +768,28 @@ public class Person extends Agent<Globals> implements Suppressible {
           );
 
   /**
-   * Sends {@link Messages.ReportForVaccineMsg} to {@link CentralAgent} to try and get
-   * a vaccine.
+   * The tier in which this agent is offered a vaccine, where lower tiers are offered vaccines first.
    *
-   * Here is where we can implement vaccine adoption logic.
+   * Here is where we can implement vaccine priority logic.
    */
-  public static Action<Person> reportForVaccine =
-          ActionFactory.createSuppressibleAction(
+  public int getVaccinePriorityTier() {
+    return 0;
+  }
+
+  /**
+   * Sends {@link Messages.VaccineEligibilityMsg} to {@link CentralAgent#registerVaccineEligibility}
+   * once, if this agent may still be vaccinated. The central agent then keeps track of who is
+   * eligible, so agents do not report for a vaccine every step.
+   */
+  public static Action<Person> registerForVaccine =
+          Action.create(
                   Person.class,
                   person -> {
-                    if (!person.isVaccinated) {
-                      person.send(Messages.ReportForVaccineMsg.class).to(person.getGlobals().centralAgentID);
+                    if (!person.isVaccinated && person.status != InfectionStatus.DEAD) {
+                      person.send(Messages.VaccineEligibilityMsg.class, msg -> {
+                        msg.priorityTier = person.getVaccinePriorityTier();
+                        msg.isSuppressed = person.isSuppressed();
+                      }).to(person.getGlobals().centralAgentID);
                     }
                   }
           );
@@ -706,46 +817,102 @@ public class Person extends Agent<Globals> implements Suppressible {
       ActionFactory.createSuppressibleAction(
           Person.class,
           person -> {
+            person.numPlacesVisited = 0;
             if (person.status != InfectionStatus.DEAD) {
+              person.recordPlacesVisited();
               person.updatePlaceHistory();
-              person.getCurrentPlaces().forEach(
-                  place -> {
-                    boolean willWearMask =
-                        person.getLikelihoodOfWearingMaskAtPlace(place)
-                            > person.getPrng().uniform(0, 1).sample();
-                    PersonTransmissibilityInfo transmissibilityInfo =
-                        PersonTransmissibilityInfo.create(person, willWearMask);
-
-                    person
-                        .send(
-                            Messages.IAmHereMsg.class,
-                            msg -> {
-                              msg.transmissibilityInfo = transmissibilityInfo;
-                            })
-                        .to(place.placeId());
-                  });
+              for (int visit = 0; visit < person.numPlacesVisited; visit++) {
+                person.reportPresence(visit);
+              }
+            }
+          });
 
-              person.getAdditionalPlaceInfos().forEach(
-                      place -> {
-                        boolean willWearMask =
-                                (person.getLikelihoodOfWearingMaskAtPlace(place) *
-                                        person.getGlobals().additionalPlaceCompRed)
-                                        > person.getPrng().uniform(0, 1).sample();
-                        PersonTransmissibilityInfo transmissibilityInfo =
-                                PersonTransmissibilityInfo.create(person, willWearMask,
-                                        person.getGlobals().additionalPlaceCompRed);
-
-                        person
-                                .send(
-                                        Messages.IAmHereMsg.class,
-                                        msg -> {
-                                          msg.transmissibilityInfo = transmissibilityInfo;
-                                        })
-                                .to(place.placeId());
-                      });
+  /**
+   * Does nothing unless {@link Globals#useTwoPhasePresence} is set.
+   *
+   * <p>Receives {@link Messages.RequestTransmissibilityMsg} from {@link PlaceAgent#receivePresence}
+   * and sends the {@link Messages.IAmHereMsg} that was held back in {@link #executeMovement} to
+   * {@link PlaceAgent#generateContactsAndInfect}.
+   */
+  public static Action<Person> sendTransmissibilityInfo =
+      ActionFactory.createSuppressibleAction(
+          Person.class,
+          person -> {
+            if (!person.getGlobals().useTwoPhasePresence) {
+              return;
             }
+            person.getMessagesOfType(Messages.RequestTransmissibilityMsg.class).stream()
+                .map(Message::getSender)
+                .distinct()
+                .sorted()
+                .forEach(placeId -> {
+                  for (int visit = 0; visit < person.numPlacesVisited; visit++) {
+                    if (person.visitedPresenceOnly[visit] && person.placeIdFor(visit) == placeId) {
+                      person.sendIAmHereMsg(visit);
+                    }
+                  }
+                });
           });
 
+  /**
+   * Sends an {@link Messages.IAmHereMsg} to the {@code visit}th place visited this step, unless
+   * {@link Globals#useTwoPhasePresence} is set and this person is not infected, in which case only
+   * an {@link Messages.IAmPresentMsg} is sent.
+   */
+  private void reportPresence(int visit) {
+    visitedPresenceOnly[visit] =
+        getGlobals().useTwoPhasePresence && status != InfectionStatus.INFECTED;
+    if (visitedPresenceOnly[visit]) {
+      send(Messages.IAmPresentMsg.class).to(placeIdFor(visit));
+    } else {
+      sendIAmHereMsg(visit);
+    }
+  }
+
+  private void sendIAmHereMsg(int visit) {
+    PersonTransmissibilityInfo transmissibilityInfo = transmissibilityInfoAt(visit);
+
+    send(
+        Messages.IAmHereMsg.class,
+        msg -> {
+          msg.transmissibilityInfo = transmissibilityInfo;
+        })
+        .to(placeIdFor(visit));
+  }
+
+  /**
+   * Decides whether this person wears a mask at the {@code visit}th place visited this step, and
+   * returns what they send there. The info is immutable, so the last one sent with the same values is
+   * sent again.
+   */
+  @VisibleForTesting
+  PersonTransmissibilityInfo transmissibilityInfoAt(int visit) {
+    PlaceInfo place = visitedPlaces[visit];
+    boolean isAdditionalPlace = visit >= numCurrentPlacesVisited;
+    boolean willWearMask;
+    double reduction;
+    if (isAdditionalPlace) {
+      willWearMask =
+          (getLikelihoodOfWearingMaskAtPlace(place) * getGlobals().additionalPlaceCompRed)
+              > getFastRandom().nextDouble();
+      reduction = getGlobals().additionalPlaceCompRed;
+    } else {
+      willWearMask = getLikelihoodOfWearingMaskAtPlace(place) > getFastRandom().nextDouble();
+      reduction = 1;
+    }
+
+    int slot = (isAdditionalPlace ? 2 : 0) + (willWearMask ? 1 : 0);
+    PersonTransmissibilityInfo transmissibilityInfo = transmissibilityInfos[slot];
+    if (transmissibilityInfo == null
+        || !transmissibilityInfo.isFor(this, willWearMask, reduction)) {
+      transmissibilityInfo = isAdditionalPlace
+          ? PersonTransmissibilityInfo.create(this, willWearMask, reduction)
+          : PersonTransmissibilityInfo.create(this, willWearMask);
+      transmissibilityInfos[slot] = transmissibilityInfo;
+    }
+    return transmissibilityInfo;
+  }
+
   /**
    * Action to handle infection message from infected student to susceptible student
    */
@@ -903,16 +1070,16 @@ public class Person extends Agent<Globals> implements Suppressible {
 
       // Initially infected person may be isolating due to symptoms
       if (this.isSymptomatic()) {
-        double pIsolate = getPrng().uniform(0, 1).sample();
+        double pIsolate = getFastRandom().nextDouble();
         if (pIsolate < compQuarantineWhenSymptomatic) {
           isSelfIsolatingBecauseOfSymptoms = true;
         }
       }
 
       // Initially infected agents may be ordered to quarantine, and then they will based on comp
-      double pOrderedToQuarnatine = this.getPrng().uniform(0, 1).sample();
+      double pOrderedToQuarnatine = this.getFastRandom().nextDouble();
       if (pOrderedToQuarnatine < getGlobals().percInitialInfectedQuarantineOrder) {
-        double pIsolateFromContractNotify = this.getPrng().uniform(0, 1).sample();
+        double pIsolateFromContractNotify = this.getFastRandom().nextDouble();
         if (pIsolateFromContractNotify < this.complianceIsolateWhenContactNotified) {
           this.isSelfIsolatingBecauseOfContactTracing = true;
           this.startedIsolatingFromContactNotifyAt = 0;
@@ -929,7 +1096,7 @@ public class Person extends Agent<Globals> implements Suppressible {
       ActionFactory.createSuppressibleAction(
           Person.class,
           person -> {
-            double pReport = person.getPrng().uniform(0, 1).sample();
+            double pReport = person.getFastRandom().nextDouble();
 
             // TODO This should probably only happen once per infection trajectory,
             //      Not at each times step.
@@ -941,7 +1108,7 @@ public class Person extends Agent<Globals> implements Suppressible {
 
             // TODO This should probably only happen once per infection trajectory,
             //      Not at each times step.
-            double pIsolate = person.getPrng().uniform(0, 1).sample();
+            double pIsolate = person.getFastRandom().nextDouble();
             if (person.isFirstTimeSymptomatic()
                 && pIsolate < person.compQuarantineWhenSymptomatic) {
               person.isSelfIsolatingBecauseOfSymptoms = true;
@@ -972,7 +1139,7 @@ public class Person extends Agent<Globals> implements Suppressible {
           .filter(msg -> msg.exposureTime != null)
           .max(Comparator.comparingLong(msg -> msg.exposureTime));
 
-      double pIsolateFromContractNotify = this.getPrng().uniform(0, 1).sample();
+      double pIsolateFromContractNotify = this.getFastRandom().nextDouble();
       if (pIsolateFromContractNotify
           < this.complianceIsolateWhenContactNotified) {
         this.isSelfIsolatingBecauseOfContactTracing = true;
@@ -1055,11 +1222,9 @@ public class Person extends Agent<Globals> implements Suppressible {
     otherIllnessRecoveryTime =
         getGlobals().tStep
             + getGlobals().tOneDay
-            * getPrng()
-            .discrete(
+            * getFastRandom().nextInt(
                 getGlobals().otherIllnessDurationStart,
-                getGlobals().otherIllnessDurationEnd)
-            .sample();
+                getGlobals().otherIllnessDurationEnd);
   }
 
   public static Action<Person> getInfectedByOtherIllness =
@@ -1069,7 +1234,7 @@ public class Person extends Agent<Globals> implements Suppressible {
             if(person.status == InfectionStatus.SUPPRESSED) {
               return;
             }
-            double coin = person.getPrng().uniform(0, 1).sample();
+            double coin = person.getFastRandom().nextDouble();
             if (coin < person.getGlobals().otherIllnessInfectionRate) {
               person.setInfectedOtherIllness();
             }
@@ -1161,6 +1326,7 @@ public class Person extends Agent<Globals> implements Suppressible {
       ActionFactory.createSuppressibleAction(
           Person.class,
           person -> {
+            boolean wasInfected = person.status == InfectionStatus.INFECTED;
 
             // person has a probability of dying between symptoms onset and end of illness
             // (determined by illnessDuration)
@@ -1191,7 +1357,11 @@ public class Person extends Agent<Globals> implements Suppressible {
             }
 
             // update accumulators for console
-            person.updateAccumulators();
+            if (person.getGlobals().usePersonStateStore) {
+              person.writeState(wasInfected && person.status != InfectionStatus.INFECTED);
+            } else {
+              person.updateAccumulators();
+            }
           });
 
   public static Action<Person> externalInfections =
@@ -1199,7 +1369,7 @@ public class Person extends Agent<Globals> implements Suppressible {
           Person.class,
           person -> {
             if (person.status == InfectionStatus.SUSCEPTIBLE) {
-              double pExternalInfection = person.getPrng().uniform(0, 1).sample();
+              double pExternalInfection = person.getFastRandom().nextDouble();
 
               if (pExternalInfection < person.getGlobals().getExternalInfectionRate(person)) {
                 person.setInfected();
@@ -1259,8 +1429,30 @@ public class Person extends Agent<Globals> implements Suppressible {
       ActionFactory.createSuppressibleAction(Person.class, person -> {
         // Place history should contain up to contact traceback time
         if (person.hasMessagesOfType(Messages.StartInterviewMsg.class)) {
-          person.placeHistory.stream().flatMap(ImmutableList::stream).distinct().sorted().forEach(placeId -> {
-            person.send(Messages.RequestOccupancyMsg.class).to(placeId);
+          // Only ask each place for the steps this person was there
+          boolean usePlaceTable = person.getGlobals().usePlaceTable;
+          PlaceTable places = person.getGlobals().getPlaceTable();
+          SortedMap<Long, List<Integer>> stepsByPlace = new TreeMap<>();
+          for (int i = 0; i < person.placeHistory.size(); i++) {
+            int step = person.placeHistory.step(i);
+            for (int j = 0; j < person.placeHistory.numPlaces(i); j++) {
+              int placeIndex = usePlaceTable ? person.placeHistory.placeIndex(i, j) : -1;
+              PlaceInfo place = usePlaceTable ? null : person.placeHistory.place(i, j);
+              int numShards = usePlaceTable ? places.numPlaceIds(placeIndex) : place.numShards();
+              // Every shard of a sharded place, so contact tracing sees everyone at the place
+              for (int shard = 0; shard < numShards; shard++) {
+                List<Integer> steps = stepsByPlace.computeIfAbsent(
+                    usePlaceTable ? places.placeId(placeIndex, shard) : place.shardAgent(shard),
+                    id -> new ArrayList<>());
+                if (steps.isEmpty() || steps.get(steps.size() - 1) != step) {
+                  steps.add(step);
+                }
+              }
+            }
+          }
+          stepsByPlace.forEach((placeId, steps) -> {
+            final int[] stepsAtPlace = steps.stream().mapToInt(Integer::intValue).toArray();
+            person.send(Messages.RequestOccupancyMsg.class, msg -> msg.steps = stepsAtPlace).to(placeId);
           });
         }
       });
@@ -1275,31 +1467,47 @@ public class Person extends Agent<Globals> implements Suppressible {
         if (!person.hasMessagesOfType(Messages.OccupancyMsg.class)) {
           return;
         }
-        ImmutableList.Builder<ImmutableSet<java.lang.Long>> allContactsBuilder = new ImmutableList.Builder<>();
+        ImmutableList.Builder<ContactSet> allContactsBuilder = new ImmutableList.Builder<>();
 
         List<Messages.OccupancyMsg> occupancyMsgs =
             sortedCopyBySender(person.getMessagesOfType(Messages.OccupancyMsg.class));
 
-        Random r = new Random(person.getPrng().discrete(Integer.MIN_VALUE, Integer.MAX_VALUE).sample());
-        for (int i = 0; i < person.getGlobals().contactTracingNumberOfDaysTraceback * person.getGlobals().tOneDay; i++) {
-          Set<Long> contactsStepI = new HashSet<>();
-          for (Messages.OccupancyMsg msg : occupancyMsgs) {
-            if (msg.peoplePresent.size() <= i) {
-              continue;
+        Random r = new Random(person.getFastRandom().nextLong());
+        // Each reply only holds the steps this person was at the place, so each message is walked
+        // by step. The sorted rosters of a step are merged into one buffer, swapping with a second.
+        // Every step gets an entry, even one with no contacts, as the central agent works out the
+        // step of each entry from its position.
+        int[] nextEntry = new int[occupancyMsgs.size()];
+        long[] contactsAtStep = new long[16];
+        long[] mergeBuffer = new long[16];
+        int firstStep = Math.max(0, PlaceAgent.firstTracedStep(person.getGlobals()));
+        for (int step = firstStep; step <= person.getGlobals().tStep; step++) {
+          int numContacts = 0;
+          for (int m = 0; m < occupancyMsgs.size(); m++) {
+            OccupancyHistory.Snapshot occupancy = occupancyMsgs.get(m).occupancy;
+            while (nextEntry[m] < occupancy.size() && occupancy.step(nextEntry[m]) < step) {
+              nextEntry[m]++;
+            }
+            if (nextEntry[m] < occupancy.size() && occupancy.step(nextEntry[m]) == step) {
+              long[] roster = occupancy.roster(nextEntry[m]);
+              if (mergeBuffer.length < numContacts + roster.length) {
+                mergeBuffer = new long[2 * (numContacts + roster.length)];
+              }
+              numContacts = OccupancyHistory.mergeSortedInto(
+                  contactsAtStep, numContacts, roster, roster.length, mergeBuffer);
+              long[] merged = mergeBuffer;
+              mergeBuffer = contactsAtStep;
+              contactsAtStep = merged;
             }
-
-            contactsStepI.addAll(msg.peoplePresent.get(i));
           }
 
-          if (contactsStepI.isEmpty()) {
+          if (numContacts == 0) {
+            allContactsBuilder.add(ContactSet.empty());
             continue;
           }
 
-          ArrayList<Long> contactsCopy = new ArrayList<>(contactsStepI);
-          Collections.shuffle(contactsCopy, r);
-          int numContactsToRecall = (int) Math.rint(person.getGlobals().agentInterviewRecall * contactsCopy.size());
-          List<Long> recalledAgents = contactsCopy.subList(0, numContactsToRecall);
-          allContactsBuilder.add(ImmutableSet.copyOf(recalledAgents));
+          allContactsBuilder.add(ContactSet.fromSorted(contactsAtStep, numContacts)
+              .recall(person.getGlobals().agentInterviewRecall, r));
         }
 
         person.send(Messages.InterviewResultsMsg.class, msg -> {
@@ -1324,7 +1532,7 @@ public class Person extends Agent<Globals> implements Suppressible {
   }
 
   /**
-   * Sends {@link Messages.SupressionStatusMessage messages} to {@link CentralAgent#reassignSuppression}.
+   * Sends {@link Messages.SupressionStatusMessage messages} to {@link CentralAgent#registerSuppressionStatus}.
    */
   public static Action<Person> reportSuppression =
       new Action<>(Person.class,
@@ -1374,7 +1582,7 @@ public class Person extends Agent<Globals> implements Suppressible {
     if (placeInfo.placeOptionality() == PlaceInfo.Optionality.MANDATORY) {
       return true;
     }
-    return getPrng().uniform(0, 1).sample() < probGoesToOptionalPlace;
+    return getFastRandom().nextDouble() < probGoesToOptionalPlace;
   }
 
   /**
@@ -1730,6 +1938,21 @@ public class Person extends Agent<Globals> implements Suppressible {
               (person.isVaccinated) ? person.getGlobals().vaccineOutEfficacy : 0
       );
     }
+
+    /**
+     * Whether this holds the same values as {@code create(person, willWearMask, reduction)} would.
+     */
+    boolean isFor(Person person, boolean willWearMask, double reduction) {
+      return status() == person.status
+          && isInfectious() == person.isInfectious()
+          && isSymptomatic() == person.isSymptomatic()
+          && wearsMask() == (willWearMask ? person.maskType : MaskType.NONE)
+          && physicalDistCompliance() == person.compliancePhysicalDistancing * reduction
+          && contactRate() == person.contactRate
+          && inTransmissionImmunity() == (person.isVaccinated ? person.getGlobals().vaccineEfficacy : 0)
+          && outTransmissionImmunity()
+              == (person.isVaccinated ? person.getGlobals().vaccineOutEfficacy : 0);
+    }
   }
 
   // TODO Check if these mask type names correctly align with data, and add reference
@@ -1747,9 +1970,10 @@ public class Person extends Agent<Globals> implements Suppressible {
   @AutoValue
   public abstract static class DailySchedule {
     /**
-     * The places the person will go to at different tSteps.
+     * The places the person will go to at different tSteps, shared with everyone on the same
+     * schedule.
      */
-    public abstract ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap();
+    public abstract ScheduleTemplate template();
 
     /**
      * The places the person goes to when isolating.
@@ -1762,23 +1986,57 @@ public class Person extends Agent<Globals> implements Suppressible {
      */
     public abstract Consumer<Person> secondaryInitialization();
 
+    /**
+     * The places the person will go to at {@code tStep}.
+     */
+    public ImmutableList<PlaceInfo> placesAt(int tStep) {
+      return template().placesAt(tStep);
+    }
+
+    /**
+     * The places the person will go to at {@code tStep}, in order of their {@link
+     * PlaceInfo#placeId()}.
+     */
+    public ImmutableList<PlaceInfo> placesByPlaceIdAt(int tStep) {
+      return template().placesByPlaceIdAt(tStep);
+    }
+
+    /**
+     * The places the person will go to at each tStep of the schedule, built on each call.
+     */
+    public ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap() {
+      return template().placesAtStepMap();
+    }
+
     public static DailySchedule create(
-        ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap,
+        ScheduleTemplate template,
         ImmutableList<PlaceInfo> isolationPlaceInfos,
         Consumer<Person> secondaryInitialization) {
       return new AutoValue_Person_DailySchedule(
-          placesAtStepMap, isolationPlaceInfos, secondaryInitialization);
+          template, isolationPlaceInfos, secondaryInitialization);
+    }
+
+    public static DailySchedule create(
+        ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap,
+        ImmutableList<PlaceInfo> isolationPlaceInfos,
+        Consumer<Person> secondaryInitialization) {
+      return create(
+          ScheduleTemplate.of(placesAtStepMap), isolationPlaceInfos, secondaryInitialization);
     }
 
     public static DailySchedule create(
         ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap, ImmutableList<PlaceInfo> isolationPlaceInfos) {
-      return new AutoValue_Person_DailySchedule(placesAtStepMap, isolationPlaceInfos, p -> {
+      return create(ScheduleTemplate.of(placesAtStepMap), isolationPlaceInfos, p -> {
       });
     }
 
+    // Every Person starts with this until their real schedule arrives, so it is built only once
+    private static final DailySchedule DUMMY =
+        create(ImmutableMap.of(), ImmutableList.of(), person -> {
+        });
+
     public static DailySchedule dummy() {
-      return create(ImmutableMap.of(), ImmutableList.of(), person -> {
-      });
+      return DUMMY;
     }
   }
 }
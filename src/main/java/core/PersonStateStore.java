@@ -0,0 +1,188 @@
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The disease state of every {@link Person} in columns, one row per person, so that the counts the
+ * model reports each step are taken by looping over primitive arrays rather than by running an
+ * action on every person. See {@link Globals#usePersonStateStore}.
+ *
+ * <p>Each person writes its row at the end of {@link Person#recoverOrDieOrStep}, and the counts
+ * only include rows written on the step being counted, so suppressed people, who skip that action,
+ * are left out just as they were before. Rows are kept in blocks which never move, so a person may
+ * claim its row while others are writing theirs.
+ */
+public final class PersonStateStore {
+  static final int BLOCK_SIZE = 1 << 12;
+  // Blocks counted by one task before the work is split
+  private static final int BLOCKS_PER_TASK = 4;
+
+  /** Set if the person was isolating, for symptoms or because they were traced. */
+  public static final byte ISOLATING = 1;
+  /** Set if the person was infected from susceptible during the step. */
+  public static final byte INFECTED_THIS_STEP = 2;
+  /** Set if the person recovered or died in {@link Person#recoverOrDieOrStep} on the step. */
+  public static final byte LEFT_INFECTED_THIS_STEP = 4;
+
+  private static final Person.InfectionStatus[] STATUSES = Person.InfectionStatus.values();
+
+  private volatile Block[] blocks = new Block[0];
+  private int numRows = 0;
+
+  /** Claims a row for a new person. */
+  public synchronized int addRow() {
+    if (numRows == blocks.length * BLOCK_SIZE) {
+      Block[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+      grown[blocks.length] = new Block();
+      blocks = grown;
+    }
+    return numRows++;
+  }
+
+  public synchronized int numRows() {
+    return numRows;
+  }
+
+  /** Records the state of the person at {@code row} on {@code step}. */
+  public void write(int row, int step, Person.InfectionStatus status, int tInfectious, byte flags) {
+    Block block = blocks[row / BLOCK_SIZE];
+    int i = row % BLOCK_SIZE;
+    block.status[i] = (byte) status.ordinal();
+    block.tInfectious[i] = tInfectious;
+    block.flags[i] = flags;
+    block.writtenAtStep[i] = step;
+  }
+
+  public Person.InfectionStatus status(int row) {
+    return STATUSES[blocks[row / BLOCK_SIZE].status[row % BLOCK_SIZE]];
+  }
+
+  public int tInfectious(int row) {
+    return blocks[row / BLOCK_SIZE].tInfectious[row % BLOCK_SIZE];
+  }
+
+  public byte flags(int row) {
+    return blocks[row / BLOCK_SIZE].flags[row % BLOCK_SIZE];
+  }
+
+  /**
+   * Counts the rows written on {@code step}, splitting the blocks between the threads of the common
+   * {@link ForkJoinPool}. Must not run while rows are being written.
+   */
+  public Counts count(int step) {
+    Block[] counted = blocks;
+    return ForkJoinPool.commonPool().invoke(new CountTask(counted, 0, counted.length, step));
+  }
+
+  /**
+   * The number of people in each state, as {@link Person#updateAccumulators} and {@link
+   * Person#countInfected} count them.
+   */
+  public static final class Counts {
+    public long numSusceptible;
+    public long numQuarantineSusceptible;
+    public long numInfected;
+    public long numQuarantineInfected;
+    public long numRecovered;
+    public long numDead;
+    public long numInfectionsThisStep;
+    // Infected and infectious before anyone recovered or died on the step
+    public long currentInfected;
+    public long currentInfectious;
+
+    void add(Counts other) {
+      numSusceptible += other.numSusceptible;
+      numQuarantineSusceptible += other.numQuarantineSusceptible;
+      numInfected += other.numInfected;
+      numQuarantineInfected += other.numQuarantineInfected;
+      numRecovered += other.numRecovered;
+      numDead += other.numDead;
+      numInfectionsThisStep += other.numInfectionsThisStep;
+      currentInfected += other.currentInfected;
+      currentInfectious += other.currentInfectious;
+    }
+  }
+
+  private static final class Block {
+    final byte[] status = new byte[BLOCK_SIZE];
+    final int[] tInfectious = new int[BLOCK_SIZE];
+    final byte[] flags = new byte[BLOCK_SIZE];
+    final int[] writtenAtStep = new int[BLOCK_SIZE];
+
+    Block() {
+      // No row has been written on any step
+      Arrays.fill(writtenAtStep, Integer.MIN_VALUE);
+    }
+
+    void countInto(Counts counts, int step) {
+      byte susceptible = (byte) Person.InfectionStatus.SUSCEPTIBLE.ordinal();
+      byte infected = (byte) Person.InfectionStatus.INFECTED.ordinal();
+      byte recovered = (byte) Person.InfectionStatus.RECOVERED.ordinal();
+      byte dead = (byte) Person.InfectionStatus.DEAD.ordinal();
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        if (writtenAtStep[i] != step) {
+          continue;
+        }
+        byte s = status[i];
+        boolean isolating = (flags[i] & ISOLATING) != 0;
+        if (s == susceptible) {
+          counts.numSusceptible++;
+          if (isolating) {
+            counts.numQuarantineSusceptible++;
+          }
+        } else if (s == infected) {
+          counts.numInfected++;
+          if (isolating) {
+            counts.numQuarantineInfected++;
+          }
+        } else if (s == dead) {
+          counts.numDead++;
+        } else if (s == recovered) {
+          counts.numRecovered++;
+        }
+        if ((flags[i] & INFECTED_THIS_STEP) != 0) {
+          counts.numInfectionsThisStep++;
+        }
+        if (s == infected || (flags[i] & LEFT_INFECTED_THIS_STEP) != 0) {
+          counts.currentInfected++;
+          if (tInfectious[i] <= step) {
+            counts.currentInfectious++;
+          }
+        }
+      }
+    }
+  }
+
+  private static final class CountTask extends RecursiveTask<Counts> {
+    private final Block[] blocks;
+    private final int from;
+    private final int to;
+    private final int step;
+
+    CountTask(Block[] blocks, int from, int to, int step) {
+      this.blocks = blocks;
+      this.from = from;
+      this.to = to;
+      this.step = step;
+    }
+
+    @Override
+    protected Counts compute() {
+      if (to - from <= BLOCKS_PER_TASK) {
+        Counts counts = new Counts();
+        for (int b = from; b < to; b++) {
+          blocks[b].countInto(counts, step);
+        }
+        return counts;
+      }
+      int mid = (from + to) >>> 1;
+      CountTask left = new CountTask(blocks, from, mid, step);
+      left.fork();
+      Counts counts = new CountTask(blocks, mid, to, step).compute();
+      counts.add(left.join());
+      return counts;
+    }
+  }
+}
@@ -5,7 +5,6 @@ import com.google.common.collect.ImmutableList;
 import simudyne.core.abm.Action;
 import simudyne.core.abm.Agent;
 import simudyne.core.graph.Message;
-import simudyne.core.rng.SeededRandom;
 import tau.TAUModel;
 
 import java.util.*;
@@ -14,12 +13,33 @@ import java.util.stream.Collectors;
 import static core.Utils.sortedCopyBySender;
 
 public class PlaceAgent extends Agent<Globals> {
+  private static final int[] NO_CONTACTS = new int[0];
 
   private long placeId;
   private PlaceInfo placeInfo;
+  private ContactModel contactModel;
+  private FastRandom fastRandom;
+  private final ContactKernel contactKernel = new ContactKernel();
 
-  @VisibleForTesting
-  List<ImmutableList<Long>> occupancyHistory = new ArrayList<>();
+  // People present on this step, collected over the infection phase's actions. Only the people in
+  // presentOccupants sent their transmissibility details.
+  private final List<Messages.IAmHereMsg> presentOccupants = new ArrayList<>();
+  private long[] presentIds = new long[16];
+  private int numPresentIds = 0;
+  // Infectious people at the other shards of this place, see Globals#crossShardMixing
+  private final List<Messages.ShardPressureMsg> shardPressure = new ArrayList<>();
+  // People infected here this step, so cross-shard exposure does not infect them twice
+  private final LongHashSet infectedHere = new LongHashSet();
+  // The infectious people at the other shards, and the weight of each in the cross-shard hazard
+  private long[] shardInfectiousIds = new long[16];
+  private Person.PersonTransmissibilityInfo[] shardInfectiousInfos =
+      new Person.PersonTransmissibilityInfo[16];
+  private double[] shardInfectiousWeights = new double[16];
+  private int numShardInfectious = 0;
+
+  // Occupancy is only recorded on steps with visitors. Created on first use, once the tracing window
+  // is known.
+  private OccupancyHistory occupancyHistory;
 
   public void init() {
     this.placeId = this.getID();
@@ -33,6 +53,14 @@ public class PlaceAgent extends Agent<Globals> {
     return this.placeInfo;
   }
 
+  /** This place's {@link FastRandom} stream, seeded from {@link #getPrng()} on first use. */
+  public FastRandom getFastRandom() {
+    if (fastRandom == null) {
+      fastRandom = FastRandom.from(getPrng());
+    }
+    return fastRandom;
+  }
+
   public static Action<PlaceAgent> initPlaceAgent =
       Action.create(
           PlaceAgent.class,
@@ -54,6 +82,7 @@ public class PlaceAgent extends Agent<Globals> {
   @VisibleForTesting
   void setPlaceInfo(PlaceInfo placeInfo) {
     this.placeInfo = placeInfo;
+    this.contactModel = getGlobals().modules.getContactModel(placeInfo, getGlobals());
   }
 
   // Because the number of Places is not known at the start of the simulation, one PlaceAgent
@@ -71,6 +100,9 @@ public class PlaceAgent extends Agent<Globals> {
 
             // This initializes the single PlaceAgent that gets generated in VIVIDCoreModel#setup
             // before spawning all of the other PlaceAgents
+            for (PlaceInfo placeInfo : placeInfoList) {
+              placeInfo.setNumShards(numShards(placeInfo, pla.getGlobals()));
+            }
             pla.setPlaceInfo(placeInfoList.get(0));
             pla.placeInfo.receivePlaceAgent(pla.getID());
 
@@ -81,22 +113,131 @@ public class PlaceAgent extends Agent<Globals> {
                 agent.placeInfo.receivePlaceAgent(agent.getID());
               });
             }
+
+            // Shard 0 of a sharded place is the agent spawned for it above
+            for (PlaceInfo placeInfo : placeInfoList) {
+              for (int shard = 1; shard < placeInfo.numShards(); shard++) {
+                int finalShard = shard;
+                pla.spawn(PlaceAgent.class, agent -> {
+                  agent.setPlaceInfo(placeInfo);
+                  placeInfo.receiveShardAgent(finalShard, agent.getID());
+                });
+              }
+            }
+
+            if (pla.getGlobals().usePlaceTable) {
+              pla.getGlobals().setPlaceTable(PlaceTable.of(placeInfoList));
+            }
           }
       );
 
+  /** The number of PlaceAgents to split a place over, see {@link Globals#placeShardMinCapacity}. */
+  @VisibleForTesting
+  static int numShards(PlaceInfo placeInfo, Globals globals) {
+    if (placeInfo.capacity() < globals.placeShardMinCapacity
+        || placeInfo.networkType() == PlaceInfo.NetworkType.STAR
+        || placeInfo.networkType() == PlaceInfo.NetworkType.FULLY_CONNECTED_DEPENDENT_ON_CENTER) {
+      return 1;
+    }
+    return Math.max(globals.numPlaceShards, 1);
+  }
+
+  /** The id reported in transmission output: the logical place's id if this is a shard. */
+  private long reportedPlaceId() {
+    return placeInfo.isSharded() ? placeInfo.placeId() : placeId;
+  }
+
   @VisibleForTesting
-  void addToOccupancyHistory(ImmutableList<Long> peoplePresent) {
+  OccupancyHistory occupancyHistory() {
+    if (occupancyHistory == null) {
+      occupancyHistory = new OccupancyHistory(OccupancyHistory.capacityFor(getGlobals()));
+    }
+    return occupancyHistory;
+  }
+
+  /** An estimate of the heap held by this place's occupancy history, in bytes. */
+  public long occupancyHistoryBytes() {
+    return occupancyHistory == null ? 0 : occupancyHistory.estimatedBytes();
+  }
+
+  /**
+   * Records the first {@code numPeoplePresent} of {@code peoplePresent}, sorted and distinct, as the
+   * people here on this step. They are only copied if this place has not seen the same roster
+   * within the tracing window.
+   */
+  @VisibleForTesting
+  void addToOccupancyHistory(long[] peoplePresent, int numPeoplePresent) {
     if (getGlobals().modules.getPlaceTypesOmittedFromContactTracing().contains(this.placeInfo.placeType())) {
       return;
     }
-    occupancyHistory.add(peoplePresent);
-    if (occupancyHistory.size() > getGlobals().contactTracingNumberOfDaysTraceback * getGlobals().tOneDay) {
-      occupancyHistory.remove(0);
+    if (getGlobals().useExposureIndex) {
+      getGlobals().getExposureIndex()
+          .record(getGlobals().tStep, placeInfo.placeId(), peoplePresent, numPeoplePresent);
+      return;
     }
+    if (getGlobals().useContactLog) {
+      // Shards record under the logical place, so a contact anywhere in the place is found
+      getGlobals().getContactLog()
+          .record(getGlobals().tStep, placeInfo.placeId(), peoplePresent, numPeoplePresent);
+      return;
+    }
+    occupancyHistory().evictBefore(firstTracedStep(getGlobals()));
+    occupancyHistory().add(getGlobals().tStep, peoplePresent, numPeoplePresent);
+  }
+
+  /** The oldest step still within {@link Globals#contactTracingNumberOfDaysTraceback}. */
+  static int firstTracedStep(Globals globals) {
+    return globals.tStep - globals.contactTracingNumberOfDaysTraceback * globals.tOneDay + 1;
   }
 
   /**
-   * Receives {@link Messages.IAmHereMsg} from {@link Person#executeMovement}
+   * Receives {@link Messages.IAmPresentMsg} and {@link Messages.IAmHereMsg} from {@link
+   * Person#executeMovement}.
+   *
+   * <p>If {@link Globals#useTwoPhasePresence} is set, and any visitor is infectious or this place has
+   * a flat infection rate, sends {@link Messages.RequestTransmissibilityMsg} to {@link
+   * Person#sendTransmissibilityInfo} to ask everyone who only reported their presence for their
+   * details. If {@link Globals#crossShardMixing} is positive, sends the infectious people present to
+   * the other shards of this place as a {@link Messages.ShardPressureMsg}.
+   */
+  public static Action<PlaceAgent> receivePresence =
+      Action.create(
+          PlaceAgent.class,
+          pla -> {
+            pla.collectPresence();
+            if (pla.mixesAcrossShards()) {
+              pla.sendShardPressure();
+            }
+            if (pla.getGlobals().useTwoPhasePresence && pla.needsTransmissibilityInfoFromAll()) {
+              pla.getMessagesOfType(Messages.IAmPresentMsg.class).stream()
+                  .map(Message::getSender)
+                  .distinct()
+                  .sorted()
+                  .forEach(personId ->
+                      pla.send(Messages.RequestTransmissibilityMsg.class).to(personId));
+            }
+          }
+      );
+
+  /**
+   * Does nothing unless {@link Globals#crossShardMixing} is positive. Runs alongside {@link
+   * Person#sendTransmissibilityInfo}.
+   *
+   * <p>Receives the {@link Messages.ShardPressureMsg} sent by {@link #receivePresence}.
+   */
+  public static Action<PlaceAgent> collectShardPressure =
+      Action.create(
+          PlaceAgent.class,
+          pla -> {
+            if (pla.mixesAcrossShards()) {
+              pla.collectPresence();
+            }
+          }
+      );
+
+  /**
+   * Receives {@link Messages.IAmHereMsg} from {@link Person#sendTransmissibilityInfo} when {@link
+   * Globals#useTwoPhasePresence} is set, adding them to those collected by {@link #receivePresence}
    * Generates contacts and infections from the people present
    * Sends {@link Messages.InfectionMsg} to {@link Person#infectedByCOVID}
    * Send {@link Messages.YouInfectedSomeoneMsg} to {@link Person#infectedSomeoneElseWithCOVID}
@@ -106,88 +247,353 @@ public class PlaceAgent extends Agent<Globals> {
       Action.create(
           PlaceAgent.class,
           pla -> {
-            ImmutableList<Long> peoplePresent = ImmutableList.of();
-            if (pla.hasMessagesOfType(Messages.IAmHereMsg.class)) {
-              PlaceInfo pl = pla.place();
-              List<Messages.IAmHereMsg> msgs = pla.getMessagesOfType(Messages.IAmHereMsg.class);
-              ImmutableList.Builder<Long> builder = new ImmutableList.Builder<>();
-              msgs.stream().map(msg -> msg.getSender()).sorted().distinct().forEach(builder::add);
-              peoplePresent = builder.build();
-
-              int totalInPlace = peoplePresent.size();
-              Collection<ContactEventInfo> contacts = pla.getWhoToInfect(
-                  sortedCopyBySender(msgs),
-                  pla.getGlobals(), pla.getPrng());
-
-              contacts.stream()
-                  .filter(ContactEventInfo::resultedInTransmission)
-                  .forEachOrdered(
-                      transmission -> {
-                        pla.send(Messages.InfectionMsg.class).to(transmission.infected());
-                        final boolean outputTransmissions = pla.getGlobals().outputTransmissions;
-                        transmission.infectedBy().ifPresent(infectedBy -> {
-                          pla.send(Messages.YouInfectedSomeoneMsg.class, msg -> {
-                            if (outputTransmissions) {
-                              msg.newlyInfectedAgentId = transmission.infected();
-                              msg.newlyInfectedMaskType =
-                                      transmission.infectedTransmiissibilityInfo().get().wearsMask();
-                              msg.newlyInfectedCompliancePhysicalDistancing =
-                                      transmission.infectedTransmiissibilityInfo().get().physicalDistCompliance();
-                              msg.infectedByMaskType =
-                                      transmission.infectedByTransmiissibilityInfo().get().wearsMask();
-                              msg.placeId = transmission.placeId();
-                              msg.placeType = transmission.placeType();
-                            }
-                          }).to(infectedBy);
-                        });
-                      }
-                  );
-              int numStartedInfected = (int) msgs.stream()
-                  .filter(msg -> msg.transmissibilityInfo.status() == Person.InfectionStatus.INFECTED)
-                  .count();
-              int numGotInfected = (int) contacts.stream()
-                  .filter(ContactEventInfo::resultedInTransmission)
-                  .count();
-
-              pla.send(
-                  Messages.PlaceInfections.class,
-                  msg -> {
-                    msg.placeType = pl.placeType();
-                    msg.numGotInfected = numGotInfected;
-                    msg.numStartedInfected = numStartedInfected;
-                    msg.totalInPlace = totalInPlace;
-                  })
-                  .to(pla.getGlobals().centralAgentID);
-
+            pla.collectPresence();
+            if (pla.numPresentIds == 0) {
+              // Idle this step, so there is nothing to infect or record
+              pla.clearPresence();
+              return;
             }
-            pla.addToOccupancyHistory(peoplePresent);
+            int totalInPlace = pla.sortDistinctPresent();
+            int numInfectedHere = pla.getGlobals().usePrimitiveContactKernel
+                ? pla.infectWithContactKernel(pla.presentOccupants)
+                : pla.infectWithContactEvents(pla.presentOccupants);
+            int numGotInfected = pla.shardPressure.isEmpty()
+                ? numInfectedHere
+                : numInfectedHere + pla.infectAcrossShards(totalInPlace);
+            int numStartedInfected = (int) pla.presentOccupants.stream()
+                .filter(msg -> msg.transmissibilityInfo.status() == Person.InfectionStatus.INFECTED)
+                .count();
+
+            pla.send(
+                Messages.PlaceInfections.class,
+                msg -> {
+                  msg.placeType = pla.place().placeType();
+                  msg.numGotInfected = numGotInfected;
+                  msg.numStartedInfected = numStartedInfected;
+                  msg.totalInPlace = totalInPlace;
+                })
+                .to(pla.getGlobals().centralAgentID);
+            pla.addToOccupancyHistory(pla.presentIds, pla.numPresentIds);
+            pla.clearPresence();
           }
       );
 
+  /**
+   * Adds the {@link Messages.IAmHereMsg} and {@link Messages.IAmPresentMsg} received by the current
+   * action to the people present at this place on this step.
+   */
+  private void collectPresence() {
+    for (Messages.IAmHereMsg msg : getMessagesOfType(Messages.IAmHereMsg.class)) {
+      presentOccupants.add(msg);
+      addPresentId(msg.getSender());
+    }
+    for (Messages.IAmPresentMsg msg : getMessagesOfType(Messages.IAmPresentMsg.class)) {
+      addPresentId(msg.getSender());
+    }
+    shardPressure.addAll(getMessagesOfType(Messages.ShardPressureMsg.class));
+  }
+
+  private void addPresentId(long personId) {
+    if (numPresentIds == presentIds.length) {
+      presentIds = Arrays.copyOf(presentIds, numPresentIds * 2);
+    }
+    presentIds[numPresentIds++] = personId;
+  }
+
+  /** Sorts presentIds and removes repeats in place. Returns the number of people present. */
+  private int sortDistinctPresent() {
+    Arrays.sort(presentIds, 0, numPresentIds);
+    int numDistinct = 0;
+    for (int i = 0; i < numPresentIds; i++) {
+      if (i == 0 || presentIds[i] != presentIds[i - 1]) {
+        presentIds[numDistinct++] = presentIds[i];
+      }
+    }
+    numPresentIds = numDistinct;
+    return numDistinct;
+  }
+
+  private void clearPresence() {
+    presentOccupants.clear();
+    numPresentIds = 0;
+    shardPressure.clear();
+    infectedHere.clear();
+    Arrays.fill(shardInfectiousInfos, 0, numShardInfectious, null);
+    numShardInfectious = 0;
+  }
+
+  // Flat infection rates apply to everyone present, so those places always need everyone's details.
+  // So do shards exposed to the infectious people at other shards.
+  private boolean needsTransmissibilityInfoFromAll() {
+    if (mixesAcrossShards()) {
+      return numPresentIds > 0;
+    }
+    if (placeInfo.networkType() == PlaceInfo.NetworkType.FLAT_INFECTION_RATE
+        || placeInfo.networkType() == PlaceInfo.NetworkType.FULLY_CONNECTED_WITH_FLAT_INFECTION_RATE) {
+      return numPresentIds > 0;
+    }
+    for (Messages.IAmHereMsg msg : presentOccupants) {
+      if (msg.transmissibilityInfo.isInfectious()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Generates contacts with {@link #getWhoToInfect} and sends the resulting infection messages.
+   * Returns the number of people infected.
+   */
+  private int infectWithContactEvents(List<Messages.IAmHereMsg> msgs) {
+    Collection<ContactEventInfo> contacts = getWhoToInfect(
+        sortedCopyBySender(msgs),
+        getGlobals(), getFastRandom());
+
+    contacts.stream()
+        .filter(ContactEventInfo::resultedInTransmission)
+        .forEachOrdered(
+            transmission -> {
+              infectedHere.add(transmission.infected());
+              send(Messages.InfectionMsg.class).to(transmission.infected());
+              final boolean outputTransmissions = getGlobals().outputTransmissions;
+              transmission.infectedBy().ifPresent(infectedBy -> {
+                send(Messages.YouInfectedSomeoneMsg.class, msg -> {
+                  if (outputTransmissions) {
+                    msg.newlyInfectedAgentId = transmission.infected();
+                    msg.newlyInfectedMaskType =
+                            transmission.infectedTransmiissibilityInfo().get().wearsMask();
+                    msg.newlyInfectedCompliancePhysicalDistancing =
+                            transmission.infectedTransmiissibilityInfo().get().physicalDistCompliance();
+                    msg.infectedByMaskType =
+                            transmission.infectedByTransmiissibilityInfo().get().wearsMask();
+                    msg.placeId = transmission.placeId();
+                    msg.placeType = transmission.placeType();
+                  }
+                }).to(infectedBy);
+              });
+            }
+        );
+    return (int) contacts.stream()
+        .filter(ContactEventInfo::resultedInTransmission)
+        .count();
+  }
+
+  /**
+   * Same as {@link #infectWithContactEvents}, but generates contacts with this place's {@link
+   * ContactKernel} and {@link ContactModel}.
+   */
+  private int infectWithContactKernel(List<Messages.IAmHereMsg> msgs) {
+    contactKernel.clear();
+    for (Messages.IAmHereMsg msg : msgs) {
+      contactKernel.add(msg.getSender(), msg.transmissibilityInfo);
+    }
+    contactKernel.run(contactModel, placeInfo, getGlobals(), getFastRandom());
+
+    final boolean outputTransmissions = getGlobals().outputTransmissions;
+    for (int t = 0; t < contactKernel.numTransmissions(); t++) {
+      infectedHere.add(contactKernel.transmissionInfected(t));
+      send(Messages.InfectionMsg.class).to(contactKernel.transmissionInfected(t));
+      if (!contactKernel.transmissionHasInfectedBy(t)) {
+        continue;
+      }
+      final long infected = contactKernel.transmissionInfected(t);
+      final Person.PersonTransmissibilityInfo infectedInfo =
+          contactKernel.transmissionInfectedInfo(t);
+      final Person.PersonTransmissibilityInfo infectedByInfo =
+          contactKernel.transmissionInfectedByInfo(t);
+      send(Messages.YouInfectedSomeoneMsg.class, msg -> {
+        if (outputTransmissions) {
+          msg.newlyInfectedAgentId = infected;
+          msg.newlyInfectedMaskType = infectedInfo.wearsMask();
+          msg.newlyInfectedCompliancePhysicalDistancing = infectedInfo.physicalDistCompliance();
+          msg.infectedByMaskType = infectedByInfo.wearsMask();
+          msg.placeId = reportedPlaceId();
+          msg.placeType = placeInfo.placeType();
+        }
+      }).to(contactKernel.transmissionInfectedBy(t));
+    }
+    return contactKernel.numTransmissions();
+  }
+
+  private boolean mixesAcrossShards() {
+    return placeInfo.isSharded() && getGlobals().crossShardMixing > 0;
+  }
+
+  /** Sends the distinct infectious people present to every other shard of this place. */
+  private void sendShardPressure() {
+    if (numPresentIds == 0) {
+      return;
+    }
+    List<Messages.IAmHereMsg> infectious = new ArrayList<>();
+    long previousSender = Long.MIN_VALUE;
+    for (Messages.IAmHereMsg msg : sortedCopyBySender(presentOccupants)) {
+      if (msg.getSender() != previousSender && msg.transmissibilityInfo.isInfectious()) {
+        infectious.add(msg);
+      }
+      previousSender = msg.getSender();
+    }
+    final int numOccupants = sortDistinctPresent();
+    final long[] infectiousIds = new long[infectious.size()];
+    final Person.PersonTransmissibilityInfo[] infectiousInfos =
+        new Person.PersonTransmissibilityInfo[infectious.size()];
+    for (int i = 0; i < infectious.size(); i++) {
+      infectiousIds[i] = infectious.get(i).getSender();
+      infectiousInfos[i] = infectious.get(i).transmissibilityInfo;
+    }
+    for (long shardId : placeInfo.allPlaceIds()) {
+      if (shardId == getID()) {
+        continue;
+      }
+      send(Messages.ShardPressureMsg.class, msg -> {
+        msg.numOccupants = numOccupants;
+        msg.infectiousIds = infectiousIds;
+        msg.infectiousInfos = infectiousInfos;
+      }).to(shardId);
+    }
+  }
+
+  /**
+   * Exposes the susceptible people here to the infectious people at the other shards of this place.
+   * Each infectious person i makes contactRate contacts, each of which crosses to another shard
+   * with probability {@link Globals#crossShardMixing} and lands on any one person with probability 1
+   * / (N - 1), where N counts everyone at the place. As in {@link
+   * ContactKernel#infectByAggregateHazard}, expected mask efficiencies are used, and each
+   * susceptible's infection probability comes from two totals over the infectious people. Returns
+   * the number of people infected.
+   */
+  private int infectAcrossShards(int numOccupantsHere) {
+    int numOccupants = numOccupantsHere;
+    for (Messages.ShardPressureMsg msg : shardPressure) {
+      numOccupants += msg.numOccupants;
+    }
+    if (numOccupants <= 1) {
+      return 0;
+    }
+    double baseInfectionRate =
+        getGlobals().getInfectionRate(placeInfo.placeType()) / getGlobals().tOneDay;
+
+    double pressure = 0;
+    double distancedPressure = 0;
+    for (Messages.ShardPressureMsg msg : sortedCopyBySender(shardPressure)) {
+      for (int i = 0; i < msg.infectiousIds.length; i++) {
+        Person.PersonTransmissibilityInfo info = msg.infectiousInfos[i];
+        double weight =
+            Math.min(1, getGlobals().crossShardMixing * info.contactRate() / (numOccupants - 1))
+                * DefaultModulesImpl.getExpectedOutTransmissionLikelihood(
+                    baseInfectionRate, info.wearsMask(), info.outTransmissionImmunity());
+        addShardInfectious(msg.infectiousIds[i], info, weight);
+        pressure += weight;
+        distancedPressure += weight * info.physicalDistCompliance();
+      }
+    }
+    if (pressure == 0) {
+      return 0;
+    }
+
+    FastRandom random = getFastRandom();
+    final boolean outputTransmissions = getGlobals().outputTransmissions;
+    int numInfected = 0;
+    long previousSender = Long.MIN_VALUE;
+    for (Messages.IAmHereMsg occupant : sortedCopyBySender(presentOccupants)) {
+      long personId = occupant.getSender();
+      Person.PersonTransmissibilityInfo info = occupant.transmissibilityInfo;
+      if (personId == previousSender
+          || info.status() != Person.InfectionStatus.SUSCEPTIBLE
+          || infectedHere.contains(personId)) {
+        previousSender = personId;
+        continue;
+      }
+      previousSender = personId;
+      double distance = info.physicalDistCompliance();
+      double pInfect =
+          DefaultModulesImpl.getExpectedInTransmissionLikelihood(
+              info.wearsMask(), info.inTransmissionImmunity())
+              * (pressure - distance * distancedPressure);
+      if (random.nextDouble() >= pInfect) {
+        continue;
+      }
+
+      // Pick the infector in proportion to their share of this person's hazard
+      double selection = random.nextDouble(0, pressure - distance * distancedPressure);
+      int infector = 0;
+      double cumulative = 0;
+      for (int i = 0; i < numShardInfectious; i++) {
+        double share = shardInfectiousWeights[i]
+            * (1 - shardInfectiousInfos[i].physicalDistCompliance() * distance);
+        if (share <= 0) {
+          continue;
+        }
+        infector = i;
+        cumulative += share;
+        if (selection < cumulative) {
+          break;
+        }
+      }
+
+      numInfected++;
+      infectedHere.add(personId);
+      send(Messages.InfectionMsg.class).to(personId);
+      final Person.PersonTransmissibilityInfo infectedByInfo = shardInfectiousInfos[infector];
+      send(Messages.YouInfectedSomeoneMsg.class, msg -> {
+        if (outputTransmissions) {
+          msg.newlyInfectedAgentId = personId;
+          msg.newlyInfectedMaskType = info.wearsMask();
+          msg.newlyInfectedCompliancePhysicalDistancing = info.physicalDistCompliance();
+          msg.infectedByMaskType = infectedByInfo.wearsMask();
+          msg.placeId = reportedPlaceId();
+          msg.placeType = placeInfo.placeType();
+        }
+      }).to(shardInfectiousIds[infector]);
+    }
+    return numInfected;
+  }
+
+  private void addShardInfectious(
+      long personId, Person.PersonTransmissibilityInfo info, double weight) {
+    if (numShardInfectious == shardInfectiousIds.length) {
+      int capacity = numShardInfectious * 2;
+      shardInfectiousIds = Arrays.copyOf(shardInfectiousIds, capacity);
+      shardInfectiousInfos = Arrays.copyOf(shardInfectiousInfos, capacity);
+      shardInfectiousWeights = Arrays.copyOf(shardInfectiousWeights, capacity);
+    }
+    shardInfectiousIds[numShardInfectious] = personId;
+    shardInfectiousInfos[numShardInfectious] = info;
+    shardInfectiousWeights[numShardInfectious] = weight;
+    numShardInfectious++;
+  }
+
   /**
    * Recieves occupancy request {@link core.Messages.RequestOccupancyMsg} from {@link Person#requestOccupancyFromPlacesVisited}
    * and sends back a {@link core.Messages.OccupancyMsg} to
-   * {@link Person#receiveOccupancyHistoriesAndSendToCentralAgent}.
+   * {@link Person#receiveOccupancyHistoriesAndSendToCentralAgent}, holding only the steps the requester was here.
    */
   public static Action<PlaceAgent> sendOccupancy =
       Action.create(
           PlaceAgent.class,
           pla -> {
-            final ImmutableList<ImmutableList<Long>> occupancy = ImmutableList.copyOf(pla.occupancyHistory);
-            pla.getMessagesOfType(Messages.RequestOccupancyMsg.class).stream()
-                .map(Message::getSender)
-                .distinct()
-                .sorted()
-                .forEach(personId -> {
-                  pla.send(Messages.OccupancyMsg.class, occupancyMsg -> {
-                    occupancyMsg.peoplePresent = occupancy;
-                  }).to(personId);
-                });
+            if (!pla.hasMessagesOfType(Messages.RequestOccupancyMsg.class)) {
+              return;
+            }
+            // Idle places skip recording, so they drop expired occupancy here instead
+            pla.occupancyHistory().evictBefore(firstTracedStep(pla.getGlobals()));
+            long previousSender = Long.MIN_VALUE;
+            for (Messages.RequestOccupancyMsg request
+                : sortedCopyBySender(pla.getMessagesOfType(Messages.RequestOccupancyMsg.class))) {
+              if (request.getSender() == previousSender) {
+                continue;
+              }
+              previousSender = request.getSender();
+              final OccupancyHistory.Snapshot occupancy =
+                  pla.occupancyHistory().snapshot(request.steps);
+              pla.send(Messages.OccupancyMsg.class, occupancyMsg -> {
+                occupancyMsg.occupancy = occupancy;
+              }).to(request.getSender());
+            }
           }
       );
 
   public Collection<ContactEventInfo> getWhoToInfect(
-      List<Messages.IAmHereMsg> occupants, Globals globals, SeededRandom random) {
+      List<Messages.IAmHereMsg> occupants, Globals globals, FastRandom random) {
     HashMap<Long, ContactEventInfo> toInfect = new HashMap<>();
 
     if (occupants.size() <= 1) {
@@ -209,14 +615,24 @@ public class PlaceAgent extends Agent<Globals> {
         globals.getInfectionRate(this.place().placeType())
             / globals.tOneDay;
 
+    // Only allocated by the network types which sample contacts
+    int[] contacted = NO_CONTACTS;
     if (this.place().networkType() == PlaceInfo.NetworkType.STAR) {
       assert centerOccupant.isPresent();
-      List<Messages.IAmHereMsg> contactedAgents =
-          DefaultModulesImpl.sample(
-              DefaultModulesImpl.getAllExcept(occupants, centerOccupant.get()),
-              globals.numStaffToStudenContacts,
-              random);
-      for (Messages.IAmHereMsg occupant : contactedAgents) {
+      contacted = ContactSampler.ensureCapacity(contacted, globals.numStaffToStudenContacts);
+      int centerStart = 0;
+      while (occupants.get(centerStart).getSender() != centerOccupant.get().getSender()) {
+        centerStart++;
+      }
+      int numContacted = ContactSampler.sampleExcept(
+          occupants.size(),
+          centerStart,
+          senderRunLength(occupants, centerStart),
+          globals.numStaffToStudenContacts,
+          random,
+          contacted);
+      for (int c = 0; c < numContacted; c++) {
+        Messages.IAmHereMsg occupant = occupants.get(contacted[c]);
         if (occupant.getSender() == centerOccupant.get().getSender()) {
           continue;
         }
@@ -237,7 +653,7 @@ public class PlaceAgent extends Agent<Globals> {
                 // TODO I think infected and infectee need to be swapped in these first two parameters
                 infected.getSender(),
                 Optional.of(infectee.getSender()),
-                this.placeId(),
+                reportedPlaceId(),
                 DefaultModulesImpl.willInfect(infected, infectee, baseInfectionRate, random),
                 this.placeInfo.placeType(),
                 globals.outputTransmissions ? infectee.transmissibilityInfo : null,
@@ -250,18 +666,28 @@ public class PlaceAgent extends Agent<Globals> {
         || this.place().networkType() == PlaceInfo.NetworkType.FULLY_CONNECTED_WITH_FLAT_INFECTION_RATE) {
       for (int i = 0; i < occupants.size(); i++) {
         if (occupants.get(i).transmissibilityInfo.isInfectious()) {
-          List<Messages.IAmHereMsg> contactedAgents =
-              DefaultModulesImpl.sample(
-                  DefaultModulesImpl.getAllExcept(occupants, occupants.get(i)),
-                  occupants.get(i).transmissibilityInfo.contactRate(),
-                  random);
-          for (Messages.IAmHereMsg otherAgent : contactedAgents) {
+          int contactRate = occupants.get(i).transmissibilityInfo.contactRate();
+          int runStart = i;
+          while (runStart > 0
+              && occupants.get(runStart - 1).getSender() == occupants.get(i).getSender()) {
+            runStart--;
+          }
+          contacted = ContactSampler.ensureCapacity(contacted, contactRate);
+          int numContacted = ContactSampler.sampleExcept(
+              occupants.size(),
+              runStart,
+              senderRunLength(occupants, runStart),
+              contactRate,
+              random,
+              contacted);
+          for (int c = 0; c < numContacted; c++) {
+            Messages.IAmHereMsg otherAgent = occupants.get(contacted[c]);
             toInfect.put(
                 otherAgent.getSender(),
                 ContactEventInfo.create(
                     otherAgent.getSender(),
                     Optional.of(occupants.get(i).getSender()),
-                    this.placeId(),
+                    reportedPlaceId(),
                     DefaultModulesImpl.willInfect(occupants.get(i), otherAgent, baseInfectionRate, random),
                     this.placeInfo.placeType(),
                     globals.outputTransmissions ? otherAgent.transmissibilityInfo : null,
@@ -279,8 +705,8 @@ public class PlaceAgent extends Agent<Globals> {
                 ContactEventInfo.create(
                         occupant.getSender(),
                         Optional.empty(),
-                        this.placeId(),
-                        random.uniform(0.0, 1.0).sample() < getGlobals().placeTypeFlatInfectionRate,
+                        reportedPlaceId(),
+                        random.nextDouble() < getGlobals().placeTypeFlatInfectionRate,
                         this.placeInfo.placeType(),
                         globals.outputTransmissions ? occupant.transmissibilityInfo : null,
                         globals.outputTransmissions ? Person.PersonTransmissibilityInfo.dummyInfected() : null
@@ -291,4 +717,14 @@ public class PlaceAgent extends Agent<Globals> {
     return ImmutableList.sortedCopyOf(
         Comparator.comparingLong(ContactEventInfo::infected), toInfect.values());
   }
+
+  // Number of consecutive messages from the sender of occupants[start], which are sorted by sender
+  private static int senderRunLength(List<Messages.IAmHereMsg> occupants, int start) {
+    int end = start + 1;
+    while (end < occupants.size()
+        && occupants.get(end).getSender() == occupants.get(start).getSender()) {
+      end++;
+    }
+    return end - start;
+  }
 }
@@ -0,0 +1,131 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The places a {@link Person} visited on each of their most recent steps, for contact tracing. They
+ * are recorded as indices into {@link Globals#getPlaceTable()} if {@link Globals#usePlaceTable} is
+ * set, and as the PlaceInfos themselves otherwise.
+ *
+ * <p>The steps are kept in a ring whose rows are reused, so once every row has been filled recording
+ * a step allocates nothing unless the person visits more places than that row has room for.
+ */
+final class PlaceHistory {
+  private int[] steps = new int[0];
+  private int[][] placeIndices = new int[0][];
+  private PlaceInfo[][] places = new PlaceInfo[0][];
+  private int[] numPlaces = new int[0];
+  // The ring slot of the oldest step
+  private int start = 0;
+  private int size = 0;
+
+  /**
+   * Records the first {@code numVisited} of {@code visitedPlaceIndices} as the places visited on
+   * {@code step}, dropping the oldest steps to keep at most {@code capacity}.
+   */
+  void record(int step, int[] visitedPlaceIndices, int numVisited, int capacity) {
+    int slot = nextSlot(step, numVisited, capacity);
+    if (slot < 0) {
+      return;
+    }
+    if (placeIndices[slot] == null || placeIndices[slot].length < numVisited) {
+      placeIndices[slot] = new int[Math.max(numVisited, 4)];
+    }
+    System.arraycopy(visitedPlaceIndices, 0, placeIndices[slot], 0, numVisited);
+  }
+
+  /**
+   * Records the first {@code numVisited} of {@code visitedPlaces} as the places visited on {@code
+   * step}, dropping the oldest steps to keep at most {@code capacity}.
+   */
+  void record(int step, PlaceInfo[] visitedPlaces, int numVisited, int capacity) {
+    int slot = nextSlot(step, numVisited, capacity);
+    if (slot < 0) {
+      return;
+    }
+    if (places[slot] == null || places[slot].length < numVisited) {
+      places[slot] = new PlaceInfo[Math.max(numVisited, 4)];
+    }
+    System.arraycopy(visitedPlaces, 0, places[slot], 0, numVisited);
+  }
+
+  // Claims the ring slot for step, or returns -1 if nothing is kept
+  private int nextSlot(int step, int numVisited, int capacity) {
+    if (capacity != steps.length) {
+      resize(Math.max(capacity, 0));
+    }
+    if (steps.length == 0) {
+      return -1;
+    }
+    int slot;
+    if (size < steps.length) {
+      slot = (start + size) % steps.length;
+      size++;
+    } else {
+      slot = start;
+      start = (start + 1) % steps.length;
+    }
+    steps[slot] = step;
+    numPlaces[slot] = numVisited;
+    return slot;
+  }
+
+  /** The number of steps recorded, oldest first. */
+  int size() {
+    return size;
+  }
+
+  /** The step of the {@code i}th recorded step. */
+  int step(int i) {
+    return steps[slot(i)];
+  }
+
+  /** The number of places visited on the {@code i}th recorded step. */
+  int numPlaces(int i) {
+    return numPlaces[slot(i)];
+  }
+
+  /** The index of the {@code j}th place visited on the {@code i}th recorded step. */
+  int placeIndex(int i, int j) {
+    return placeIndices[slot(i)][j];
+  }
+
+  /** The {@code j}th place visited on the {@code i}th recorded step, if recorded as PlaceInfos. */
+  PlaceInfo place(int i, int j) {
+    return places[slot(i)][j];
+  }
+
+  /** A copy of the places visited on the {@code i}th recorded step. */
+  int[] placeIndices(int i) {
+    return Arrays.copyOf(placeIndices[slot(i)], numPlaces[slot(i)]);
+  }
+
+  private int slot(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Step " + i + " of " + size);
+    }
+    return (start + i) % steps.length;
+  }
+
+  // Keeps the most recent steps which fit in the new capacity
+  private void resize(int capacity) {
+    int kept = Math.min(size, capacity);
+    int[] newSteps = new int[capacity];
+    int[][] newPlaceIndices = new int[capacity][];
+    PlaceInfo[][] newPlaces = new PlaceInfo[capacity][];
+    int[] newNumPlaces = new int[capacity];
+    for (int i = 0; i < kept; i++) {
+      int slot = slot(size - kept + i);
+      newSteps[i] = steps[slot];
+      newPlaceIndices[i] = placeIndices[slot];
+      newPlaces[i] = places[slot];
+      newNumPlaces[i] = numPlaces[slot];
+    }
+    steps = newSteps;
+    placeIndices = newPlaceIndices;
+    places = newPlaces;
+    numPlaces = newNumPlaces;
+    start = 0;
+    size = kept;
+  }
+}
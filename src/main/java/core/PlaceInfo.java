@@ -1,5 +1,8 @@
 package core;
 
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
 import java.util.Objects;
 
 
@@ -22,6 +25,10 @@ public class PlaceInfo {
   private final String debugNotes;
   private long placeAgent;
   private int capacity;
+  // Agent ids of the shards of a sharded place, with the place's own agent as shard 0
+  private long[] shardAgents = new long[0];
+  // Index in the PlaceTable this place was last added to, see PlaceTable#indexOf
+  private int tableIndex = -1;
 
   /**
    * A unique id for the place.
@@ -82,6 +89,85 @@ public class PlaceInfo {
 
   public void receivePlaceAgent(long agentId) {
     this.placeAgent = agentId;
+    if (shardAgents.length > 0) {
+      shardAgents[0] = agentId;
+    }
+  }
+
+  /**
+   * Whether this place is split over several PlaceAgents, see {@link Globals#placeShardMinCapacity}.
+   * {@link #placeId()} is then the id of its first shard.
+   */
+  public boolean isSharded() {
+    return shardAgents.length > 1;
+  }
+
+  public int numShards() {
+    return Math.max(shardAgents.length, 1);
+  }
+
+  void setNumShards(int numShards) {
+    shardAgents = new long[numShards];
+    Arrays.fill(shardAgents, -1);
+    if (numShards > 0) {
+      shardAgents[0] = placeAgent;
+    }
+  }
+
+  public void receiveShardAgent(int shard, long agentId) {
+    shardAgents[shard] = agentId;
+    if (shard == 0) {
+      this.placeAgent = agentId;
+    }
+  }
+
+  /** The PlaceAgent that {@code personId} reports to at this place. */
+  public long placeIdFor(long personId) {
+    if (!isSharded()) {
+      return placeId();
+    }
+    return shardAgents[shardOf(personId, shardAgents.length)];
+  }
+
+  /** The ids of all of this place's PlaceAgents, which is just {@link #placeId()} if unsharded. */
+  public ImmutableList<Long> allPlaceIds() {
+    if (!isSharded()) {
+      return ImmutableList.of(placeId());
+    }
+    ImmutableList.Builder<Long> builder = ImmutableList.builder();
+    for (long shardAgent : shardAgents) {
+      builder.add(shardAgent);
+    }
+    return builder.build();
+  }
+
+  /** The agent id of the {@code shard}th shard, which is {@link #placeId()} if unsharded. */
+  long shardAgent(int shard) {
+    if (!isSharded()) {
+      return placeId();
+    }
+    if (shardAgents[shard] == -1) {
+      throw new IllegalStateException("Shard " + shard + " of this place doesn't have a placeAgent yet.");
+    }
+    return shardAgents[shard];
+  }
+
+  int tableIndex() {
+    return tableIndex;
+  }
+
+  void setTableIndex(int tableIndex) {
+    this.tableIndex = tableIndex;
+  }
+
+  /** Stable assignment of a person to one of {@code numShards} shards. */
+  static int shardOf(long personId, int numShards) {
+    // SplitMix64 finalizer, so consecutive ids spread evenly
+    long z = personId * 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    z = z ^ (z >>> 31);
+    return (int) ((z >>> 1) % numShards);
   }
 
   private PlaceInfo(String placeName, int placeType, Optionality optionality, NetworkType networkType, long center, String debugNotes, int capacity) {
@@ -0,0 +1,94 @@
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Every place in the model, numbered densely, so that a {@link Person}'s movement, presence
+ * reporting and place history can work with {@code int} indices and flat arrays rather than
+ * following {@link PlaceInfo} references. The PlaceInfos are kept for their metadata.
+ *
+ * <p>Only used if {@link Globals#usePlaceTable} is set. The table is then built at the end of
+ * {@link PlaceAgent#receivePlace}, before the spawned PlaceAgents have ids, so each place's agent
+ * ids are read into the table on its first lookup. The places never change once the table is built;
+ * {@link Globals#placeIndexOf} replaces the table with a larger copy for a place which was not in
+ * it, such as one created in a test.
+ */
+public final class PlaceTable {
+  static final PlaceTable EMPTY = new PlaceTable(new PlaceInfo[0]);
+
+  private final PlaceInfo[] places;
+  // The agent ids of place i, one per shard, are agentIds[firstAgent[i]] to agentIds[firstAgent[i + 1]]
+  private final int[] firstAgent;
+  // -1 until read from the place's PlaceInfo
+  private final AtomicLongArray agentIds;
+
+  private PlaceTable(PlaceInfo[] places) {
+    this.places = places;
+    this.firstAgent = new int[places.length + 1];
+    for (int i = 0; i < places.length; i++) {
+      firstAgent[i + 1] = firstAgent[i] + places[i].numShards();
+    }
+    this.agentIds = new AtomicLongArray(firstAgent[places.length]);
+    for (int i = 0; i < agentIds.length(); i++) {
+      agentIds.set(i, -1);
+    }
+  }
+
+  /** A table of {@code places}, numbered in order. */
+  public static PlaceTable of(List<PlaceInfo> places) {
+    PlaceInfo[] table = places.toArray(new PlaceInfo[0]);
+    for (int i = 0; i < table.length; i++) {
+      table[i].setTableIndex(i);
+    }
+    return new PlaceTable(table);
+  }
+
+  /** A copy of this table with {@code place} added at the end. */
+  PlaceTable with(PlaceInfo place) {
+    PlaceInfo[] table = Arrays.copyOf(places, places.length + 1);
+    table[places.length] = place;
+    place.setTableIndex(places.length);
+    return new PlaceTable(table);
+  }
+
+  public int size() {
+    return places.length;
+  }
+
+  public PlaceInfo place(int index) {
+    return places[index];
+  }
+
+  /** The index of {@code place}, or -1 if it is not in this table. */
+  public int indexOf(PlaceInfo place) {
+    int index = place.tableIndex();
+    return index >= 0 && index < places.length && places[index] == place ? index : -1;
+  }
+
+  /** The number of PlaceAgents of the place at {@code index}, which is its number of shards. */
+  public int numPlaceIds(int index) {
+    return firstAgent[index + 1] - firstAgent[index];
+  }
+
+  /** The id of the {@code shard}th PlaceAgent of the place at {@code index}. */
+  public long placeId(int index, int shard) {
+    long agentId = agentIds.get(firstAgent[index] + shard);
+    return agentId >= 0 ? agentId : readAgentId(index, shard);
+  }
+
+  /** The PlaceAgent that {@code personId} reports to at the place at {@code index}. */
+  public long placeIdFor(int index, long personId) {
+    int numShards = numPlaceIds(index);
+    return placeId(index, numShards == 1 ? 0 : PlaceInfo.shardOf(personId, numShards));
+  }
+
+  // Throws if the place does not have its agents yet. Any thread may read an id, as they all read
+  // the same value.
+  private long readAgentId(int index, int shard) {
+    long agentId = places[index].shardAgent(shard);
+    agentIds.set(firstAgent[index] + shard, agentId);
+    return agentId;
+  }
+}
@@ -0,0 +1,82 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A place visited on a regular pattern of steps: every step of a schedule's cycle whose remainder
+ * when divided by {@link #period()} is {@link #offset()}. A {@link ScheduleTemplate} made of rules
+ * is interned by them, so a schedule need not be listed step by step to be shared.
+ */
+public final class ScheduleRule {
+  private final PlaceInfo place;
+  private final int period;
+  private final int offset;
+
+  private ScheduleRule(PlaceInfo place, int period, int offset) {
+    if (period < 1 || offset < 0 || offset >= period) {
+      throw new IllegalArgumentException(
+          "Invalid period " + period + " and offset " + offset + " for " + place.placeName());
+    }
+    this.place = place;
+    this.period = period;
+    this.offset = offset;
+  }
+
+  /** Visits {@code place} on each step of the cycle which is {@code offset} mod {@code period}. */
+  public static ScheduleRule every(int period, int offset, PlaceInfo place) {
+    return new ScheduleRule(place, period, offset);
+  }
+
+  /**
+   * The fewest rules visiting {@code place} on exactly the given steps of a cycle of {@code
+   * cycleLength} steps. The steps must be in increasing order. They are grouped by the shortest
+   * period, dividing the cycle, over which they repeat, so a place visited every Monday of a two
+   * week cycle needs one rule rather than two.
+   */
+  public static ImmutableList<ScheduleRule> covering(
+      PlaceInfo place, int[] cycleSteps, int cycleLength) {
+    int period = cycleLength;
+    for (int candidate = 1; candidate < cycleLength; candidate++) {
+      if (cycleLength % candidate == 0 && repeatsEvery(cycleSteps, candidate, cycleLength)) {
+        period = candidate;
+        break;
+      }
+    }
+    ImmutableList.Builder<ScheduleRule> rules = ImmutableList.builder();
+    for (int step : cycleSteps) {
+      if (step < period) {
+        rules.add(every(period, step, place));
+      }
+    }
+    return rules.build();
+  }
+
+  public PlaceInfo place() {
+    return place;
+  }
+
+  public int period() {
+    return period;
+  }
+
+  public int offset() {
+    return offset;
+  }
+
+  // Whether shifting the sorted steps on by period, wrapping around the cycle, gives the same steps
+  private static boolean repeatsEvery(int[] cycleSteps, int period, int cycleLength) {
+    int numInFirstPeriod = 0;
+    while (numInFirstPeriod < cycleSteps.length && cycleSteps[numInFirstPeriod] < period) {
+      numInFirstPeriod++;
+    }
+    if (numInFirstPeriod * (cycleLength / period) != cycleSteps.length) {
+      return false;
+    }
+    for (int i = 0; i < cycleSteps.length; i++) {
+      if (cycleSteps[i] != cycleSteps[i % numInFirstPeriod] + (i / numInFirstPeriod) * period) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,84 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The places visited on one step of a {@link ScheduleTemplate}, interned by {@link
+ * ScheduleTemplates} so that every template visiting the same places on a step shares it.
+ */
+final class ScheduleStep {
+  static final ScheduleStep EMPTY = new ScheduleStep(ImmutableList.of());
+  private static final int[] NO_PLACE_INDICES = new int[0];
+
+  final ImmutableList<PlaceInfo> places;
+  // Filled in on first use, as the places do not have agents when the step is interned
+  private volatile ImmutableList<PlaceInfo> placesByPlaceId;
+  // The indices of placesByPlaceId, and the place table they were looked up in
+  private volatile PlaceIndices placeIndices;
+
+  ScheduleStep(ImmutableList<PlaceInfo> places) {
+    this.places = places;
+  }
+
+  /** {@link #places} sorted by {@link PlaceInfo#placeId()}. Every place must have its agent. */
+  ImmutableList<PlaceInfo> placesByPlaceId() {
+    ImmutableList<PlaceInfo> sorted = placesByPlaceId;
+    if (sorted == null) {
+      // Any thread may sort the step, as they all get the same list
+      sorted = sortedByPlaceId(places);
+      placesByPlaceId = sorted;
+    }
+    return sorted;
+  }
+
+  /** Whether {@code list} is the one returned by {@link #placesByPlaceId()}, without sorting. */
+  boolean isPlacesByPlaceId(List<PlaceInfo> list) {
+    return list == placesByPlaceId;
+  }
+
+  /**
+   * The indices of {@link #placesByPlaceId()} in {@link Globals#getPlaceTable()}. They are looked
+   * up once for each place table and shared by everyone on this step, so must not be modified.
+   */
+  int[] placeIndicesByPlaceId(Globals globals) {
+    if (places.isEmpty()) {
+      return NO_PLACE_INDICES;
+    }
+    PlaceIndices indices = placeIndices;
+    if (indices == null || indices.table != globals.getPlaceTable()) {
+      // Any thread may look the places up, as they all get the same indices
+      ImmutableList<PlaceInfo> sorted = placesByPlaceId();
+      int[] lookedUp = new int[sorted.size()];
+      for (int i = 0; i < lookedUp.length; i++) {
+        lookedUp[i] = globals.placeIndexOf(sorted.get(i));
+      }
+      // Taken after the lookups, which add any place missing from the table
+      indices = new PlaceIndices(globals.getPlaceTable(), lookedUp);
+      placeIndices = indices;
+    }
+    return indices.indices;
+  }
+
+  // Returns places itself if it is already sorted
+  private static ImmutableList<PlaceInfo> sortedByPlaceId(ImmutableList<PlaceInfo> places) {
+    for (int i = 1; i < places.size(); i++) {
+      if (places.get(i - 1).placeId() > places.get(i).placeId()) {
+        return ImmutableList.sortedCopyOf(Comparator.comparingLong(PlaceInfo::placeId), places);
+      }
+    }
+    return places;
+  }
+
+  private static final class PlaceIndices {
+    final PlaceTable table;
+    final int[] indices;
+
+    PlaceIndices(PlaceTable table, int[] indices) {
+      this.table = table;
+      this.indices = indices;
+    }
+  }
+}
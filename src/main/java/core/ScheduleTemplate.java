@@ -0,0 +1,122 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The places a person goes to on each step of a repeating schedule, shared by everyone with the
+ * same pattern. Templates are created by {@link ScheduleTemplates#intern}, and refer to the
+ * registry's interned steps rather than holding places of their own.
+ *
+ * <p>A template may also keep the {@link ScheduleRule}s it was made from, which is how it is
+ * interned. Its steps are still worked out from the rules when it is interned, so that looking up
+ * a step never takes the registry's lock or allocates.
+ */
+public final class ScheduleTemplate {
+  private final ScheduleTemplates templates;
+  private final int id;
+  // Every step of the cycle
+  private final ScheduleStep[] steps;
+  // The rules, in the order their places are visited within a step, or null if not made of rules
+  private final PlaceInfo[] rulePlaces;
+  private final int[] rulePeriods;
+  private final int[] ruleOffsets;
+
+  private ScheduleTemplate(
+      ScheduleTemplates templates,
+      int id,
+      ScheduleStep[] steps,
+      PlaceInfo[] rulePlaces,
+      int[] rulePeriods,
+      int[] ruleOffsets) {
+    this.templates = templates;
+    this.id = id;
+    this.steps = steps;
+    this.rulePlaces = rulePlaces;
+    this.rulePeriods = rulePeriods;
+    this.ruleOffsets = ruleOffsets;
+  }
+
+  static ScheduleTemplate ofSteps(ScheduleTemplates templates, int id, ScheduleStep[] steps) {
+    return new ScheduleTemplate(templates, id, steps, null, null, null);
+  }
+
+  static ScheduleTemplate ofRules(
+      ScheduleTemplates templates,
+      int id,
+      ScheduleStep[] steps,
+      PlaceInfo[] rulePlaces,
+      int[] rulePeriods,
+      int[] ruleOffsets) {
+    return new ScheduleTemplate(templates, id, steps, rulePlaces, rulePeriods, ruleOffsets);
+  }
+
+  /** A template of its own, not shared with anyone, such as for tests. */
+  public static ScheduleTemplate of(Map<Integer, ? extends List<PlaceInfo>> placesAtStepMap) {
+    return new ScheduleTemplates().intern(placesAtStepMap);
+  }
+
+  /** The id of this template in {@link #templates()}. */
+  public int id() {
+    return id;
+  }
+
+  public ScheduleTemplates templates() {
+    return templates;
+  }
+
+  /** The number of steps before the schedule repeats. */
+  public int numSteps() {
+    return steps.length;
+  }
+
+  /** Whether this template was made from {@link #rules()}. */
+  public boolean isRuleBased() {
+    return rulePlaces != null;
+  }
+
+  /** The rules of a rule based template, or an empty list if it was made from its steps. */
+  public ImmutableList<ScheduleRule> rules() {
+    if (rulePlaces == null) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<ScheduleRule> rules = ImmutableList.builder();
+    for (int i = 0; i < rulePlaces.length; i++) {
+      rules.add(ScheduleRule.every(rulePeriods[i], ruleOffsets[i], rulePlaces[i]));
+    }
+    return rules.build();
+  }
+
+  /** The places visited on {@code step}, which wraps around {@link #numSteps()}. */
+  public ImmutableList<PlaceInfo> placesAt(int step) {
+    return stepAt(step).places;
+  }
+
+  /**
+   * The places visited on {@code step}, sorted by {@link PlaceInfo#placeId()}. Every place must
+   * have its agent.
+   */
+  public ImmutableList<PlaceInfo> placesByPlaceIdAt(int step) {
+    return stepAt(step).placesByPlaceId();
+  }
+
+  /** The places visited on every step, built on each call. */
+  public ImmutableMap<Integer, List<PlaceInfo>> placesAtStepMap() {
+    ImmutableMap.Builder<Integer, List<PlaceInfo>> builder = ImmutableMap.builder();
+    for (int step = 0; step < steps.length; step++) {
+      builder.put(step, placesAt(step));
+    }
+    return builder.build();
+  }
+
+  /** The interned step holding the places visited on {@code step}. */
+  ScheduleStep stepAt(int step) {
+    if (steps.length == 0) {
+      return ScheduleStep.EMPTY;
+    }
+    return steps[Math.floorMod(step, steps.length)];
+  }
+}
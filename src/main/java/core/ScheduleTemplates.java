@@ -0,0 +1,186 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned {@link ScheduleTemplate}s, so that people with the same weekly pattern share one copy of
+ * it. The {@link CentralAgent} interns every person's schedule into {@link
+ * Globals#getScheduleTemplates()} and only sends them the template's id.
+ *
+ * <p>The places visited on one step are interned as a {@link ScheduleStep}, which looks its places
+ * up in {@link Globals#getPlaceTable()} once for everyone on it, and a template is interned by the
+ * ids of its steps. So people whose schedules differ on a few steps still share the steps they have
+ * in common, and each distinct template only costs a reference per step. A template made of {@link
+ * ScheduleRule}s is interned by its rules, and its steps are worked out from them once, when it is
+ * first interned.
+ */
+public final class ScheduleTemplates {
+  private static final PlaceInfo[] NO_PLACES = new PlaceInfo[0];
+  private static final int[] NO_VALUES = new int[0];
+
+  private final List<ScheduleStep> steps = new ArrayList<>();
+  private final Map<Key, Integer> stepIdOf = new HashMap<>();
+
+  private final List<ScheduleTemplate> templates = new ArrayList<>();
+  private final Map<Key, ScheduleTemplate> templateOf = new HashMap<>();
+  // Keyed by the places of the rules, then the number of steps and the period and offset of each
+  private final Map<Key, ScheduleTemplate> ruleTemplateOf = new HashMap<>();
+
+  /**
+   * The template holding {@code placesAtStepMap}, which must be keyed by the steps from 0 up to its
+   * size. A step missing from the map has no places.
+   */
+  public synchronized ScheduleTemplate intern(Map<Integer, ? extends List<PlaceInfo>> placesAtStepMap) {
+    int[] stepIds = new int[placesAtStepMap.size()];
+    for (int step = 0; step < stepIds.length; step++) {
+      List<PlaceInfo> placesAtStep = placesAtStepMap.get(step);
+      stepIds[step] =
+          internStepId(placesAtStep == null ? NO_PLACES : placesAtStep.toArray(NO_PLACES));
+    }
+    Key key = new Key(NO_PLACES, stepIds);
+    ScheduleTemplate template = templateOf.get(key);
+    if (template == null) {
+      ScheduleStep[] templateSteps = new ScheduleStep[stepIds.length];
+      for (int step = 0; step < stepIds.length; step++) {
+        templateSteps[step] = steps.get(stepIds[step]);
+      }
+      template = ScheduleTemplate.ofSteps(this, templates.size(), templateSteps);
+      templates.add(template);
+      templateOf.put(key, template);
+    }
+    return template;
+  }
+
+  /**
+   * The template which visits the places of {@code rules} over a cycle of {@code numSteps} steps.
+   * On a step, places are visited in the order of their rules.
+   */
+  public synchronized ScheduleTemplate intern(List<ScheduleRule> rules, int numSteps) {
+    PlaceInfo[] rulePlaces = new PlaceInfo[rules.size()];
+    int[] rulePeriods = new int[rules.size()];
+    int[] ruleOffsets = new int[rules.size()];
+    int[] keyValues = new int[1 + 2 * rules.size()];
+    keyValues[0] = numSteps;
+    for (int i = 0; i < rules.size(); i++) {
+      ScheduleRule rule = rules.get(i);
+      rulePlaces[i] = rule.place();
+      rulePeriods[i] = rule.period();
+      ruleOffsets[i] = rule.offset();
+      keyValues[1 + 2 * i] = rulePeriods[i];
+      keyValues[2 + 2 * i] = ruleOffsets[i];
+    }
+    Key key = new Key(rulePlaces, keyValues);
+    ScheduleTemplate template = ruleTemplateOf.get(key);
+    if (template == null) {
+      ScheduleStep[] templateSteps = new ScheduleStep[numSteps];
+      for (int step = 0; step < numSteps; step++) {
+        templateSteps[step] =
+            steps.get(
+                internStepId(placesOnCycleStep(step, rulePlaces, rulePeriods, ruleOffsets)));
+      }
+      template =
+          ScheduleTemplate.ofRules(
+              this, templates.size(), templateSteps, rulePlaces, rulePeriods, ruleOffsets);
+      templates.add(template);
+      ruleTemplateOf.put(key, template);
+    }
+    return template;
+  }
+
+  /** The template in this registry with the same places as {@code template}. */
+  public ScheduleTemplate intern(ScheduleTemplate template) {
+    if (template.templates() == this) {
+      return template;
+    }
+    if (template.isRuleBased()) {
+      return intern(template.rules(), template.numSteps());
+    }
+    return intern(template.placesAtStepMap());
+  }
+
+  public synchronized ScheduleTemplate get(int templateId) {
+    return templates.get(templateId);
+  }
+
+  public synchronized int numTemplates() {
+    return templates.size();
+  }
+
+  private int internStepId(PlaceInfo[] places) {
+    Key key = new Key(places, NO_VALUES);
+    Integer stepId = stepIdOf.get(key);
+    if (stepId == null) {
+      stepId = steps.size();
+      steps.add(new ScheduleStep(ImmutableList.copyOf(places)));
+      stepIdOf.put(key, stepId);
+    }
+    return stepId;
+  }
+
+  // The places visited on cycleStep by the rules, in the order of the rules
+  private static PlaceInfo[] placesOnCycleStep(
+      int cycleStep, PlaceInfo[] rulePlaces, int[] rulePeriods, int[] ruleOffsets) {
+    int numPlaces = 0;
+    for (int i = 0; i < rulePeriods.length; i++) {
+      if (cycleStep % rulePeriods[i] == ruleOffsets[i]) {
+        numPlaces++;
+      }
+    }
+    if (numPlaces == 0) {
+      return NO_PLACES;
+    }
+    PlaceInfo[] places = new PlaceInfo[numPlaces];
+    numPlaces = 0;
+    for (int i = 0; i < rulePeriods.length; i++) {
+      if (cycleStep % rulePeriods[i] == ruleOffsets[i]) {
+        places[numPlaces++] = rulePlaces[i];
+      }
+    }
+    return places;
+  }
+
+  // PlaceInfos are mutable and equal by value, so keys compare them by identity
+  private static final class Key {
+    private final PlaceInfo[] places;
+    private final int[] values;
+    private final int hashCode;
+
+    Key(PlaceInfo[] places, int[] values) {
+      this.places = places;
+      this.values = values;
+      int hash = Arrays.hashCode(values);
+      for (PlaceInfo place : places) {
+        hash = 31 * hash + System.identityHashCode(place);
+      }
+      this.hashCode = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      if (places.length != other.places.length || !Arrays.equals(values, other.values)) {
+        return false;
+      }
+      for (int i = 0; i < places.length; i++) {
+        if (places[i] != other.places[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
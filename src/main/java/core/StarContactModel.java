@@ -0,0 +1,55 @@
+package core;
+
+/**
+ * STAR places: the center agent contacts {@link Globals#numStaffToStudenContacts} of the other
+ * occupants. Nothing happens if the center agent is absent.
+ */
+public final class StarContactModel implements ContactModel {
+  private static final StarContactModel INSTANCE = new StarContactModel();
+
+  public static StarContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    int center = kernel.indexOf(place.center());
+    // The center agent is a no-show, so the event technically does not happen.
+    if (center == ContactKernel.NO_OCCUPANT) {
+      return;
+    }
+
+    int numContacts = kernel.sampleContactsExcept(center, globals.numStaffToStudenContacts, random);
+    for (int c = 0; c < numContacts; c++) {
+      int occupant = kernel.sampledContact(c);
+      int infected;
+      int infectee;
+      if (kernel.isInfectious(center)) {
+        infected = center;
+        infectee = occupant;
+      } else if (kernel.isInfectious(occupant)) {
+        infected = occupant;
+        infectee = center;
+      } else {
+        continue;
+      }
+      // Field order mirrors PlaceAgent#getWhoToInfect, including its TODO about swapped fields
+      kernel.putEvent(
+          infectee,
+          kernel.id(infected),
+          infectee,
+          kernel.willInfect(infected, infectee, baseInfectionRate, random),
+          infectee,
+          infected);
+    }
+  }
+
+  private StarContactModel() {
+
+  }
+}
@@ -0,0 +1,105 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Which people are active and which are suppressed, kept by the {@link CentralAgent} so that a
+ * change to {@link Globals#nActiveAgents} only touches the people who switch, rather than every
+ * person reporting their status.
+ *
+ * <p>Active and suppressed people are each kept in a dense array, and each person knows their
+ * position in it. Switching k people picks them with a partial Fisher-Yates shuffle of the array
+ * they leave, so it costs O(k) however many people there are, and every subset of k is equally
+ * likely.
+ */
+public final class SuppressionRegistry {
+  // Position in the active group, or the complement of the position in the suppressed group
+  private final Map<Long, Integer> positionOf = new HashMap<>();
+  private final Group active = new Group(false);
+  private final Group suppressed = new Group(true);
+
+  public int numActive() {
+    return active.size;
+  }
+
+  public int numSuppressed() {
+    return suppressed.size;
+  }
+
+  public boolean isSuppressed(long personId) {
+    Integer position = positionOf.get(personId);
+    return position != null && position < 0;
+  }
+
+  /** Records that {@code personId} is suppressed or active, registering them if they are new. */
+  public void set(long personId, boolean isSuppressed) {
+    Integer position = positionOf.get(personId);
+    if (position != null) {
+      if ((position < 0) == isSuppressed) {
+        return;
+      }
+      if (position < 0) {
+        suppressed.removeAt(~position);
+      } else {
+        active.removeAt(position);
+      }
+    }
+    (isSuppressed ? suppressed : active).add(personId);
+  }
+
+  /**
+   * Picks {@code numToSwitch} people at random from the suppressed people if {@code toActive}, or
+   * from the active people otherwise, and moves them to the other group. Picks everyone in the group
+   * if it holds no more than {@code numToSwitch}.
+   */
+  public long[] switchRandomly(long numToSwitch, boolean toActive, Random random) {
+    Group from = toActive ? suppressed : active;
+    Group to = toActive ? active : suppressed;
+    int n = (int) Math.max(0, Math.min(numToSwitch, from.size));
+    long[] switched = new long[n];
+    for (int i = 0; i < n; i++) {
+      int position = random.nextInt(from.size);
+      switched[i] = from.ids[position];
+      from.removeAt(position);
+    }
+    for (long personId : switched) {
+      to.add(personId);
+    }
+    return switched;
+  }
+
+  private final class Group {
+    final boolean isSuppressed;
+    long[] ids = new long[16];
+    int size = 0;
+
+    Group(boolean isSuppressed) {
+      this.isSuppressed = isSuppressed;
+    }
+
+    void add(long personId) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, 2 * size);
+      }
+      positionOf.put(personId, encode(size));
+      ids[size++] = personId;
+    }
+
+    // Moves the last id into the gap, so removal does not shift the rest
+    void removeAt(int position) {
+      positionOf.remove(ids[position]);
+      long last = ids[--size];
+      if (position < size) {
+        ids[position] = last;
+        positionOf.put(last, encode(position));
+      }
+    }
+
+    private int encode(int position) {
+      return isSuppressed ? ~position : position;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Events scheduled for future steps, kept in a ring of per-step slots so that advancing to a step
+ * only touches the events that fall due. Used by the {@link CentralAgent} for its delayed work,
+ * such as releasing test results and ending quarantines.
+ *
+ * <p>An event is held in the slot for its step modulo the number of slots. An event more than one
+ * turn of the wheel ahead waits in its slot, and is passed over until its turn comes round, so the
+ * wheel should have at least as many slots as the longest delay usually scheduled.
+ *
+ * @param <T> the type of event
+ */
+public final class TimingWheel<T> implements Serializable {
+  private final int[][] slotSteps;
+  private final Object[][] slotEvents;
+  private final int[] slotSizes;
+  private final int mask;
+  private int lastAdvancedStep = Integer.MIN_VALUE;
+  private int size = 0;
+
+  // Events scheduled for a step that was already advanced past, fired on the next advance
+  private final List<T> overdue = new ArrayList<>();
+
+  /** A wheel with at least {@code minSlots} slots. */
+  public TimingWheel(int minSlots) {
+    int numSlots = Integer.highestOneBit(Math.max(minSlots, 1));
+    if (numSlots < minSlots) {
+      numSlots <<= 1;
+    }
+    this.slotSteps = new int[numSlots][];
+    this.slotEvents = new Object[numSlots][];
+    this.slotSizes = new int[numSlots];
+    this.mask = numSlots - 1;
+  }
+
+  /** The number of events scheduled and not yet due. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Schedules {@code event} for {@code step}. If the wheel was already advanced to {@code step},
+   * the event is due on the next call to {@link #advanceTo}.
+   */
+  public void schedule(int step, T event) {
+    size++;
+    if (step <= lastAdvancedStep) {
+      overdue.add(event);
+      return;
+    }
+    int slot = step & mask;
+    int n = slotSizes[slot];
+    if (slotSteps[slot] == null) {
+      slotSteps[slot] = new int[4];
+      slotEvents[slot] = new Object[4];
+    } else if (n == slotSteps[slot].length) {
+      slotSteps[slot] = Arrays.copyOf(slotSteps[slot], 2 * n);
+      slotEvents[slot] = Arrays.copyOf(slotEvents[slot], 2 * n);
+    }
+    slotSteps[slot][n] = step;
+    slotEvents[slot][n] = event;
+    slotSizes[slot] = n + 1;
+  }
+
+  /**
+   * Removes every event due on or before {@code step} and passes it to {@code onDue}: overdue events
+   * first, then by step, and in the order they were scheduled within a step. Advancing one step at a
+   * time costs time in proportion to the due events.
+   */
+  public void advanceTo(int step, Consumer<T> onDue) {
+    if (!overdue.isEmpty()) {
+      List<T> due = new ArrayList<>(overdue);
+      overdue.clear();
+      size -= due.size();
+      due.forEach(onDue);
+    }
+    if (step <= lastAdvancedStep) {
+      return;
+    }
+    boolean sweep = lastAdvancedStep == Integer.MIN_VALUE || step - lastAdvancedStep > mask + 1;
+    int fromStep = lastAdvancedStep + 1;
+    lastAdvancedStep = step;
+    if (sweep) {
+      // On the first advance, or after a jump of more than a turn, any slot may hold due events
+      sweepTo(step, onDue);
+      return;
+    }
+    for (int s = fromStep; s <= step; s++) {
+      fireSlot(s & mask, s, onDue);
+    }
+  }
+
+  // Fires the events in slot due on or before step, keeping the rest in order
+  @SuppressWarnings("unchecked")
+  private void fireSlot(int slot, int step, Consumer<T> onDue) {
+    int n = slotSizes[slot];
+    if (n == 0) {
+      return;
+    }
+    int[] steps = slotSteps[slot];
+    Object[] events = slotEvents[slot];
+    int kept = 0;
+    for (int i = 0; i < n; i++) {
+      if (steps[i] <= step) {
+        size--;
+        onDue.accept((T) events[i]);
+      } else {
+        steps[kept] = steps[i];
+        events[kept++] = events[i];
+      }
+    }
+    Arrays.fill(events, kept, n, null);
+    slotSizes[slot] = kept;
+  }
+
+  // Fires every event due on or before step, from all slots, in step order
+  @SuppressWarnings("unchecked")
+  private void sweepTo(int step, Consumer<T> onDue) {
+    List<int[]> due = new ArrayList<>();
+    for (int slot = 0; slot < slotSizes.length; slot++) {
+      for (int i = 0; i < slotSizes[slot]; i++) {
+        if (slotSteps[slot][i] <= step) {
+          due.add(new int[] {slotSteps[slot][i], slot, i});
+        }
+      }
+    }
+    // Stable, so events of one step keep their scheduling order
+    due.sort((a, b) -> Integer.compare(a[0], b[0]));
+    List<Object> dueEvents = new ArrayList<>(due.size());
+    for (int[] event : due) {
+      dueEvents.add(slotEvents[event[1]][event[2]]);
+    }
+    for (int slot = 0; slot < slotSizes.length; slot++) {
+      fireSlot(slot, step, event -> { });
+    }
+    for (Object event : dueEvents) {
+      onDue.accept((T) event);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package core;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.SortedMap;
+
+/**
+ * Traces a case's contacts, and optionally their contacts in turn, over the {@link ContactLog} in
+ * one pass, without the message phases an interview takes. Used by {@link
+ * CentralAgent#traceContactsFromLog}.
+ *
+ * <p>The search is breadth-first, so every first-degree contact is reached before any second-degree
+ * one. It stops after {@code maxHops} hops or once {@code maxContactsPerCase} contacts have been
+ * traced, and each person is expanded at most once. Places omitted from contact tracing never
+ * record into the log, so they are never searched.
+ */
+public final class TracingEngine {
+
+  /** Receives each contact the search reaches. */
+  public interface Notifier {
+    /**
+     * Called for {@code contact}, who met a person {@code hop - 1} hops from the case on {@code
+     * exposureStep}. Returns whether they were newly traced, so that their own contacts should be
+     * searched.
+     */
+    boolean notify(long contact, int exposureStep, int hop);
+  }
+
+  private final ContactLog contactLog;
+  private final int maxHops;
+  private final int maxContactsPerCase;
+
+  public TracingEngine(ContactLog contactLog, int maxHops, int maxContactsPerCase) {
+    if (maxHops < 1) {
+      throw new IllegalArgumentException("maxHops must be at least 1, was " + maxHops);
+    }
+    this.contactLog = contactLog;
+    this.maxHops = maxHops;
+    this.maxContactsPerCase = maxContactsPerCase;
+  }
+
+  /**
+   * Traces {@code caseId}'s contacts between {@code fromStep} and {@code toStep}. Each person
+   * reached is interviewed in turn, recalling {@code recall} of the people they met on each step,
+   * and is passed to {@code notifier} most recently met first. A contact's own contacts are only
+   * searched from the step they were exposed. Returns the number of contacts newly traced.
+   */
+  public int trace(
+      long caseId, int fromStep, int toStep, double recall, Random random, Notifier notifier) {
+    LongHashSet expanded = new LongHashSet();
+    expanded.add(caseId);
+    // Pairs of (person, step their search starts from), one hop at a time
+    ArrayDeque<long[]> frontier = new ArrayDeque<>();
+    frontier.add(new long[] {caseId, fromStep});
+    int numTraced = 0;
+    for (int hop = 1; hop <= maxHops && !frontier.isEmpty(); hop++) {
+      ArrayDeque<long[]> nextFrontier = new ArrayDeque<>();
+      for (long[] person : frontier) {
+        long personId = person[0];
+        SortedMap<Integer, ContactSet> byStep =
+            contactLog.contactsByStep(personId, (int) person[1], toStep);
+        int[] steps = new int[byStep.size()];
+        ContactSet[] recalled = new ContactSet[byStep.size()];
+        int n = 0;
+        for (Map.Entry<Integer, ContactSet> contactsAtStep : byStep.entrySet()) {
+          steps[n] = contactsAtStep.getKey();
+          recalled[n++] = contactsAtStep.getValue().recall(recall, random);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+          PrimitiveIterator.OfLong contacts = recalled[i].iterator();
+          while (contacts.hasNext()) {
+            long contact = contacts.nextLong();
+            if (contact == personId || expanded.contains(contact)) {
+              continue;
+            }
+            if (!notifier.notify(contact, steps[i], hop)) {
+              continue;
+            }
+            expanded.add(contact);
+            nextFrontier.add(new long[] {contact, steps[i]});
+            if (++numTraced >= maxContactsPerCase) {
+              return numTraced;
+            }
+          }
+        }
+      }
+      frontier = nextFrontier;
+    }
+    return numTraced;
+  }
+}
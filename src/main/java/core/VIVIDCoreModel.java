@@ -174,6 +174,8 @@ public abstract class VIVIDCoreModel<T> extends AgentBasedModel<Globals> {
       run(
           Person.sendTestSelectionMultiplierToCentralAgent,
           CentralAgent.receiveTestSelectionMultipliers);
+      run(Person.registerForVaccine, CentralAgent.registerVaccineEligibility);
+      run(Person.reportSuppression, CentralAgent.registerSuppressionStatus);
 
       run(Person.setInitialLocation);
       run(Person.setupInitialInfectionState); // Get infection state & properties for initial agents
@@ -181,24 +183,25 @@ public abstract class VIVIDCoreModel<T> extends AgentBasedModel<Globals> {
     }
 
     if (getGlobals().tStep > 0 && prevNActiveAgents != getGlobals().nActiveAgents) {
-      run(Person.reportSuppression, CentralAgent.reassignSuppression, Person.updateSuppression);
+      run(CentralAgent.reassignSuppression, Person.updateSuppression);
     }
 
     getGlobals().resetInfectionStatistics();
 
     run(Person.modifyCompliance);
 
-    run(Person.reportForVaccine,
-        CentralAgent.distributeVaccines,
-        Person.getVaccinated);
+    run(CentralAgent.distributeVaccines, Person.getVaccinated);
 
     run(Person.decideToHostAdditionalEvent,
         Person.decideToAttendAdditionalEvent);
 
     // Infection step is performed first (based on existing links), because the new added link wont
-    // be activated in the current time step.
+    // be activated in the current time step. The presence phases only send messages when
+    // Globals#useTwoPhasePresence or Globals#crossShardMixing is set.
     run(
         Person.executeMovement,
+        PlaceAgent.receivePresence,
+        Split.create(Person.sendTransmissibilityInfo, PlaceAgent.collectShardPressure),
         PlaceAgent.generateContactsAndInfect,
         Split.create(
             Split.create(Person.infectedByCOVID, CentralAgent.processPlaceInfectionRates),
@@ -227,20 +230,37 @@ public abstract class VIVIDCoreModel<T> extends AgentBasedModel<Globals> {
         CentralAgent.releaseTestResults,
         Person.receiveQuarantineStartOrStopAndAdministerTest);
 
-    run(
-        CentralAgent.startInterviews,
-        Person.requestOccupancyFromPlacesVisited,
-        PlaceAgent.sendOccupancy,
-        Person.receiveOccupancyHistoriesAndSendToCentralAgent,
-        CentralAgent.processInterviewContacts,
-        Person.receiveQuarantineStartOrStopAndAdministerTest,
-        CentralAgent.processInfectionStatus
-    );
+    if (getGlobals().useExposureIndex) {
+      run(
+          CentralAgent.traceContactsFromExposureIndex,
+          Person.receiveQuarantineStartOrStopAndAdministerTest,
+          CentralAgent.processInfectionStatus
+      );
+    } else if (getGlobals().useContactLog) {
+      run(
+          CentralAgent.traceContactsFromLog,
+          Person.receiveQuarantineStartOrStopAndAdministerTest,
+          CentralAgent.processInfectionStatus
+      );
+    } else {
+      run(
+          CentralAgent.startInterviews,
+          Person.requestOccupancyFromPlacesVisited,
+          PlaceAgent.sendOccupancy,
+          Person.receiveOccupancyHistoriesAndSendToCentralAgent,
+          CentralAgent.processInterviewContacts,
+          Person.receiveQuarantineStartOrStopAndAdministerTest,
+          CentralAgent.processInfectionStatus
+      );
+    }
 
     run(CentralAgent.doRandomizedTesting, Person.getTested, CentralAgent.processInfectionStatus);
 
-    // Counts the current number of infected and infectious agents
-    run(Person.countInfected);
+    // Counts the current number of infected and infectious agents. With the person state store,
+    // the central agent counts them from the store in updateInfectionStatistics instead.
+    if (!getGlobals().usePersonStateStore) {
+      run(Person.countInfected);
+    }
 
     // Steps to determine if an agent succumbs to the disease
     run(Person.recoverOrDieOrStep, CentralAgent.agentsDied);
@@ -0,0 +1,122 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * The people who may still be offered a vaccine, kept by the {@link CentralAgent} so that people
+ * need not ask for one every step. People are registered once, leave when vaccinated or dead, and
+ * sit out while suppressed.
+ *
+ * <p>Each priority tier keeps its eligible people in a dense array, and each person knows their
+ * position in it, so any change is O(1). Picking k recipients is a partial Fisher-Yates shuffle of
+ * the lowest tiers, which costs O(k) however many people are eligible.
+ */
+public final class VaccineRegistry {
+  private final Map<Long, Entry> entries = new HashMap<>();
+  private final TreeMap<Integer, Tier> tiers = new TreeMap<>();
+  private int numEligible = 0;
+
+  /** The number of registered people who are not suppressed. */
+  public int numEligible() {
+    return numEligible;
+  }
+
+  /**
+   * Registers {@code personId} in {@code priorityTier}, where lower tiers are offered vaccines
+   * first. Registering someone again moves them to the new tier and suppression state.
+   */
+  public void register(long personId, int priorityTier, boolean suppressed) {
+    remove(personId);
+    Entry entry = new Entry(personId, priorityTier);
+    entries.put(personId, entry);
+    if (!suppressed) {
+      tier(priorityTier).add(entry);
+    }
+  }
+
+  /** Removes {@code personId} for good, such as when they die. */
+  public void remove(long personId) {
+    Entry entry = entries.remove(personId);
+    if (entry != null && entry.position >= 0) {
+      tiers.get(entry.priorityTier).remove(entry);
+    }
+  }
+
+  /** Takes {@code personId} out of or back into selection, keeping their registration. */
+  public void setSuppressed(long personId, boolean suppressed) {
+    Entry entry = entries.get(personId);
+    if (entry == null || suppressed == (entry.position < 0)) {
+      return;
+    }
+    if (suppressed) {
+      tiers.get(entry.priorityTier).remove(entry);
+    } else {
+      tier(entry.priorityTier).add(entry);
+    }
+  }
+
+  /**
+   * Picks up to {@code numToVaccinate} eligible people, all of a tier before any of the next, and
+   * at random within a tier. The people picked are removed, as they are about to be vaccinated.
+   */
+  public long[] select(int numToVaccinate, Random random) {
+    long[] selected = new long[Math.max(0, Math.min(numToVaccinate, numEligible))];
+    int n = 0;
+    for (Tier tier : tiers.values()) {
+      while (n < selected.length && tier.size > 0) {
+        Entry entry = tier.entries[random.nextInt(tier.size)];
+        tier.remove(entry);
+        entries.remove(entry.personId);
+        selected[n++] = entry.personId;
+      }
+      if (n == selected.length) {
+        break;
+      }
+    }
+    return selected;
+  }
+
+  private Tier tier(int priorityTier) {
+    return tiers.computeIfAbsent(priorityTier, t -> new Tier());
+  }
+
+  private static final class Entry {
+    final long personId;
+    final int priorityTier;
+    // Index in the tier's entries, or -1 while suppressed
+    int position = -1;
+
+    Entry(long personId, int priorityTier) {
+      this.personId = personId;
+      this.priorityTier = priorityTier;
+    }
+  }
+
+  private final class Tier {
+    Entry[] entries = new Entry[16];
+    int size = 0;
+
+    void add(Entry entry) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, 2 * size);
+      }
+      entry.position = size;
+      entries[size++] = entry;
+      numEligible++;
+    }
+
+    // Moves the last entry into the gap, so removal does not shift the rest
+    void remove(Entry entry) {
+      Entry last = entries[--size];
+      entries[entry.position] = last;
+      last.position = entry.position;
+      entries[size] = null;
+      entry.position = -1;
+      numEligible--;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Agent ids with non-negative weights, from which ids are drawn with probability proportional to
+ * their weight. Used to pick people for randomized testing by their test selection multipliers.
+ *
+ * <p>Weights sit in slots, in the order ids were first added, with a Fenwick tree of their prefix
+ * sums. Adding, changing or removing a weight and drawing an id each take O(log n), so drawing k ids
+ * without replacement takes O(k log n) instead of a scan of every id per draw.
+ */
+public final class WeightedSampler {
+  // Marks a free slot. Agent ids are never negative, so it cannot collide with one
+  private static final long FREE = Long.MIN_VALUE;
+
+  private long[] ids = new long[0];
+  private double[] weights = new double[0];
+  // tree[i] holds the sum of weights in slots (i - lowestOneBit(i), i], 1-indexed
+  private double[] tree = new double[1];
+  private int numSlots = 0;
+  private final Map<Long, Integer> slotOf = new HashMap<>();
+  private int[] freeSlots = new int[0];
+  private int numFreeSlots = 0;
+  private double totalWeight = 0;
+
+  /**
+   * A sampler over {@code weights}, with slots in its iteration order. Returns the sampler itself if
+   * {@code weights} is the {@link #asMap()} view of one.
+   */
+  public static WeightedSampler of(Map<Long, Double> weights) {
+    if (weights instanceof MapView) {
+      return ((MapView) weights).sampler();
+    }
+    WeightedSampler sampler = new WeightedSampler();
+    sampler.ensureCapacity(weights.size());
+    for (Map.Entry<Long, Double> entry : weights.entrySet()) {
+      int slot = sampler.numSlots++;
+      sampler.ids[slot] = entry.getKey();
+      sampler.weights[slot] = entry.getValue();
+      sampler.slotOf.put(entry.getKey(), slot);
+    }
+    sampler.rebuildTree();
+    return sampler;
+  }
+
+  public int size() {
+    return slotOf.size();
+  }
+
+  public double totalWeight() {
+    return totalWeight;
+  }
+
+  /** Sets the weight of {@code id}, adding it if it is new. */
+  public void put(long id, double weight) {
+    if (id == FREE || !(weight >= 0)) {
+      throw new IllegalArgumentException("Invalid id " + id + " or weight " + weight);
+    }
+    Integer slot = slotOf.get(id);
+    if (slot == null) {
+      slot = numFreeSlots > 0 ? freeSlots[--numFreeSlots] : newSlot();
+      ids[slot] = id;
+      slotOf.put(id, slot);
+    }
+    setWeight(slot, weight);
+  }
+
+  /** Removes {@code id}, returning false if it was not present. */
+  public boolean remove(long id) {
+    Integer slot = slotOf.remove(id);
+    if (slot == null) {
+      return false;
+    }
+    setWeight(slot, 0);
+    ids[slot] = FREE;
+    if (numFreeSlots == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, Math.max(8, 2 * numFreeSlots));
+    }
+    freeSlots[numFreeSlots++] = slot;
+    return true;
+  }
+
+  /**
+   * Draws up to {@code numToSample} distinct ids, each with probability proportional to its weight
+   * among the ids not yet drawn. {@code uniformBelow} must return a uniform draw in [0, bound) for
+   * the bound it is given. Stops early if every id is drawn or only ids of weight zero are left.
+   * The weights are unchanged afterwards.
+   *
+   * <p>For the same draws this picks the same ids as scanning the ids in slot order and taking the
+   * first whose running sum of weights exceeds the draw.
+   */
+  public long[] sampleWithoutReplacement(long numToSample, DoubleUnaryOperator uniformBelow) {
+    int k = (int) Math.min(numToSample, size());
+    long[] sampled = new long[k];
+    int[] sampledSlots = new int[k];
+    double sumSampled = 0;
+    int n = 0;
+    while (n < k) {
+      double remaining = totalWeight - sumSampled;
+      if (!(remaining > 0)) {
+        break;
+      }
+      int slot = slotAt(uniformBelow.applyAsDouble(remaining));
+      if (slot < 0) {
+        break;
+      }
+      sampled[n] = ids[slot];
+      sampledSlots[n] = slot;
+      sumSampled += weights[slot];
+      n++;
+      // Exclude the slot from the tree while sampling, but keep its weight to restore
+      adjustTree(slot, -weights[slot]);
+    }
+    for (int i = 0; i < n; i++) {
+      adjustTree(sampledSlots[i], weights[sampledSlots[i]]);
+    }
+    return n == k ? sampled : Arrays.copyOf(sampled, n);
+  }
+
+  /** A read-only view of the ids and their weights, in slot order. */
+  public Map<Long, Double> asMap() {
+    return new MapView();
+  }
+
+  /**
+   * The first slot whose prefix sum in the tree exceeds {@code target}, or the last slot holding
+   * weight if rounding put {@code target} past the end. Returns -1 if no slot holds weight.
+   */
+  private int slotAt(double target) {
+    int pos = 0;
+    double rest = target;
+    for (int step = Integer.highestOneBit(Math.max(numSlots, 1)); step > 0; step >>= 1) {
+      int next = pos + step;
+      if (next <= numSlots && tree[next] <= rest) {
+        pos = next;
+        rest -= tree[next];
+      }
+    }
+    if (pos < numSlots) {
+      return pos;
+    }
+    for (int slot = numSlots - 1; slot >= 0; slot--) {
+      if (ids[slot] != FREE && prefixSum(slot + 1) - prefixSum(slot) > 0) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private double prefixSum(int numSlotsIncluded) {
+    double sum = 0;
+    for (int i = numSlotsIncluded; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  private void setWeight(int slot, double weight) {
+    double delta = weight - weights[slot];
+    weights[slot] = weight;
+    totalWeight += delta;
+    adjustTree(slot, delta);
+  }
+
+  private void adjustTree(int slot, double delta) {
+    for (int i = slot + 1; i <= numSlots; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  private int newSlot() {
+    ensureCapacity(numSlots + 1);
+    int slot = numSlots++;
+    // The tree node of a new last slot also covers some earlier slots, so recompute it
+    int node = slot + 1;
+    double sum = 0;
+    for (int s = node - (node & -node); s < slot; s++) {
+      sum += weights[s];
+    }
+    tree[node] = sum;
+    return slot;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > ids.length) {
+      int newCapacity = Math.max(capacity, Math.max(16, 2 * ids.length));
+      ids = Arrays.copyOf(ids, newCapacity);
+      weights = Arrays.copyOf(weights, newCapacity);
+      tree = Arrays.copyOf(tree, newCapacity + 1);
+    }
+  }
+
+  // Builds the tree from the weights in O(n)
+  private void rebuildTree() {
+    Arrays.fill(tree, 0);
+    totalWeight = 0;
+    for (int slot = 0; slot < numSlots; slot++) {
+      int node = slot + 1;
+      tree[node] += weights[slot];
+      totalWeight += weights[slot];
+      int parent = node + (node & -node);
+      if (parent <= numSlots) {
+        tree[parent] += tree[node];
+      }
+    }
+  }
+
+  private final class MapView extends AbstractMap<Long, Double> {
+    WeightedSampler sampler() {
+      return WeightedSampler.this;
+    }
+
+    @Override
+    public int size() {
+      return slotOf.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return slotOf.containsKey(key);
+    }
+
+    @Override
+    public Double get(Object key) {
+      Integer slot = slotOf.get(key);
+      return slot == null ? null : weights[slot];
+    }
+
+    @Override
+    public Set<Entry<Long, Double>> entrySet() {
+      return new AbstractSet<Entry<Long, Double>>() {
+        @Override
+        public int size() {
+          return slotOf.size();
+        }
+
+        @Override
+        public Iterator<Entry<Long, Double>> iterator() {
+          return new Iterator<Entry<Long, Double>>() {
+            private int slot = nextLiveSlot(0);
+
+            @Override
+            public boolean hasNext() {
+              return slot < numSlots;
+            }
+
+            @Override
+            public Entry<Long, Double> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              Entry<Long, Double> entry = new SimpleImmutableEntry<>(ids[slot], weights[slot]);
+              slot = nextLiveSlot(slot + 1);
+              return entry;
+            }
+          };
+        }
+      };
+    }
+
+    private int nextLiveSlot(int from) {
+      int slot = from;
+      while (slot < numSlots && ids[slot] == FREE) {
+        slot++;
+      }
+      return slot;
+    }
+  }
+}
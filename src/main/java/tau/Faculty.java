@@ -16,7 +16,7 @@ public class Faculty extends UniversityAffiliate {
       suppressionPerc = 1.0 - (getGlobals().nActiveAgents / (double)getGlobals().nAgents);
     }
     SeededRandom random = getPrng();
-    boolean suppressed = getPrng().uniform(0.0,1.0).sample() < suppressionPerc;
+    boolean suppressed = getFastRandom().nextDouble() < suppressionPerc;
     return PersonInitializationInfo.builderSetWithGlobalDefaults(getGlobals(), random)
         .ageSupplier(
             PersonInitializationInfo.truncNormal(
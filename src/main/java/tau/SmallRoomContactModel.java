@@ -0,0 +1,50 @@
+package tau;
+
+import core.ContactKernel;
+import core.ContactModel;
+import core.FastRandom;
+import core.FullyConnectedContactModel;
+import core.Globals;
+import core.PlaceInfo;
+
+/**
+ * Contact model for suites and bathrooms, which are the most numerous places in the model and
+ * usually hold only a handful of people.
+ *
+ * <p>Contacts are fully connected, but a room with no infectious or no susceptible occupant is
+ * skipped before any contacts are drawn, since none of them could transmit. Skipping those draws
+ * means these places consume a different random stream than {@link FullyConnectedContactModel}
+ * does, so runs are reproducible under a fixed seed but do not match runs with the core model.
+ * It is therefore only used when {@link Globals#useModuleContactModels} is set.
+ */
+public final class SmallRoomContactModel implements ContactModel {
+  private static final SmallRoomContactModel INSTANCE = new SmallRoomContactModel();
+
+  public static SmallRoomContactModel getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void generateContacts(
+      ContactKernel kernel,
+      PlaceInfo place,
+      double baseInfectionRate,
+      Globals globals,
+      FastRandom random) {
+    boolean anyInfectious = false;
+    boolean anySusceptible = false;
+    for (int i = 0; i < kernel.size(); i = kernel.nextDistinct(i)) {
+      anyInfectious |= kernel.isInfectious(i);
+      anySusceptible |= kernel.isSusceptible(i);
+    }
+    if (!anyInfectious || !anySusceptible) {
+      return;
+    }
+    FullyConnectedContactModel.infectFullyConnected(
+        kernel, place, baseInfectionRate, globals, random);
+  }
+
+  private SmallRoomContactModel() {
+
+  }
+}
@@ -23,7 +23,7 @@ public class Staff extends UniversityAffiliate {
     if(getGlobals().suppressAgentType == 0) {
       suppressionPerc = 1.0 - (getGlobals().nActiveAgents / (double)getGlobals().nAgents);
     }
-    boolean suppressed = getPrng().uniform(0.0,1.0).sample() < suppressionPerc;
+    boolean suppressed = getFastRandom().nextDouble() < suppressionPerc;
     return PersonInitializationInfo.builderSetWithGlobalDefaults(getGlobals(), random)
         .ageSupplier(
             PersonInitializationInfo.truncNormal(
@@ -23,12 +23,14 @@ public class Student extends UniversityAffiliate {
   @Override
   public void initialiseFirstPlace() {
     this.decideNextLocation();
-    this.dailySchedule.placesAtStepMap().forEach(
-        (step, places) -> {
-          homePlaceInfo = places.stream()
-              .filter(place -> place.placeType() == TAUModel.PlaceType.SUITE.ordinal())
-              .findFirst();
-        });
+    // Only the last step of the schedule decides the home place, so the other steps are not
+    // worked out
+    int numSteps = this.dailySchedule.template().numSteps();
+    if (numSteps > 0) {
+      homePlaceInfo = this.dailySchedule.placesAt(numSteps - 1).stream()
+          .filter(place -> place.placeType() == TAUModel.PlaceType.SUITE.ordinal())
+          .findFirst();
+    }
   }
 
   @Override
@@ -47,7 +49,7 @@ public class Student extends UniversityAffiliate {
       }
       suppressionPerc = 1.0 - (numActiveStudents / (double)numStudents);
     }
-    boolean suppressed = getPrng().uniform(0.0,1.0).sample() < suppressionPerc;
+    boolean suppressed = getFastRandom().nextDouble() < suppressionPerc;
 
     SeededRandom random = getPrng();
     return PersonInitializationInfo.builderSetWithGlobalDefaults(getGlobals(), random)
@@ -102,7 +104,7 @@ public class Student extends UniversityAffiliate {
                 random))
         .usesPublicTransitFunction(person -> {
           if (((Student) person).livesAtBuilding == null) {
-            return person.getPrng().binomial(1, getGlobals().percOffCampusStudentsWhoUsePublicTransit).sample() == 1;
+            return person.getFastRandom().nextDouble() < getGlobals().percOffCampusStudentsWhoUsePublicTransit;
           }
           return false;
         })
@@ -119,16 +121,19 @@ public class Student extends UniversityAffiliate {
 
   @Override
   public ImmutableList<PlaceInfo> getCurrentPlaces() {
-    long sportEventsToday = this.currentPlaceInfos.stream()
-            .filter(placeInfo -> placeInfo.placeType()
-                    == TAUModel.PlaceType.SPORT_EVENT.ordinal())
-            .count();
+    boolean hasSportEventToday = false;
+    for (int i = 0; i < this.currentPlaceInfos.size(); i++) {
+      if (this.currentPlaceInfos.get(i).placeType() == TAUModel.PlaceType.SPORT_EVENT.ordinal()) {
+        hasSportEventToday = true;
+        break;
+      }
+    }
 
-    if(sportEventsToday == 0) {
+    if(!hasSportEventToday) {
       return super.getCurrentPlaces();
     }
 
-    double attendsSportsEvent = getPrng().uniform(0,1.0).sample();
+    double attendsSportsEvent = getFastRandom().nextDouble();
     if(getGlobals().cancelSportEvents || attendsSportsEvent > attendsSportsEventPerc) {
       return ImmutableList.<PlaceInfo>builder()
               .addAll(this.currentPlaceInfos.stream()
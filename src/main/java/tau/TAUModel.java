@@ -1,6 +1,7 @@
 package tau;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import core.*;
 import simudyne.core.abm.Group;
@@ -639,5 +640,21 @@ public class TAUModel extends VIVIDCoreModel<Globals> {
     public Set<Integer> getPlaceTypesOmittedFromContactTracing() {
       return CT_OMITTED_PLACE_TYPES;
     }
+
+    private static final Map<Integer, ContactModel> CONTACT_MODELS_BY_PLACE_TYPE =
+        ImmutableMap.of(
+            PlaceType.SUITE.ordinal(), SmallRoomContactModel.getInstance(),
+            PlaceType.BATHROOM.ordinal(), SmallRoomContactModel.getInstance());
+
+    @Override
+    public ContactModel getContactModel(PlaceInfo placeInfo, Globals globals) {
+      ContactModel contactModel = CONTACT_MODELS_BY_PLACE_TYPE.get(placeInfo.placeType());
+      if (globals.useModuleContactModels
+          && contactModel != null
+          && placeInfo.networkType() == PlaceInfo.NetworkType.FULLY_CONNECTED) {
+        return contactModel;
+      }
+      return delegate.getContactModel(placeInfo, globals);
+    }
   }
 }
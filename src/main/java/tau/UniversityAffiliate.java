@@ -25,7 +25,7 @@ public class UniversityAffiliate extends Person {
       if (getGlobals().closeFitnessCenter) {
         return false;
       }
-      return getPrng().uniform(0, 1).sample() < (1.0 / fitnessTimesPerWeek);
+      return getFastRandom().nextDouble() < (1.0 / fitnessTimesPerWeek);
     }
     return super.isAttendingToday(placeInfo);
   }
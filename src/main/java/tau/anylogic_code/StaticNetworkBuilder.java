@@ -6,6 +6,8 @@ import com.google.common.collect.ImmutableSet;
 import core.Globals;
 import core.Person;
 import core.PlaceInfo;
+import core.ScheduleRule;
+import core.ScheduleTemplates;
 import tau.*;
 
 import java.util.*;
@@ -94,13 +96,16 @@ public class StaticNetworkBuilder {
     }
   }
 
+  /**
+   * Schedules repeat every two weeks. Rather than listing every person's places on each step of
+   * that cycle, each connection's days are turned into {@link ScheduleRule}s. People with the same
+   * rules share a template, whose steps are worked out once when it is interned.
+   */
   public Map<Long, Person.DailySchedule> createDailySchedules() {
+    int cycleLength = 14 * globals.tOneDay;
     Map<Long, PersonWrapper> personWrapperMap = new LinkedHashMap<>();
     for (PersonWrapper pw : allPeople) {
       personWrapperMap.put(pw.person.personID, pw);
-      for (int i = 0; i < 14 * globals.tOneDay; i++) {
-        pw.placesAtStepMap.put(i, new ArrayList<>());
-      }
     }
 
     Map<String, PlaceInfo> connectionOfAgentsToPlace = new LinkedHashMap<>();
@@ -122,23 +127,43 @@ public class StaticNetworkBuilder {
                 });
       }
     }
-    for (int i = 0; i < 14 * globals.tOneDay; i++) {
-      for (ConnectionOfAgents connectionOfAgents : allConnections) {
-        if (connectionOfAgents.isEventHappeningNow(i, globals.tOneDay)) {
-          PlaceInfo placeInfo =
-              connectionOfAgentsToPlace.get(connectionOfAgents.getName() + connectionOfAgents._id);
-          for (Person p : connectionOfAgents.getPeople()) {
-            personWrapperMap.get(p.personID).placesAtStepMap.get(i).add(placeInfo);
-          }
+    // Connections are gone through in order, so on any step people visit their places in the order
+    // of the connections, as they did when every step was listed
+    for (ConnectionOfAgents connectionOfAgents : allConnections) {
+      PlaceInfo placeInfo =
+          connectionOfAgentsToPlace.get(connectionOfAgents.getName() + connectionOfAgents._id);
+      // The steps of the cycle on which each group of people meet. A split Course sends a
+      // different section each session, so its sessions are grouped by who goes to them. Events
+      // only happen on their stepWithinDay, so only that step of each day is checked.
+      Map<List<Person>, List<Integer>> stepsByPeople = new LinkedHashMap<>();
+      for (int day = 0; day < 14; day++) {
+        int step = day * globals.tOneDay + connectionOfAgents.stepWithinDay;
+        if (connectionOfAgents.isEventHappeningNow(step, globals.tOneDay)) {
+          // Copied, as some connections refill the same list on every call
+          stepsByPeople
+              .computeIfAbsent(
+                  new ArrayList<>(connectionOfAgents.getPeople()), people -> new ArrayList<>())
+              .add(step);
           if (connectionOfAgents instanceof Course) {
             Course c = (Course) connectionOfAgents;
             c.sectionGoingToThisSession++;
           }
         }
       }
+      stepsByPeople.forEach(
+          (people, steps) -> {
+            List<ScheduleRule> rules =
+                ScheduleRule.covering(
+                    placeInfo, steps.stream().mapToInt(Integer::intValue).toArray(), cycleLength);
+            for (Person p : people) {
+              personWrapperMap.get(p.personID).rules.addAll(rules);
+            }
+          });
     }
     ImmutableMap.Builder<Long, Person.DailySchedule> toReturn = ImmutableMap.builder();
-    personWrapperMap.forEach((id, pw) -> toReturn.put(id, pw.generateSchedule()));
+    personWrapperMap.forEach(
+        (id, pw) ->
+            toReturn.put(id, pw.generateSchedule(globals.getScheduleTemplates(), cycleLength)));
     return toReturn.build();
   }
 
@@ -835,7 +860,7 @@ public class StaticNetworkBuilder {
   }
 
   private static class PersonWrapper {
-    final Map<Integer, List<PlaceInfo>> placesAtStepMap = new LinkedHashMap<>();
+    final List<ScheduleRule> rules = new ArrayList<>();
     final List<PlaceInfo> isolationPlaceInfos = new ArrayList<>();
     final List<Consumer<Person>> secondaryInitialziation = new ArrayList<>();
     final Person person;
@@ -844,9 +869,9 @@ public class StaticNetworkBuilder {
       this.person = person;
     }
 
-    Person.DailySchedule generateSchedule() {
+    Person.DailySchedule generateSchedule(ScheduleTemplates templates, int cycleLength) {
       return Person.DailySchedule.create(
-          ImmutableMap.copyOf(placesAtStepMap),
+          templates.intern(rules, cycleLength),
           ImmutableList.copyOf(isolationPlaceInfos),
           personToInit -> {
             secondaryInitialziation.forEach(consumer -> consumer.accept(personToInit));
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import core.FastRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import simudyne.core.rng.SeededRandom;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-draw cost of {@link SeededRandom} and {@link FastRandom} for the draws made on
+ * hot paths: a uniform in [0, 1), a uniform in a range, and a bounded integer.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=benchmarks.RandomBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark {
+  private SeededRandom seededRandom;
+  private FastRandom fastRandom;
+  private final double[] buffer = new double[64];
+
+  @Setup
+  public void setUp() {
+    seededRandom = SeededRandom.create(42);
+    fastRandom = FastRandom.from(SeededRandom.create(42));
+  }
+
+  @Benchmark
+  public double seededUniform() {
+    return seededRandom.uniform(0, 1).sample();
+  }
+
+  @Benchmark
+  public double fastUniform() {
+    return fastRandom.nextDouble();
+  }
+
+  @Benchmark
+  public double seededUniformRange() {
+    return seededRandom.uniform(0.2, 0.8).sample();
+  }
+
+  @Benchmark
+  public double fastUniformRange() {
+    return fastRandom.nextDouble(0.2, 0.8);
+  }
+
+  @Benchmark
+  public int seededDiscrete() {
+    return seededRandom.discrete(0, 29).sample();
+  }
+
+  @Benchmark
+  public int fastDiscrete() {
+    return fastRandom.nextInt(30);
+  }
+
+  @Benchmark
+  public double[] seededFill() {
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = seededRandom.uniform(0, 1).sample();
+    }
+    return buffer;
+  }
+
+  @Benchmark
+  public double[] fastFill() {
+    fastRandom.fill(buffer, 0, buffer.length);
+    return buffer;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RandomBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import core.DefaultModulesImpl;
+import core.WeightedSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import simudyne.core.rng.SeededRandom;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one step of randomized test selection: the earlier scan of every multiplier per test,
+ * against {@link DefaultModulesImpl#getAgentsToTest} over the central agent's {@link
+ * WeightedSampler}.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=benchmarks.TestSelectionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestSelectionBenchmark {
+  @Param({"30000"})
+  public int numAgents;
+
+  @Param({"100", "2000"})
+  public int numTests;
+
+  private final DefaultModulesImpl modules = DefaultModulesImpl.getInstance();
+  private Map<Long, Double> multipliers;
+  private WeightedSampler sampler;
+  private SeededRandom random;
+
+  @Setup
+  public void setUp() {
+    Random weights = new Random(42);
+    multipliers = new LinkedHashMap<>();
+    sampler = new WeightedSampler();
+    for (long id = 0; id < numAgents; id++) {
+      double multiplier = 0.5 + weights.nextDouble();
+      multipliers.put(id, multiplier);
+      sampler.put(id, multiplier);
+    }
+    random = SeededRandom.create(42);
+  }
+
+  @Benchmark
+  public Set<Long> scan() {
+    Map<Long, Double> copy = ImmutableMap.copyOf(multipliers);
+    Set<Long> agentsToTest = new HashSet<>();
+    double sumAllMultipliers = copy.values().stream().reduce(0.0, Double::sum);
+    double sumOfAgentsToTest = 0;
+    while (agentsToTest.size() < numTests && agentsToTest.size() < copy.size()) {
+      double selection = random.uniform(0, sumAllMultipliers - sumOfAgentsToTest).sample();
+      double curSum = 0.0;
+      for (Map.Entry<Long, Double> entry : copy.entrySet()) {
+        if (agentsToTest.contains(entry.getKey())) {
+          continue;
+        }
+        curSum += entry.getValue();
+        if (selection < curSum) {
+          agentsToTest.add(entry.getKey());
+          sumOfAgentsToTest += entry.getValue();
+          break;
+        }
+      }
+    }
+    return agentsToTest;
+  }
+
+  @Benchmark
+  public Set<Long> weightedSampler() {
+    return modules.getAgentsToTest(ImmutableSet.of(), sampler.asMap(), random, numTests);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TestSelectionBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -46,14 +46,21 @@ public class CentralAgentTest {
     testKit.getGlobals().baseInfectivity = 1.0;
   }
 
+  private void registerForVaccine(long personId, int priorityTier, boolean isSuppressed) {
+    testKit.send(Messages.VaccineEligibilityMsg.class, msg -> {
+      msg.priorityTier = priorityTier;
+      msg.isSuppressed = isSuppressed;
+    }, personId).to(centralAgent);
+  }
+
   @Test
   public void testDistributeVaccinesNoVaccines() {
     testKit.getGlobals().numToVaccinate = 0;
 
     for(int i = 0; i < 10; i++) {
-      testKit.send(Messages.ReportForVaccineMsg.class)
-              .to(centralAgent);
+      registerForVaccine(i, 0, false);
     }
+    testKit.testAction(centralAgent, CentralAgent.registerVaccineEligibility);
 
     TestResult result = testKit.testAction(centralAgent, CentralAgent.distributeVaccines);
 
@@ -74,15 +81,41 @@ public class CentralAgentTest {
     testKit.getGlobals().numToVaccinate = 5;
 
     for(int i = 0; i < 10; i++) {
-      testKit.send(Messages.ReportForVaccineMsg.class)
-              .to(centralAgent);
+      registerForVaccine(i, 0, false);
     }
+    testKit.testAction(centralAgent, CentralAgent.registerVaccineEligibility);
 
     TestResult result = testKit.testAction(centralAgent, CentralAgent.distributeVaccines);
     List<Messages.VaccineAdministeredMsg> msgs = result.getMessagesOfType(Messages.VaccineAdministeredMsg.class);
     assertThat(result.getMessagesOfType(Messages.VaccineAdministeredMsg.class).size()).isEqualTo(5);
   }
 
+  @Test
+  public void testDistributeVaccinesByTierWithoutRevaccinating() {
+    testKit.getGlobals().numToVaccinate = 3;
+
+    for(int i = 0; i < 4; i++) {
+      registerForVaccine(i, 1, false);
+    }
+    registerForVaccine(10L, 0, false);
+    registerForVaccine(11L, 0, false);
+    registerForVaccine(12L, 0, true);
+    testKit.testAction(centralAgent, CentralAgent.registerVaccineEligibility);
+
+    TestResult result = testKit.testAction(centralAgent, CentralAgent.distributeVaccines);
+    Set<Long> firstRecipients = result.getMessagesOfType(Messages.VaccineAdministeredMsg.class)
+        .stream().map(Message::getTo).collect(Collectors.toSet());
+    assertThat(firstRecipients).hasSize(3);
+    assertThat(firstRecipients).containsAllOf(10L, 11L);
+    assertThat(firstRecipients).doesNotContain(12L);
+
+    result = testKit.testAction(centralAgent, CentralAgent.distributeVaccines);
+    Set<Long> secondRecipients = result.getMessagesOfType(Messages.VaccineAdministeredMsg.class)
+        .stream().map(Message::getTo).collect(Collectors.toSet());
+    assertThat(secondRecipients).hasSize(2);
+    assertThat(secondRecipients).containsNoneIn(firstRecipients);
+  }
+
   @Test
   public void testTestSelection() {
     final Map<Long, Double> testSelectionMultipliersCollected = new HashMap<>();
@@ -129,11 +162,11 @@ public class CentralAgentTest {
     testKit.send(Messages.InterviewResultsMsg.class,
         msg -> {
           msg.contacts = ImmutableList.of(
-              ImmutableSet.of(1L, 2L),
-              ImmutableSet.of(),
-              ImmutableSet.of(),
-              ImmutableSet.of(),
-              ImmutableSet.of(1L, 3L)
+              ContactSet.of(1L, 2L),
+              ContactSet.empty(),
+              ContactSet.empty(),
+              ContactSet.empty(),
+              ContactSet.of(1L, 3L)
           );
         },
         1L)
@@ -160,11 +193,11 @@ public class CentralAgentTest {
     testKit.send(Messages.InterviewResultsMsg.class,
         msg -> {
           msg.contacts = ImmutableList.of(
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L)
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L)
           );
         },
         1L)
@@ -186,11 +219,11 @@ public class CentralAgentTest {
     testKit.send(Messages.InterviewResultsMsg.class,
         msg -> {
           msg.contacts = ImmutableList.of(
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L),
-              ImmutableSet.of(1L, 3L)
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L),
+              ContactSet.of(1L, 3L)
           );
         },
         1L)
@@ -229,7 +262,7 @@ public class CentralAgentTest {
     testKit.send(Messages.InterviewResultsMsg.class,
         msg -> {
           msg.contacts = ImmutableList.of(
-              ImmutableSet.of(1234L)
+              ContactSet.of(1234L)
           );
         },
         1L)
@@ -242,7 +275,7 @@ public class CentralAgentTest {
     testKit.send(Messages.InterviewResultsMsg.class,
         msg -> {
           msg.contacts = ImmutableList.of(
-              ImmutableSet.of(4567L)
+              ContactSet.of(4567L)
           );
         },
         1L)
@@ -382,6 +415,43 @@ public class CentralAgentTest {
     assertThat(messages).isEmpty();
   }
 
+  @Test
+  public void testReassignSuppression_usesRegisteredStatusWithoutReports() {
+    testKit.getGlobals().nActiveAgents = 2;
+    for (long id = 1; id <= 10; id++) {
+      boolean isSuppressed = id > 4;
+      testKit.send(Messages.SupressionStatusMessage.class, m -> m.isSuppressed = isSuppressed, id)
+          .to(centralAgent);
+    }
+    testKit.testAction(centralAgent, CentralAgent.registerSuppressionStatus);
+
+    TestResult result = testKit.testAction(centralAgent, CentralAgent.reassignSuppression);
+
+    List<Messages.SupressionStatusMessage> suppressedMessages =
+        result.getMessagesOfType(Messages.SupressionStatusMessage.class);
+    assertThat(suppressedMessages).hasSize(2);
+    Set<Long> suppressedIds = new HashSet<>();
+    suppressedMessages.forEach(m -> {
+      assertThat(m.isSuppressed).isTrue();
+      assertThat(m.getTo()).isAtMost(4L);
+      suppressedIds.add(m.getTo());
+    });
+
+    testKit.getGlobals().nActiveAgents = 5;
+    result = testKit.testAction(centralAgent, CentralAgent.reassignSuppression);
+
+    List<Messages.SupressionStatusMessage> activeMessages =
+        result.getMessagesOfType(Messages.SupressionStatusMessage.class);
+    assertThat(activeMessages).hasSize(3);
+    activeMessages.forEach(m -> {
+      assertThat(m.isSuppressed).isFalse();
+      assertThat(m.getTo() > 4L || suppressedIds.contains(m.getTo())).isTrue();
+    });
+
+    result = testKit.testAction(centralAgent, CentralAgent.reassignSuppression);
+    assertThat(result.getMessagesOfType(Messages.SupressionStatusMessage.class)).isEmpty();
+  }
+
   // TODO May be removing the per building ratios. If so, remove this test.
 //  @Test
 //  public void testPerPlaceOutput() {
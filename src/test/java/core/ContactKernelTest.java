@@ -0,0 +1,283 @@
+package core;
+
+import org.junit.Test;
+import simudyne.core.abm.Action;
+import simudyne.core.abm.testkit.TestKit;
+import tau.SmallRoomContactModel;
+import tau.TAUModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+import static core.Utils.sortedCopyBySender;
+
+public class ContactKernelTest {
+  private static final int NUM_OCCUPANTS = 30;
+  private static final long CENTER = 0;
+
+  private TestKit<Globals> testKit;
+  private PlaceAgent testPlaceAgent;
+
+  @Test
+  public void testMatchesGetWhoToInfect() {
+    for (PlaceInfo.NetworkType networkType : PlaceInfo.NetworkType.values()) {
+      for (long seed = 0; seed < 10; seed++) {
+        setUpPlace(networkType, CENTER, seed);
+        assertKernelMatchesGetWhoToInfect(seed);
+      }
+    }
+  }
+
+  @Test
+  public void testMatchesGetWhoToInfect_centerAbsent() {
+    setUpPlace(PlaceInfo.NetworkType.STAR, NUM_OCCUPANTS + 1, 3);
+    assertKernelMatchesGetWhoToInfect(3);
+    setUpPlace(PlaceInfo.NetworkType.FULLY_CONNECTED_DEPENDENT_ON_CENTER, NUM_OCCUPANTS + 1, 3);
+    assertKernelMatchesGetWhoToInfect(3);
+  }
+
+  @Test
+  public void testCountsDuplicateSendersOnce() {
+    ContactKernel kernel = new ContactKernel();
+    kernel.add(2, Person.PersonTransmissibilityInfo.dummyInfected());
+    kernel.add(1, Person.PersonTransmissibilityInfo.dummy());
+    kernel.add(2, Person.PersonTransmissibilityInfo.dummyInfected());
+    kernel.run(PlaceInfo.create("place", 0), new Globals(), FastRandom.create(1));
+
+    assertThat(kernel.numDistinctOccupants()).isEqualTo(2);
+    assertThat(kernel.numStartedInfected()).isEqualTo(2);
+    assertThat(kernel.distinctOccupants()).containsExactly(1L, 2L).inOrder();
+  }
+
+  @Test
+  public void testAggregateHazardMatchesPairwiseAttackRate() {
+    Globals globals = new Globals();
+    globals.baseInfectivity = 0.5;
+    PlaceInfo place = PlaceInfo.create("gym", 0, PlaceInfo.NetworkType.FULLY_CONNECTED, -1L);
+    int numTrials = 2000;
+
+    double[] pairwise = infectionsPerTrial(place, globals, numTrials);
+    globals.aggregateHazardNetworkTypes = EnumSet.of(PlaceInfo.NetworkType.FULLY_CONNECTED);
+    double[] aggregate = infectionsPerTrial(place, globals, numTrials);
+
+    double standardError = Math.sqrt(
+        (variance(pairwise) + variance(aggregate)) / numTrials);
+    assertThat(mean(pairwise)).isGreaterThan(0.0);
+    assertThat(mean(aggregate)).isWithin(4 * standardError).of(mean(pairwise));
+  }
+
+  @Test
+  public void testAggregateHazardBySizeThreshold() {
+    Globals globals = new Globals();
+    globals.baseInfectivity = 1.0;
+    globals.aggregateHazardMinOccupants = 3;
+    ContactKernel kernel = new ContactKernel();
+    kernel.add(0, Person.PersonTransmissibilityInfo.create(
+        Person.InfectionStatus.INFECTED, true, true, Person.MaskType.NONE, 0, 100, 0, 0));
+    kernel.add(1, Person.PersonTransmissibilityInfo.dummy());
+    kernel.add(2, Person.PersonTransmissibilityInfo.dummy());
+    kernel.run(PlaceInfo.create("place", 0), globals, FastRandom.create(1));
+
+    // With 100 contacts among two others, both are all but certain to be infected by person 0
+    assertThat(kernel.numTransmissions()).isEqualTo(2);
+    assertThat(kernel.transmissionInfectedBy(0)).isEqualTo(0);
+    assertThat(kernel.transmissionInfectedBy(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void testTAUModulesRegistersSmallRoomContactModel() {
+    TAUModel.TAUModules modules = TAUModel.TAUModules.getInstance();
+    Globals globals = new Globals();
+    globals.useModuleContactModels = true;
+
+    assertThat(modules.getContactModel(
+        PlaceInfo.create("suite", TAUModel.PlaceType.SUITE.ordinal()), globals))
+        .isSameAs(SmallRoomContactModel.getInstance());
+    assertThat(modules.getContactModel(
+        PlaceInfo.create("bathroom", TAUModel.PlaceType.BATHROOM.ordinal()), globals))
+        .isSameAs(SmallRoomContactModel.getInstance());
+    for (PlaceInfo.NetworkType networkType : PlaceInfo.NetworkType.values()) {
+      assertThat(modules.getContactModel(PlaceInfo.create(
+          "course", TAUModel.PlaceType.NON_DISC_COURSE.ordinal(), networkType, CENTER), globals))
+          .isSameAs(ContactModel.forNetworkType(networkType));
+    }
+  }
+
+  @Test
+  public void testTAUModulesUsesCoreContactModelsByDefault() {
+    TAUModel.TAUModules modules = TAUModel.TAUModules.getInstance();
+    Globals globals = new Globals();
+
+    assertThat(modules.getContactModel(
+        PlaceInfo.create("suite", TAUModel.PlaceType.SUITE.ordinal()), globals))
+        .isSameAs(FullyConnectedContactModel.getInstance());
+    assertThat(modules.getContactModel(
+        PlaceInfo.create("bathroom", TAUModel.PlaceType.BATHROOM.ordinal()), globals))
+        .isSameAs(FullyConnectedContactModel.getInstance());
+  }
+
+  @Test
+  public void testSmallRoomContactModelSkipsRoomsWithoutSusceptibles() {
+    ContactKernel kernel = new ContactKernel();
+    kernel.add(0, infectiousWithContacts());
+    kernel.add(1, Person.PersonTransmissibilityInfo.create(
+        Person.InfectionStatus.RECOVERED, false, false, Person.MaskType.NONE, 0, 3, 0, 0));
+    kernel.add(2, infectiousWithContacts());
+    PlaceInfo suite = PlaceInfo.create("suite", TAUModel.PlaceType.SUITE.ordinal());
+
+    FastRandom random = FastRandom.create(5);
+    kernel.run(SmallRoomContactModel.getInstance(), suite, new Globals(), random);
+
+    assertThat(kernel.numTransmissions()).isEqualTo(0);
+    // No contacts were drawn
+    assertThat(random.nextDouble())
+        .isEqualTo(FastRandom.create(5).nextDouble());
+  }
+
+  @Test
+  public void testSmallRoomContactModelMatchesFullyConnected() {
+    for (long seed = 0; seed < 10; seed++) {
+      Random random = new Random(seed);
+      ContactKernel smallRoom = new ContactKernel();
+      ContactKernel fullyConnected = new ContactKernel();
+      for (long personId = 0; personId < 4; personId++) {
+        Person.PersonTransmissibilityInfo info = personId == 0
+            ? infectiousWithContacts()
+            : randomTransmissibilityInfo(random);
+        smallRoom.add(personId, info);
+        fullyConnected.add(personId, info);
+      }
+      Globals globals = new Globals();
+      globals.baseInfectivity = 0.8;
+      PlaceInfo suite = PlaceInfo.create("suite", TAUModel.PlaceType.SUITE.ordinal());
+      smallRoom.run(SmallRoomContactModel.getInstance(), suite, globals, FastRandom.create(seed));
+      fullyConnected.run(
+          FullyConnectedContactModel.getInstance(), suite, globals, FastRandom.create(seed));
+
+      assertThat(smallRoom.numTransmissions()).isEqualTo(fullyConnected.numTransmissions());
+      for (int t = 0; t < smallRoom.numTransmissions(); t++) {
+        assertThat(smallRoom.transmissionInfected(t))
+            .isEqualTo(fullyConnected.transmissionInfected(t));
+      }
+    }
+  }
+
+  private static double[] infectionsPerTrial(PlaceInfo place, Globals globals, int numTrials) {
+    double[] infections = new double[numTrials];
+    ContactKernel kernel = new ContactKernel();
+    for (int trial = 0; trial < numTrials; trial++) {
+      // The same crowd every trial, with 20 infectious people among 300
+      Random random = new Random(0);
+      kernel.clear();
+      for (long personId = 0; personId < 300; personId++) {
+        Person.InfectionStatus status = personId < 20
+            ? Person.InfectionStatus.INFECTED : Person.InfectionStatus.SUSCEPTIBLE;
+        Person.MaskType[] maskTypes = Person.MaskType.values();
+        kernel.add(personId, Person.PersonTransmissibilityInfo.create(
+            status,
+            personId < 20,
+            false,
+            maskTypes[random.nextInt(maskTypes.length)],
+            random.nextDouble() * 0.5,
+            3 + random.nextInt(4),
+            0,
+            0));
+      }
+      kernel.run(place, globals, FastRandom.create(trial));
+      infections[trial] = kernel.numTransmissions();
+    }
+    return infections;
+  }
+
+  private static double mean(double[] values) {
+    return Arrays.stream(values).average().getAsDouble();
+  }
+
+  private static double variance(double[] values) {
+    double mean = mean(values);
+    return Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / (values.length - 1);
+  }
+
+  private void setUpPlace(PlaceInfo.NetworkType networkType, long center, long seed) {
+    testKit = TestKit.create(Globals.class);
+    testKit.getGlobals().baseInfectivity = 0.8;
+    testKit.getGlobals().placeTypeFlatInfectionRate = 0.3;
+    testPlaceAgent = testKit.addAgent(PlaceAgent.class);
+    testPlaceAgent.init();
+    PlaceInfo placeInfo = PlaceInfo.create(
+        "place", TAUModel.PlaceType.NON_DISC_COURSE.ordinal(), networkType, center);
+    testKit.send(Messages.PlaceMessage.class, msg -> msg.placeInfo = placeInfo)
+        .to(testPlaceAgent.getID());
+    testKit.testAction(testPlaceAgent, PlaceAgent.receivePlace);
+
+    Random random = new Random(seed);
+    for (long personId = NUM_OCCUPANTS - 1; personId >= 0; personId--) {
+      Person.PersonTransmissibilityInfo info = randomTransmissibilityInfo(random);
+      testKit.send(Messages.IAmHereMsg.class, msg -> msg.transmissibilityInfo = info, personId)
+          .to(testPlaceAgent.getID());
+    }
+    // A person who is at this place through both a current and an additional place
+    Person.PersonTransmissibilityInfo info = randomTransmissibilityInfo(random);
+    testKit.send(Messages.IAmHereMsg.class, msg -> msg.transmissibilityInfo = info, 7L)
+        .to(testPlaceAgent.getID());
+  }
+
+  private void assertKernelMatchesGetWhoToInfect(long seed) {
+    List<String> expected = new ArrayList<>();
+    List<String> actual = new ArrayList<>();
+    List<Double> nextDraws = new ArrayList<>();
+    testKit.testAction(testPlaceAgent, Action.create(PlaceAgent.class, pla -> {
+      List<Messages.IAmHereMsg> msgs = pla.getMessagesOfType(Messages.IAmHereMsg.class);
+
+      FastRandom objectRandom = FastRandom.create(seed);
+      pla.getWhoToInfect(sortedCopyBySender(msgs), pla.getGlobals(), objectRandom).stream()
+          .filter(ContactEventInfo::resultedInTransmission)
+          .forEachOrdered(contact -> expected.add(
+              contact.infected() + "<-" + contact.infectedBy().map(String::valueOf).orElse("")));
+      nextDraws.add(objectRandom.nextDouble());
+
+      FastRandom kernelRandom = FastRandom.create(seed);
+      ContactKernel kernel = new ContactKernel();
+      for (Messages.IAmHereMsg msg : msgs) {
+        kernel.add(msg.getSender(), msg.transmissibilityInfo);
+      }
+      kernel.run(pla.place(), pla.getGlobals(), kernelRandom);
+      for (int t = 0; t < kernel.numTransmissions(); t++) {
+        actual.add(kernel.transmissionInfected(t) + "<-"
+            + (kernel.transmissionHasInfectedBy(t) ? kernel.transmissionInfectedBy(t) : ""));
+      }
+      nextDraws.add(kernelRandom.nextDouble());
+    }));
+
+    assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+    // Both paths consumed the same number of draws
+    assertThat(nextDraws.get(1)).isEqualTo(nextDraws.get(0));
+  }
+
+  private static Person.PersonTransmissibilityInfo infectiousWithContacts() {
+    return Person.PersonTransmissibilityInfo.create(
+        Person.InfectionStatus.INFECTED, true, true, Person.MaskType.NONE, 0, 3, 0, 0);
+  }
+
+  private static Person.PersonTransmissibilityInfo randomTransmissibilityInfo(Random random) {
+    Person.InfectionStatus status =
+        random.nextDouble() < 0.3 ? Person.InfectionStatus.INFECTED
+            : random.nextDouble() < 0.8 ? Person.InfectionStatus.SUSCEPTIBLE
+            : Person.InfectionStatus.RECOVERED;
+    boolean isInfectious = status == Person.InfectionStatus.INFECTED && random.nextBoolean();
+    Person.MaskType[] maskTypes = Person.MaskType.values();
+    return Person.PersonTransmissibilityInfo.create(
+        status,
+        isInfectious,
+        isInfectious && random.nextBoolean(),
+        maskTypes[random.nextInt(maskTypes.length)],
+        random.nextDouble() * 0.5,
+        3 + random.nextInt(4),
+        random.nextDouble() < 0.2 ? 0.95 : 0,
+        random.nextDouble() < 0.2 ? 0.45 : 0);
+  }
+}
@@ -0,0 +1,84 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ContactLogTest {
+
+  @Test
+  public void testContactsOf_unionsPlacesPerStep() {
+    ContactLog contactLog = new ContactLog(5);
+    contactLog.record(0, 100, new long[] {1, 2}, 2);
+    contactLog.record(0, 101, new long[] {1, 3, 4}, 3);
+    contactLog.record(0, 102, new long[] {5, 6}, 2);
+    contactLog.record(1, 100, new long[] {2, 5}, 2);
+    contactLog.record(2, 101, new long[] {1, 6}, 2);
+
+    ImmutableList<ContactSet> contacts = contactLog.contactsOf(1, 0, 2);
+
+    assertThat(contacts).hasSize(2);
+    assertThat(contacts.get(0)).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(contacts.get(1)).containsExactly(1L, 6L);
+    assertThat(contactLog.contactsOf(7, 0, 2)).isEmpty();
+  }
+
+  @Test
+  public void testContactsOf_mergesShardsOfOnePlace() {
+    ContactLog contactLog = new ContactLog(5);
+    contactLog.record(0, 100, new long[] {3, 9}, 2);
+    contactLog.record(0, 100, new long[] {1, 4, 0}, 2);
+
+    assertThat(contactLog.contactsOf(9, 0, 0).get(0)).containsExactly(1L, 3L, 4L, 9L).inOrder();
+  }
+
+  @Test
+  public void testContactsOf_mergesRostersRecordedAfterRead() {
+    ContactLog contactLog = new ContactLog(5);
+    contactLog.record(0, 100, new long[] {1, 2}, 2);
+    assertThat(contactLog.contactsOf(1, 0, 0).get(0)).containsExactly(1L, 2L);
+
+    contactLog.record(0, 100, new long[] {1, 3}, 2);
+    contactLog.record(0, 101, new long[] {1, 4}, 2);
+
+    ImmutableList<ContactSet> contacts = contactLog.contactsOf(1, 0, 0);
+    assertThat(contacts).hasSize(1);
+    assertThat(contacts.get(0)).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(contactLog.numSteps()).isEqualTo(1);
+  }
+
+  @Test
+  public void testContactsOf_onlyWithinSteps() {
+    ContactLog contactLog = new ContactLog(5);
+    for (int step = 0; step < 4; step++) {
+      contactLog.record(step, 100, new long[] {1, 10 + step}, 2);
+    }
+
+    ImmutableList<ContactSet> contacts = contactLog.contactsOf(1, 2, 3);
+
+    assertThat(contacts).hasSize(2);
+    assertThat(contacts.get(0)).contains(12L);
+    assertThat(contacts.get(1)).contains(13L);
+  }
+
+  @Test
+  public void testCapacityAndEviction() {
+    ContactLog contactLog = new ContactLog(3);
+    for (int step = 0; step < 5; step++) {
+      contactLog.record(step, 100, new long[] {1}, 1);
+    }
+    assertThat(contactLog.numSteps()).isEqualTo(3);
+
+    contactLog.evictBefore(4);
+    assertThat(contactLog.numSteps()).isEqualTo(1);
+    assertThat(contactLog.estimatedBytes()).isGreaterThan(0L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecord_rejectsEarlierStep() {
+    ContactLog contactLog = new ContactLog(3);
+    contactLog.record(2, 100, new long[] {1}, 1);
+    contactLog.record(1, 100, new long[] {1}, 1);
+  }
+}
@@ -0,0 +1,94 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ContactSamplerTest {
+
+  @Test
+  public void testSkipExcluded() {
+    // Array of 6 with indices 2 and 3 excluded
+    assertThat(ContactSampler.skipExcluded(0, 2, 2)).isEqualTo(0);
+    assertThat(ContactSampler.skipExcluded(1, 2, 2)).isEqualTo(1);
+    assertThat(ContactSampler.skipExcluded(2, 2, 2)).isEqualTo(4);
+    assertThat(ContactSampler.skipExcluded(3, 2, 2)).isEqualTo(5);
+  }
+
+  @Test
+  public void testSampleExcept_neverDrawsExcluded() {
+    int[] out = new int[1000];
+    int numDrawn = ContactSampler.sampleExcept(10, 4, 3, 1000, FastRandom.create(1), out);
+
+    assertThat(numDrawn).isEqualTo(1000);
+    for (int i = 0; i < numDrawn; i++) {
+      assertThat(out[i]).isIn(Arrays.asList(0, 1, 2, 3, 7, 8, 9));
+    }
+  }
+
+  @Test
+  public void testSampleExcept_singleCandidate() {
+    int[] out = new int[5];
+    assertThat(ContactSampler.sampleExcept(2, 0, 1, 5, FastRandom.create(1), out)).isEqualTo(1);
+    assertThat(out[0]).isEqualTo(1);
+    assertThat(ContactSampler.sampleExcept(2, 1, 1, 5, FastRandom.create(1), out)).isEqualTo(1);
+    assertThat(out[0]).isEqualTo(0);
+  }
+
+  @Test
+  public void testSampleWithReplacement_deterministic() {
+    int[] first = new int[50];
+    int[] second = new int[50];
+    ContactSampler.sampleWithReplacement(100, 50, FastRandom.create(7), first);
+    ContactSampler.sampleWithReplacement(100, 50, FastRandom.create(7), second);
+
+    assertThat(first).isEqualTo(second);
+  }
+
+  @Test
+  public void testSampleExceptWithoutReplacement_distinct() {
+    for (long seed = 0; seed < 100; seed++) {
+      int[] out = new int[6];
+      int numDrawn = ContactSampler.sampleExceptWithoutReplacement(
+          10, 2, 1, 6, FastRandom.create(seed), out);
+
+      assertThat(numDrawn).isEqualTo(6);
+      Set<Integer> drawn = new HashSet<>();
+      for (int i = 0; i < numDrawn; i++) {
+        assertThat(out[i]).isAtLeast(0);
+        assertThat(out[i]).isLessThan(10);
+        assertThat(out[i]).isNotEqualTo(2);
+        drawn.add(out[i]);
+      }
+      assertThat(drawn).hasSize(6);
+    }
+  }
+
+  @Test
+  public void testSampleWithoutReplacement_moreThanAvailable() {
+    int[] out = new int[10];
+    int numDrawn = ContactSampler.sampleWithoutReplacement(4, 10, FastRandom.create(1), out);
+
+    assertThat(numDrawn).isEqualTo(4);
+    assertThat(Arrays.copyOf(out, numDrawn)).isEqualTo(new int[] {0, 1, 2, 3});
+  }
+
+  @Test
+  public void testEnsureCapacity() {
+    int[] buffer = new int[4];
+    assertThat(ContactSampler.ensureCapacity(buffer, 3)).isSameAs(buffer);
+    assertThat(ContactSampler.ensureCapacity(buffer, 9).length).isAtLeast(9);
+  }
+
+  @Test
+  public void testSampleExcept_oneCandidateWithNoDrawsAsked() {
+    int[] out = ContactSampler.ensureCapacity(new int[0], 0);
+
+    assertThat(ContactSampler.sampleExcept(2, 0, 1, 0, FastRandom.create(1), out)).isEqualTo(1);
+    assertThat(out[0]).isEqualTo(1);
+  }
+}
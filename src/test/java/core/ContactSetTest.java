@@ -0,0 +1,79 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ContactSetTest {
+
+  @Test
+  public void testOf_sortsAndDropsRepeats() {
+    ContactSet contacts = ContactSet.of(130, 3, 64, 3, 0);
+
+    assertThat(contacts.size()).isEqualTo(4);
+    assertThat(contacts.toArray()).isEqualTo(new long[] {0, 3, 64, 130});
+    assertThat(contacts).containsExactly(0L, 3L, 64L, 130L).inOrder();
+    assertThat(contacts.contains(64)).isTrue();
+    assertThat(contacts.contains(65)).isFalse();
+    assertThat(contacts.contains(1000)).isFalse();
+  }
+
+  @Test
+  public void testFromSorted_range() {
+    long[] ids = new long[] {1, 2, 70, 71, 200};
+
+    assertThat(ContactSet.fromSorted(ids, 1, 4)).isEqualTo(ContactSet.of(2, 70, 71));
+    assertThat(ContactSet.fromSorted(ids, 2)).isEqualTo(ContactSet.of(1, 2));
+    assertThat(ContactSet.fromSorted(ids, 3, 3).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testUnion() {
+    ContactSet a = ContactSet.of(1, 5, 64, 300);
+    ContactSet b = ContactSet.of(5, 65, 128);
+
+    ContactSet union = a.union(b);
+
+    assertThat(union).containsExactly(1L, 5L, 64L, 65L, 128L, 300L).inOrder();
+    assertThat(union.size()).isEqualTo(6);
+    assertThat(a.union(ContactSet.empty())).isSameAs(a);
+  }
+
+  @Test
+  public void testSelect() {
+    ContactSet contacts = ContactSet.of(2, 9, 64, 127, 256);
+
+    for (int rank = 0; rank < contacts.size(); rank++) {
+      assertThat(contacts.select(rank)).isEqualTo(contacts.toArray()[rank]);
+    }
+  }
+
+  @Test
+  public void testSample_distinctSubsetOfRequestedSize() {
+    long[] ids = new long[500];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = 3L * i;
+    }
+    ContactSet contacts = ContactSet.fromSorted(ids, ids.length);
+
+    ContactSet sample = contacts.sample(40, new Random(7));
+
+    assertThat(sample.size()).isEqualTo(40);
+    for (long id : sample.toArray()) {
+      assertThat(contacts.contains(id)).isTrue();
+    }
+    assertThat(contacts.sample(40, new Random(7))).isEqualTo(sample);
+    assertThat(contacts.sample(600, new Random(7))).isSameAs(contacts);
+    assertThat(contacts.sample(0, new Random(7)).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testRecall_roundsShareOfSize() {
+    ContactSet contacts = ContactSet.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+    assertThat(contacts.recall(0.36, new Random(1)).size()).isEqualTo(4);
+    assertThat(contacts.recall(1.0, new Random(1))).isSameAs(contacts);
+  }
+}
@@ -1,7 +1,6 @@
 package core;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Test;
 import simudyne.core.abm.testkit.TestKit;
@@ -9,6 +8,7 @@ import simudyne.core.abm.testkit.TestResult;
 import simudyne.core.graph.Message;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -81,6 +81,22 @@ public class ContactTracingTests {
 
   @Test
   public void contactTracingIntegrationTest() {
+    runContactTracingIntegrationTest();
+  }
+
+  @Test
+  public void contactTracingIntegrationTest_contactLog() {
+    testKit.getGlobals().useContactLog = true;
+    runContactTracingIntegrationTest();
+  }
+
+  @Test
+  public void contactTracingIntegrationTest_exposureIndex() {
+    testKit.getGlobals().useExposureIndex = true;
+    runContactTracingIntegrationTest();
+  }
+
+  private void runContactTracingIntegrationTest() {
     TestRunner runner = new TestRunner(testKit, centralAgent);
     // Set there to be no exposure period
     runner.setInfectionTrajectoryDistributionForNewPeople(InfectionTrajectoryDistribution.builder()
@@ -188,7 +204,7 @@ public class ContactTracingTests {
         result.getMessagesOfType(Messages.InterviewResultsMsg.class).get(0);
     assertThat(interviewResultsMsg.contacts).hasSize(1);
     Set<Long> allContacts =
-        interviewResultsMsg.contacts.stream().flatMap(ImmutableSet::stream).collect(Collectors.toSet());
+        interviewResultsMsg.contacts.stream().flatMap(set -> set.stream().boxed()).collect(Collectors.toSet());
     assertThat(allContacts).containsExactly(person1.personID, person2.personID);
   }
 
@@ -241,12 +257,81 @@ public class ContactTracingTests {
         result.getMessagesOfType(Messages.InterviewResultsMsg.class).get(0);
     assertThat(interviewResultsMsg.contacts).hasSize(1);
     Set<Long> allContacts =
-        interviewResultsMsg.contacts.stream().flatMap(ImmutableSet::stream).collect(Collectors.toSet());
+        interviewResultsMsg.contacts.stream().flatMap(set -> set.stream().boxed()).collect(Collectors.toSet());
     assertThat(allContacts).hasSize(2);
     assertThat(allContacts).contains(person1.personID);
     assertThat(allContacts).containsAnyOf(person2.personID, person3.personID);
   }
 
+  @Test
+  public void testInterview_stepWithoutContactsKeepsExposureTimes() {
+    testKit.getGlobals().contactTracingNumberOfDaysTraceback = 3;
+    TestPerson person1 = testKit.addAgent(TestPerson.class);
+    TestPerson person2 = testKit.addAgent(TestPerson.class);
+
+    PlaceAgent place1 = testKit.addAgent(PlaceAgent.class, PlaceAgent::init);
+    PlaceInfo placeInfo1 = PlaceInfo.create("Place1", 1);
+    placeInfo1.receivePlaceAgent(place1.getID());
+    place1.setPlaceInfo(placeInfo1);
+    PlaceAgent place2 = testKit.addAgent(PlaceAgent.class, PlaceAgent::init);
+    PlaceInfo placeInfo2 = PlaceInfo.create("Place2", 1);
+    place2.setPlaceInfo(placeInfo2);
+    placeInfo2.receivePlaceAgent(place2.getID());
+
+    // Step 0: both people are at place 1
+    person1.setCurrentPlaces(placeInfo1);
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person1, Person.executeMovement));
+    person2.setCurrentPlaces(placeInfo1);
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person2, Person.executeMovement));
+    testKit.testAction(place1, PlaceAgent.generateContactsAndInfect);
+
+    // Step 1: person 1 is nowhere
+    testKit.getGlobals().tStep = 1;
+    person1.setCurrentPlaces(ImmutableList.of());
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person1, Person.executeMovement));
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person2, Person.executeMovement));
+    testKit.testAction(place1, PlaceAgent.generateContactsAndInfect);
+
+    // Step 2: person 1 is alone at place 2
+    testKit.getGlobals().tStep = 2;
+    person1.setCurrentPlaces(placeInfo2);
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person1, Person.executeMovement));
+    testKit.testAction(place2, PlaceAgent.generateContactsAndInfect);
+
+    // Do interview
+    testKit.send(Messages.StartInterviewMsg.class).to(person1);
+
+    sendAllMessagesFromTestResult(
+        testKit.testAction(person1, Person.requestOccupancyFromPlacesVisited));
+    sendAllMessagesFromTestResult(
+        testKit.testAction(place1, PlaceAgent.sendOccupancy));
+    sendAllMessagesFromTestResult(
+        testKit.testAction(place2, PlaceAgent.sendOccupancy));
+    TestResult result = testKit.testAction(person1, Person.receiveOccupancyHistoriesAndSendToCentralAgent);
+
+    Messages.InterviewResultsMsg interviewResultsMsg =
+        result.getMessagesOfType(Messages.InterviewResultsMsg.class).get(0);
+    // One entry per traced step, including the step person 1 was nowhere
+    assertThat(interviewResultsMsg.contacts).hasSize(3);
+    assertThat(interviewResultsMsg.contacts.get(0).contains(person2.personID)).isTrue();
+    assertThat(interviewResultsMsg.contacts.get(1).isEmpty()).isTrue();
+
+    sendAllMessagesFromTestResult(result);
+    TestResult centralResult =
+        testKit.testAction(centralAgent, CentralAgent.processInterviewContacts);
+
+    List<Messages.QuarantineOrderMsg> quarantineOrderMsgs =
+        centralResult.getMessagesOfType(Messages.QuarantineOrderMsg.class);
+    assertThat(quarantineOrderMsgs).hasSize(1);
+    assertThat(quarantineOrderMsgs.get(0).getTo()).isEqualTo(person2.personID);
+    assertThat(quarantineOrderMsgs.get(0).exposureTime).isEqualTo(0L);
+  }
+
   @Test
   public void testInterview_contactsBeyondTraceback() {
     // Set up people going to places
@@ -303,7 +388,7 @@ public class ContactTracingTests {
     Messages.InterviewResultsMsg interviewResultsMsg =
         result.getMessagesOfType(Messages.InterviewResultsMsg.class).get(0);
     Set<Long> allContacts =
-        interviewResultsMsg.contacts.stream().flatMap(ImmutableSet::stream).collect(Collectors.toSet());
+        interviewResultsMsg.contacts.stream().flatMap(set -> set.stream().boxed()).collect(Collectors.toSet());
     assertThat(allContacts).containsExactly(person1.personID);
   }
 }
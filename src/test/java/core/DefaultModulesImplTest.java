@@ -117,7 +117,7 @@ public class DefaultModulesImplTest {
                     0.45
             );
 
-    SeededRandom r = SeededRandom.create(0);
+    FastRandom r = FastRandom.create(0);
 
     double noMaskNoVaccineLikelihood = DefaultModulesImpl.getInTransmissionLikelihood(noMaskNoVaccine, r);
     double maskNoVaccineLikelihood = DefaultModulesImpl.getInTransmissionLikelihood(maskNoVaccine, r);
@@ -165,7 +165,7 @@ public class DefaultModulesImplTest {
                             0.45
                     );
 
-    SeededRandom r = SeededRandom.create(0);
+    FastRandom r = FastRandom.create(0);
     double baseInfectivity = 1;
 
     double noMaskNoVaccineLikelihood = DefaultModulesImpl.getOutTransmissionLikelihood(baseInfectivity, noMaskNoVaccine, r);
@@ -0,0 +1,75 @@
+package core;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ExposureIndexTest {
+
+  @Test
+  public void testExposuresOf_countsSharedStepsAndOrdersByRecency() {
+    ExposureIndex exposureIndex = new ExposureIndex(2, 3);
+    exposureIndex.record(0, 100, new long[] {1, 2, 3}, 3);
+    exposureIndex.record(1, 100, new long[] {1, 2}, 2);
+    exposureIndex.record(2, 101, new long[] {1, 2}, 2);
+    exposureIndex.record(2, 102, new long[] {3, 4}, 2);
+    exposureIndex.record(3, 101, new long[] {1, 4}, 2);
+
+    ExposureIndex.Exposures exposures = exposureIndex.exposuresOf(1, 0);
+
+    assertThat(exposures.size()).isEqualTo(3);
+    assertThat(exposures.contact(0)).isEqualTo(4L);
+    assertThat(exposures.lastSharedStep(0)).isEqualTo(3);
+    assertThat(exposures.contact(1)).isEqualTo(2L);
+    assertThat(exposures.sharedSteps(1)).isEqualTo(3);
+    assertThat(exposures.lastSharedStep(1)).isEqualTo(2);
+    assertThat(exposures.contact(2)).isEqualTo(3L);
+    assertThat(exposures.sharedSteps(2)).isEqualTo(1);
+  }
+
+  @Test
+  public void testExposuresOf_onlyFromStep() {
+    ExposureIndex exposureIndex = new ExposureIndex(2, 3);
+    for (int step = 0; step < 4; step++) {
+      exposureIndex.record(step, 100, new long[] {1, 10 + step}, 2);
+    }
+
+    ExposureIndex.Exposures exposures = exposureIndex.exposuresOf(1, 3);
+
+    assertThat(exposures.size()).isEqualTo(1);
+    assertThat(exposures.contact(0)).isEqualTo(13L);
+  }
+
+  @Test
+  public void testRecord_talliesShardsOfOnePlaceTogether() {
+    ExposureIndex exposureIndex = new ExposureIndex(1, 3);
+    exposureIndex.record(0, 100, new long[] {1, 2}, 2);
+    exposureIndex.record(0, 100, new long[] {3}, 1);
+
+    ExposureIndex.Exposures exposures = exposureIndex.exposuresOf(3, 0);
+
+    assertThat(exposures.size()).isEqualTo(2);
+    assertThat(exposures.sharedSteps(0)).isEqualTo(1);
+    assertThat(exposures.sharedSteps(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void testCapacityAndEviction() {
+    ExposureIndex exposureIndex = new ExposureIndex(2, 2);
+    for (int step = 0; step < 8; step++) {
+      exposureIndex.record(step, 100, new long[] {1, 2}, 2);
+    }
+    assertThat(exposureIndex.numDays()).isEqualTo(2);
+
+    exposureIndex.evictBefore(7);
+    assertThat(exposureIndex.numDays()).isEqualTo(1);
+    assertThat(exposureIndex.exposuresOf(1, 0).sharedSteps(0)).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecord_rejectsEarlierStep() {
+    ExposureIndex exposureIndex = new ExposureIndex(2, 2);
+    exposureIndex.record(2, 100, new long[] {1}, 1);
+    exposureIndex.record(1, 100, new long[] {1}, 1);
+  }
+}
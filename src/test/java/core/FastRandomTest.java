@@ -0,0 +1,75 @@
+package core;
+
+import org.junit.Test;
+import simudyne.core.rng.SeededRandom;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class FastRandomTest {
+
+  @Test
+  public void testSameSeedSameStream() {
+    FastRandom first = FastRandom.create(42);
+    FastRandom second = FastRandom.create(42);
+    for (int i = 0; i < 100; i++) {
+      assertThat(first.nextLong()).isEqualTo(second.nextLong());
+    }
+  }
+
+  @Test
+  public void testFromSeededRandomIsReproducible() {
+    FastRandom first = FastRandom.from(SeededRandom.create(7));
+    FastRandom second = FastRandom.from(SeededRandom.create(7));
+    FastRandom other = FastRandom.from(SeededRandom.create(8));
+
+    double firstDraw = first.nextDouble();
+    assertThat(second.nextDouble()).isEqualTo(firstDraw);
+    assertThat(other.nextDouble()).isNotEqualTo(firstDraw);
+  }
+
+  @Test
+  public void testNextDoubleInRange() {
+    FastRandom random = FastRandom.create(1);
+    double sum = 0;
+    int numDraws = 100000;
+    for (int i = 0; i < numDraws; i++) {
+      double draw = random.nextDouble(0.2, 0.8);
+      assertThat(draw).isAtLeast(0.2);
+      assertThat(draw).isLessThan(0.8);
+      sum += draw;
+    }
+    assertThat(sum / numDraws).isWithin(0.01).of(0.5);
+  }
+
+  @Test
+  public void testNextIntCoversInclusiveRange() {
+    FastRandom random = FastRandom.create(3);
+    int[] counts = new int[5];
+    for (int i = 0; i < 50000; i++) {
+      int draw = random.nextInt(-2, 2);
+      assertThat(draw).isAtLeast(-2);
+      assertThat(draw).isAtMost(2);
+      counts[draw + 2]++;
+    }
+    for (int count : counts) {
+      assertThat(count).isWithin(500).of(10000);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNextIntRejectsNonPositiveBound() {
+    FastRandom.create(1).nextInt(0);
+  }
+
+  @Test
+  public void testFillMatchesSingleDraws() {
+    double[] filled = new double[10];
+    FastRandom.create(9).fill(filled, 2, 10);
+    FastRandom random = FastRandom.create(9);
+
+    assertThat(filled[0]).isEqualTo(0.0);
+    for (int i = 2; i < 10; i++) {
+      assertThat(filled[i]).isEqualTo(random.nextDouble());
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LongHashSetTest {
+
+  @Test
+  public void testAddContainsRemove() {
+    LongHashSet set = new LongHashSet();
+
+    assertThat(set.add(0)).isTrue();
+    assertThat(set.add(42)).isTrue();
+    assertThat(set.add(42)).isFalse();
+    assertThat(set.size()).isEqualTo(2);
+    assertThat(set.contains(42)).isTrue();
+    assertThat(set.contains(7)).isFalse();
+
+    assertThat(set.remove(42)).isTrue();
+    assertThat(set.remove(42)).isFalse();
+    assertThat(set.contains(42)).isFalse();
+    assertThat(set.contains(0)).isTrue();
+  }
+
+  @Test
+  public void testMatchesTreeSet_underRandomAddsAndRemoves() {
+    LongHashSet set = new LongHashSet();
+    TreeSet<Long> expected = new TreeSet<>();
+    Random random = new Random(3);
+    for (int i = 0; i < 20000; i++) {
+      long id = random.nextInt(2000);
+      if (random.nextBoolean()) {
+        assertThat(set.add(id)).isEqualTo(expected.add(id));
+      } else {
+        assertThat(set.remove(id)).isEqualTo(expected.remove(id));
+      }
+    }
+
+    assertThat(set.size()).isEqualTo(expected.size());
+    long[] sorted = set.toSortedArray();
+    int i = 0;
+    for (long id : expected) {
+      assertThat(sorted[i++]).isEqualTo(id);
+    }
+  }
+
+  @Test
+  public void testClear() {
+    LongHashSet set = new LongHashSet(4);
+    for (long id = 0; id < 100; id++) {
+      set.add(id);
+    }
+
+    set.clear();
+
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.contains(5)).isFalse();
+    assertThat(set.toSortedArray()).isEqualTo(new long[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAdd_rejectsFreeMarker() {
+    new LongHashSet().add(Long.MIN_VALUE);
+  }
+}
@@ -0,0 +1,137 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class OccupancyHistoryTest {
+
+  @Test
+  public void testAdd_wrapsAroundAndDropsOldest() {
+    OccupancyHistory history = new OccupancyHistory(3);
+    for (int step = 0; step < 5; step++) {
+      history.add(step, new long[] {step});
+    }
+
+    assertThat(history.size()).isEqualTo(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(history.step(i)).isEqualTo(i + 2);
+      assertThat(history.occupant(i, 0)).isEqualTo(i + 2L);
+    }
+  }
+
+  @Test
+  public void testAdd_mergesSameStep() {
+    OccupancyHistory history = new OccupancyHistory(2);
+    history.add(4, new long[] {1, 5});
+    history.add(4, new long[] {2, 5, 9});
+
+    assertThat(history.size()).isEqualTo(1);
+    assertThat(history.rosterSize(0)).isEqualTo(4);
+    assertThat(history.snapshot().contains(0, 9)).isTrue();
+    assertThat(history.snapshot().contains(0, 3)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAdd_rejectsEarlierStep() {
+    OccupancyHistory history = new OccupancyHistory(2);
+    history.add(4, new long[] {1});
+    history.add(3, new long[] {1});
+  }
+
+  @Test
+  public void testEvictBefore() {
+    OccupancyHistory history = new OccupancyHistory(4);
+    history.add(1, new long[] {1});
+    history.add(3, new long[] {3});
+    history.add(6, new long[] {6});
+
+    history.evictBefore(4);
+
+    assertThat(history.size()).isEqualTo(1);
+    assertThat(history.step(0)).isEqualTo(6);
+  }
+
+  @Test
+  public void testSnapshot_unaffectedByLaterChanges() {
+    OccupancyHistory history = new OccupancyHistory(2);
+    history.add(0, new long[] {1, 2});
+    history.add(1, new long[] {3});
+    OccupancyHistory.Snapshot snapshot = history.snapshot();
+
+    history.add(2, new long[] {4});
+    history.add(2, new long[] {5});
+
+    assertThat(snapshot.size()).isEqualTo(2);
+    assertThat(snapshot.step(0)).isEqualTo(0);
+    assertThat(snapshot.rosterSize(1)).isEqualTo(1);
+    assertThat(snapshot.indexOfStep(1)).isEqualTo(1);
+    assertThat(snapshot.indexOfStep(2)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testSnapshot_onlyRequestedSteps() {
+    OccupancyHistory history = new OccupancyHistory(5);
+    history.add(1, new long[] {1});
+    history.add(3, new long[] {3});
+    history.add(4, new long[] {4});
+    history.add(6, new long[] {6});
+
+    OccupancyHistory.Snapshot snapshot = history.snapshot(new int[] {0, 3, 3, 5, 6, 9});
+
+    assertThat(snapshot.size()).isEqualTo(2);
+    assertThat(snapshot.step(0)).isEqualTo(3);
+    assertThat(snapshot.step(1)).isEqualTo(6);
+    assertThat(snapshot.occupant(1, 0)).isEqualTo(6L);
+  }
+
+  @Test
+  public void testMergeSortedInto() {
+    long[] out = new long[6];
+    int n = OccupancyHistory.mergeSortedInto(
+        new long[] {1, 4, 7, 0}, 3, new long[] {2, 4, 8}, 3, out);
+
+    assertThat(n).isEqualTo(5);
+    assertThat(Arrays.copyOf(out, n)).isEqualTo(new long[] {1, 2, 4, 7, 8});
+  }
+
+  @Test
+  public void testAdd_internsRepeatedRosters() {
+    OccupancyHistory history = new OccupancyHistory(14);
+    long[] buffer = new long[] {3, 7, 11, 0};
+    for (int step = 0; step < 14; step++) {
+      history.add(step, buffer, 3);
+    }
+    buffer[0] = 5;
+    history.add(14, buffer, 3);
+
+    assertThat(history.size()).isEqualTo(14);
+    assertThat(history.numDistinctRosters()).isEqualTo(2);
+    // The reused buffer was copied, not held
+    assertThat(history.occupant(0, 0)).isEqualTo(3L);
+    assertThat(history.occupant(13, 0)).isEqualTo(5L);
+  }
+
+  @Test
+  public void testEstimatedBytes_countsSharedRostersOnce() {
+    OccupancyHistory interned = new OccupancyHistory(10);
+    OccupancyHistory distinct = new OccupancyHistory(10);
+    for (int step = 0; step < 10; step++) {
+      interned.add(step, new long[] {1, 2, 3, 4});
+      distinct.add(step, new long[] {step, 10, 20, 30});
+    }
+
+    assertThat(interned.estimatedBytes() + 9 * 48L).isEqualTo(distinct.estimatedBytes());
+  }
+
+  @Test
+  public void testEstimatedBytes_growsWithRosters() {
+    OccupancyHistory history = new OccupancyHistory(10);
+    long emptyBytes = history.estimatedBytes();
+    history.add(0, new long[100]);
+
+    assertThat(history.estimatedBytes() - emptyBytes).isAtLeast(800L);
+  }
+}
@@ -0,0 +1,118 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import simudyne.core.abm.testkit.TestKit;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that a Person's steady-state step, apart from the messages it sends, allocates nothing.
+ * Counts the bytes allocated by this thread, so it is skipped on a JVM which cannot count them.
+ */
+public class PersonAllocationTest {
+  private static final int WARMUP_STEPS = 50_000;
+  private static final int MEASURED_STEPS = 200_000;
+  // Room for the allocation counter itself, far below the smallest list or message
+  private static final double BYTES_PER_STEP_BUDGET = 1;
+
+  private TestKit<Globals> testKit;
+  private Person person;
+  private PlaceInfo home;
+  private PlaceInfo work;
+  private PlaceInfo gym;
+
+  @Before
+  public void setUp() {
+    testKit = TestKit.create(Globals.class);
+    testKit.getGlobals().contactTracingNumberOfDaysTraceback = 14;
+    person = testKit.addAgent(Person.class);
+    person.status = Person.InfectionStatus.SUSCEPTIBLE;
+    person.complianceMask = 0.5;
+
+    home = TestUtils.createPlaceInfoWithAgent("home", 0, testKit);
+    work = TestUtils.createPlaceInfoWithAgent("work", 0, testKit);
+    gym = TestUtils.createPlaceInfoWithAgent("gym", 0, testKit);
+    PlaceInfo party = TestUtils.createPlaceInfoWithAgent("party", 0, testKit);
+    // Work is scheduled before home, which was given the smaller agent id, so that step is sorted
+    person.dailySchedule =
+        Person.DailySchedule.create(
+            ImmutableMap.<Integer, List<PlaceInfo>>of(
+                0, ImmutableList.of(home),
+                1, ImmutableList.of(work, home),
+                2, ImmutableList.of(gym, home),
+                3, ImmutableList.of()),
+            ImmutableList.of(home));
+    person.setAdditionalPlaces(party);
+  }
+
+  @Test
+  public void testStep_allocatesNothingInSteadyState() {
+    assertThat(bytesPerSteadyStateStep()).isAtMost(BYTES_PER_STEP_BUDGET);
+  }
+
+  @Test
+  public void testStep_withPlaceTable_allocatesNothingInSteadyState() {
+    testKit.getGlobals().usePlaceTable = true;
+
+    assertThat(bytesPerSteadyStateStep()).isAtMost(BYTES_PER_STEP_BUDGET);
+  }
+
+  @Test
+  public void testStep_withRuleBasedSchedule_allocatesNothingInSteadyState() {
+    // The same schedule as the listed one, as StaticNetworkBuilder would give it
+    ScheduleTemplate template =
+        testKit
+            .getGlobals()
+            .getScheduleTemplates()
+            .intern(
+                ImmutableList.of(
+                    ScheduleRule.every(4, 1, work),
+                    ScheduleRule.every(4, 2, gym),
+                    ScheduleRule.every(4, 0, home),
+                    ScheduleRule.every(4, 1, home),
+                    ScheduleRule.every(4, 2, home)),
+                4);
+    assertThat(template.placesAtStepMap()).isEqualTo(person.dailySchedule.placesAtStepMap());
+    person.dailySchedule =
+        Person.DailySchedule.create(template, ImmutableList.of(home), p -> {
+        });
+
+    assertThat(bytesPerSteadyStateStep()).isAtMost(BYTES_PER_STEP_BUDGET);
+  }
+
+  private double bytesPerSteadyStateStep() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+
+    runSteps(WARMUP_STEPS);
+    long before = threads.getThreadAllocatedBytes(threadId);
+    runSteps(MEASURED_STEPS);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+    return (double) allocated / MEASURED_STEPS;
+  }
+
+  // The Person side of decideNextLocation and executeMovement, without sending the messages
+  private void runSteps(int numSteps) {
+    for (int i = 0; i < numSteps; i++) {
+      testKit.getGlobals().tStep++;
+      person.decideNextLocation();
+      person.recordPlacesVisited();
+      person.updatePlaceHistory();
+      int numPlacesVisited =
+          person.getCurrentPlaces().size() + person.getAdditionalPlaceInfos().size();
+      for (int visit = 0; visit < numPlacesVisited; visit++) {
+        person.transmissibilityInfoAt(visit);
+      }
+    }
+  }
+}
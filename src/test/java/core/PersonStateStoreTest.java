@@ -0,0 +1,77 @@
+package core;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static core.Person.InfectionStatus.DEAD;
+import static core.Person.InfectionStatus.INFECTED;
+import static core.Person.InfectionStatus.RECOVERED;
+import static core.Person.InfectionStatus.SUSCEPTIBLE;
+
+public class PersonStateStoreTest {
+
+  @Test
+  public void testCount_onlyCountsRowsWrittenThisStep() {
+    PersonStateStore store = new PersonStateStore();
+    int written = store.addRow();
+    int stale = store.addRow();
+    store.addRow();
+
+    store.write(stale, 4, INFECTED, 0, (byte) 0);
+    store.write(written, 5, SUSCEPTIBLE, 0, PersonStateStore.ISOLATING);
+
+    PersonStateStore.Counts counts = store.count(5);
+    assertThat(counts.numSusceptible).isEqualTo(1);
+    assertThat(counts.numQuarantineSusceptible).isEqualTo(1);
+    assertThat(counts.numInfected).isEqualTo(0);
+  }
+
+  @Test
+  public void testCount_matchesRowByRowCountAcrossBlocks() {
+    PersonStateStore store = new PersonStateStore();
+    int step = 10;
+    Person.InfectionStatus[] statuses = {SUSCEPTIBLE, INFECTED, RECOVERED, DEAD};
+    long numInfected = 0;
+    long numInfectious = 0;
+    long numQuarantineInfected = 0;
+    long numInfectionsThisStep = 0;
+    long numLeftInfected = 0;
+    int numRows = 40 * PersonStateStore.BLOCK_SIZE + 17;
+    for (int i = 0; i < numRows; i++) {
+      int row = store.addRow();
+      Person.InfectionStatus status = statuses[i % statuses.length];
+      int tInfectious = i % 20;
+      // Every combination of flags with every status
+      byte flags = (byte) (i % 8);
+      store.write(row, step, status, tInfectious, flags);
+
+      boolean wasInfected =
+          status == INFECTED || (flags & PersonStateStore.LEFT_INFECTED_THIS_STEP) != 0;
+      if (status == INFECTED) {
+        numInfected++;
+        if ((flags & PersonStateStore.ISOLATING) != 0) {
+          numQuarantineInfected++;
+        }
+      }
+      if (wasInfected) {
+        numLeftInfected += status == INFECTED ? 0 : 1;
+        if (tInfectious <= step) {
+          numInfectious++;
+        }
+      }
+      if ((flags & PersonStateStore.INFECTED_THIS_STEP) != 0) {
+        numInfectionsThisStep++;
+      }
+    }
+
+    PersonStateStore.Counts counts = store.count(step);
+
+    assertThat(counts.numSusceptible + counts.numInfected + counts.numRecovered + counts.numDead)
+        .isEqualTo(numRows);
+    assertThat(counts.numInfected).isEqualTo(numInfected);
+    assertThat(counts.numQuarantineInfected).isEqualTo(numQuarantineInfected);
+    assertThat(counts.numInfectionsThisStep).isEqualTo(numInfectionsThisStep);
+    assertThat(counts.currentInfected).isEqualTo(numInfected + numLeftInfected);
+    assertThat(counts.currentInfectious).isEqualTo(numInfectious);
+  }
+}
@@ -38,6 +38,14 @@ public class PersonTest {
     testKit.createLongAccumulator("numInfectionsThisStep", 0);
   }
 
+  @Test
+  public void testDailyScheduleDummy_isSharedBetweenPeople() {
+    TestPerson other = testKit.addAgent(TestPerson.class);
+
+    assertThat(other.dailySchedule).isSameAs(testPerson.dailySchedule);
+    assertThat(testPerson.dailySchedule.template().numSteps()).isEqualTo(0);
+  }
+
   @Test
   public void testModifyCompliancesZeroToOne() {
     testPerson.complianceMask = 1.0;
@@ -88,16 +96,16 @@ public class PersonTest {
   }
 
   @Test
-  public void testReportForVaccine() {
+  public void testRegisterForVaccine() {
     testPerson.isVaccinated = true;
-    TestResult result = testKit.testAction(testPerson, Person.reportForVaccine);
+    TestResult result = testKit.testAction(testPerson, Person.registerForVaccine);
 
-    assertThat(result.getMessagesOfType(Messages.ReportForVaccineMsg.class).size()).isEqualTo(0);
+    assertThat(result.getMessagesOfType(Messages.VaccineEligibilityMsg.class).size()).isEqualTo(0);
 
     testPerson.isVaccinated = false;
-    result = testKit.testAction(testPerson, Person.reportForVaccine);
+    result = testKit.testAction(testPerson, Person.registerForVaccine);
 
-    assertThat(result.getMessagesOfType(Messages.ReportForVaccineMsg.class).size()).isEqualTo(1);
+    assertThat(result.getMessagesOfType(Messages.VaccineEligibilityMsg.class).size()).isEqualTo(1);
   }
 
   @Test
@@ -574,6 +582,29 @@ public class PersonTest {
     assertThat(testPerson.status).isEqualTo(RECOVERED);
   }
 
+  @Test
+  public void testRecoverOrDieOrStep_writesPersonStateStore() {
+    testKit.getGlobals().usePersonStateStore = true;
+    testKit.getGlobals().tStep = 12;
+    testPerson.status = INFECTED;
+    testPerson.tInfectious = 8;
+    testPerson.illnessDuration = 12;
+    testPerson.isSelfIsolatingBecauseOfSymptoms = true;
+
+    testKit.testAction(testPerson, Person.recoverOrDieOrStep);
+
+    PersonStateStore store = testKit.getGlobals().getPersonStateStore();
+    assertThat(store.numRows()).isEqualTo(1);
+    assertThat(store.status(0)).isEqualTo(RECOVERED);
+    assertThat(store.tInfectious(0)).isEqualTo(8);
+    // Recovering stops isolating for symptoms
+    assertThat(store.flags(0)).isEqualTo(PersonStateStore.LEFT_INFECTED_THIS_STEP);
+    PersonStateStore.Counts counts = store.count(12);
+    assertThat(counts.numRecovered).isEqualTo(1);
+    assertThat(counts.currentInfected).isEqualTo(1);
+    assertThat(counts.currentInfectious).isEqualTo(1);
+  }
+
   @Test
   public void testGetsInfectedFromOtherIllness() {
     testKit.getGlobals().tStep = 5;
@@ -884,26 +915,49 @@ public class PersonTest {
     assertThat(p.getCurrentPlaces().get(0).placeName()).isEqualTo("B");
   }
 
+  @Test
+  public void testRecordPlacesVisited_usesScheduledStepPlaceIndices() {
+    testKit.getGlobals().usePlaceTable = true;
+    Person p = testKit.addAgent(Person.class, Person::init);
+    PlaceInfo first = TestUtils.createPlaceInfoWithAgent("First", 0, testKit);
+    PlaceInfo second = TestUtils.createPlaceInfoWithAgent("Second", 0, testKit);
+    p.dailySchedule =
+        Person.DailySchedule.create(
+            ImmutableMap.of(0, ImmutableList.of(second, first)), ImmutableList.of());
+
+    p.decideNextLocationIfNotIsolating();
+    p.recordPlacesVisited();
+    p.updatePlaceHistory();
+
+    PlaceTable places = testKit.getGlobals().getPlaceTable();
+    // In order of place id, as they are reported to the places
+    assertThat(places.place(p.placeHistory.placeIndex(0, 0))).isSameAs(first);
+    assertThat(places.place(p.placeHistory.placeIndex(0, 1))).isSameAs(second);
+    assertThat(p.placeHistory.placeIndices(0))
+        .isEqualTo(
+            p.dailySchedule.template().stepAt(0).placeIndicesByPlaceId(testKit.getGlobals()));
+  }
+
   @Test
   public void testReceiveSchedule() {
     Person p = testKit.addAgent(Person.class, Person::init);
 
     ImmutableList<PlaceInfo> l1 = ImmutableList.of(TestUtils.createPlaceInfoWithAgent("A", 0, testKit));
     ImmutableList<PlaceInfo> l2 = ImmutableList.of(TestUtils.createPlaceInfoWithAgent("B", 1, testKit));
-    Person.DailySchedule s =
-        Person.DailySchedule.create(
-            ImmutableMap.of(
-                0, l1,
-                1, l2),
-            ImmutableList.of(TestUtils.createPlaceInfoWithAgent("ISOLATION", 3, testKit)));
+    ScheduleTemplate template =
+        testKit.getGlobals().getScheduleTemplates().intern(ImmutableMap.of(0, l1, 1, l2));
+    ImmutableList<PlaceInfo> isolationPlaces =
+        ImmutableList.of(TestUtils.createPlaceInfoWithAgent("ISOLATION", 3, testKit));
 
     testKit
-        .send(Messages.ScheduleMessage.class, scheduleMessage -> scheduleMessage.schedule = s)
+        .send(Messages.ScheduleMessage.class, scheduleMessage -> scheduleMessage.schedule =
+            Person.DailySchedule.create(template, isolationPlaces, person -> {}))
         .to(p);
 
     testKit.testAction(p, Person.receiveSchedule);
-    assertThat(p.dailySchedule).isEqualTo(s);
-    assertThat(p.isolationPlaceInfos).isEqualTo(s.isolationPlaces());
+    assertThat(p.dailySchedule.template()).isSameAs(template);
+    assertThat(p.dailySchedule.placesAt(1)).isEqualTo(l2);
+    assertThat(p.isolationPlaceInfos).isEqualTo(isolationPlaces);
   }
 
   @Test(expected = IllegalStateException.class)
@@ -1041,13 +1095,44 @@ public class PersonTest {
     testPerson.setCurrentPlaces(place4);
     testKit.testAction(testPerson, Person.executeMovement);
 
-    assertThat(testPerson.placeHistory).hasSize(3);
-    assertThat(testPerson.placeHistory.get(0)).hasSize(1);
-    assertThat(testPerson.placeHistory.get(0).get(0)).isEqualTo(place2.placeId());
-    assertThat(testPerson.placeHistory.get(1)).hasSize(1);
-    assertThat(testPerson.placeHistory.get(1).get(0)).isEqualTo(place3.placeId());
-    assertThat(testPerson.placeHistory.get(2)).hasSize(1);
-    assertThat(testPerson.placeHistory.get(2).get(0)).isEqualTo(place4.placeId());
+    assertThat(testPerson.placeHistory.size()).isEqualTo(3);
+    assertThat(testPerson.placeHistory.numPlaces(0)).isEqualTo(1);
+    assertThat(testPerson.placeHistory.place(0, 0)).isSameAs(place2);
+    assertThat(testPerson.placeHistory.numPlaces(1)).isEqualTo(1);
+    assertThat(testPerson.placeHistory.place(1, 0)).isSameAs(place3);
+    assertThat(testPerson.placeHistory.numPlaces(2)).isEqualTo(1);
+    assertThat(testPerson.placeHistory.place(2, 0)).isSameAs(place4);
+  }
+
+  @Test
+  public void testPlaceHistory_withPlaceTable() {
+    testKit.getGlobals().contactTracingNumberOfDaysTraceback = 3;
+    testKit.getGlobals().usePlaceTable = true;
+
+    PlaceInfo place1 = TestUtils.createPlaceInfoWithAgent("Place1", 1, testKit);
+    testPerson.setCurrentPlaces(place1);
+    testKit.testAction(testPerson, Person.executeMovement);
+
+    PlaceInfo place2 = TestUtils.createPlaceInfoWithAgent("Place2", 1, testKit);
+    testPerson.setCurrentPlaces(place2);
+    testKit.testAction(testPerson, Person.executeMovement);
+
+    PlaceInfo place3 = TestUtils.createPlaceInfoWithAgent("Place3", 1, testKit);
+    testPerson.setCurrentPlaces(place3);
+    testKit.testAction(testPerson, Person.executeMovement);
+
+    PlaceInfo place4 = TestUtils.createPlaceInfoWithAgent("Place4", 1, testKit);
+    testPerson.setCurrentPlaces(place4);
+    testKit.testAction(testPerson, Person.executeMovement);
+
+    PlaceTable places = testKit.getGlobals().getPlaceTable();
+    assertThat(testPerson.placeHistory.size()).isEqualTo(3);
+    assertThat(testPerson.placeHistory.placeIndices(0)).hasLength(1);
+    assertThat(places.place(testPerson.placeHistory.placeIndex(0, 0))).isSameAs(place2);
+    assertThat(testPerson.placeHistory.placeIndices(1)).hasLength(1);
+    assertThat(places.place(testPerson.placeHistory.placeIndex(1, 0))).isSameAs(place3);
+    assertThat(testPerson.placeHistory.placeIndices(2)).hasLength(1);
+    assertThat(places.place(testPerson.placeHistory.placeIndex(2, 0))).isSameAs(place4);
   }
 
   @Test
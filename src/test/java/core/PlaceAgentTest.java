@@ -6,7 +6,10 @@ import simudyne.core.abm.testkit.TestKit;
 import simudyne.core.abm.testkit.TestResult;
 import tau.TAUModel;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -92,29 +95,50 @@ public class PlaceAgentTest {
     testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
 
     // 3 people at step 1
+    testKit.getGlobals().tStep = 1;
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 0);
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 1);
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 2);
     testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
 
     // 2 people at step 2
+    testKit.getGlobals().tStep = 2;
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 0);
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 1);
     testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
 
     // 1 people at step 3
+    testKit.getGlobals().tStep = 3;
     sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 0);
     testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
 
     // 0 people at step 4
-    testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
+    testKit.getGlobals().tStep = 4;
+    TestResult result = testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
+    assertThat(result.getMessagesOfType(Messages.PlaceInfections.class)).isEmpty();
 
-    // Check only saves 3 steps
-    assertThat(testPlaceAgent.occupancyHistory).hasSize(3);
+    // Check only saves steps within 3 steps, and only steps with visitors
+    OccupancyHistory history = testPlaceAgent.occupancyHistory();
+    assertThat(history.size()).isEqualTo(3);
     // Check that steps are in order increasing tStep
-    assertThat(testPlaceAgent.occupancyHistory.get(0)).hasSize(2);
-    assertThat(testPlaceAgent.occupancyHistory.get(1)).hasSize(1);
-    assertThat(testPlaceAgent.occupancyHistory.get(2)).isEmpty();
+    assertThat(history.step(0)).isEqualTo(1);
+    assertThat(history.step(1)).isEqualTo(2);
+    assertThat(history.step(2)).isEqualTo(3);
+    assertThat(history.rosterSize(0)).isEqualTo(3);
+    assertThat(history.rosterSize(1)).isEqualTo(2);
+    assertThat(history.rosterSize(2)).isEqualTo(1);
+
+    // Expired steps are dropped when the idle place is asked for its occupancy, and only the
+    // requested steps are sent
+    testKit.send(Messages.RequestOccupancyMsg.class, msg -> msg.steps = new int[] {1, 2, 4}, 7L)
+        .to(testPlaceAgent.getID());
+    result = testKit.testAction(testPlaceAgent, PlaceAgent.sendOccupancy);
+    OccupancyHistory.Snapshot occupancy =
+        result.getMessagesOfType(Messages.OccupancyMsg.class).get(0).occupancy;
+    assertThat(occupancy.size()).isEqualTo(1);
+    assertThat(occupancy.step(0)).isEqualTo(2);
+    assertThat(occupancy.occupant(0, 0)).isEqualTo(0L);
+    assertThat(occupancy.occupant(0, 1)).isEqualTo(1L);
 
     // TODO Add testing to look at actual infection spread when we can somehow ensure a repeatable result of the test
   }
@@ -138,7 +162,7 @@ public class PlaceAgentTest {
     testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
 
     // Check no place history saved
-    assertThat(testPlaceAgent.occupancyHistory).isEmpty();
+    assertThat(testPlaceAgent.occupancyHistory().size()).isEqualTo(0);
   }
 
   @Test
@@ -199,6 +223,147 @@ public class PlaceAgentTest {
     assertThat(msg.getTo()).isEqualTo(0);
   }
 
+  @Test
+  public void testTwoPhasePresence_requestsDetailsWhenInfectiousVisitor() {
+    testKit.getGlobals().useTwoPhasePresence = true;
+    testKit.getGlobals().modules = new TAUModel.TAUModules();
+    placeInfo = PlaceInfo.create("place", TAUModel.PlaceType.NON_DISC_COURSE.ordinal());
+    testPlaceAgent.init();
+    testKit.send(Messages.PlaceMessage.class, msg -> msg.placeInfo = placeInfo)
+        .to(testPlaceAgent.getID());
+    testKit.testAction(testPlaceAgent, PlaceAgent.receivePlace);
+
+    sendInfectedIAmHereMsgWithPersonId(testKit, testPlaceAgent, 0);
+    testKit.send(Messages.IAmPresentMsg.class, 2L).to(testPlaceAgent.getID());
+    testKit.send(Messages.IAmPresentMsg.class, 1L).to(testPlaceAgent.getID());
+    TestResult result = testKit.testAction(testPlaceAgent, PlaceAgent.receivePresence);
+
+    List<Messages.RequestTransmissibilityMsg> requests =
+        result.getMessagesOfType(Messages.RequestTransmissibilityMsg.class);
+    assertThat(requests).hasSize(2);
+    assertThat(requests.get(0).getTo()).isEqualTo(1);
+    assertThat(requests.get(1).getTo()).isEqualTo(2);
+
+    sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 1);
+    sendIAmHereMsgWithPersonId(testKit, testPlaceAgent, 2);
+    result = testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
+
+    assertThat(result.getMessagesOfType(Messages.PlaceInfections.class).get(0).totalInPlace)
+        .isEqualTo(3);
+    assertThat(testPlaceAgent.occupancyHistory().snapshot().size()).isEqualTo(1);
+    assertThat(rosterAt(testPlaceAgent, 0)).containsExactly(0L, 1L, 2L).inOrder();
+  }
+
+  @Test
+  public void testTwoPhasePresence_noRequestsWithoutInfectiousVisitor() {
+    testKit.getGlobals().useTwoPhasePresence = true;
+    testKit.getGlobals().modules = new TAUModel.TAUModules();
+    placeInfo = PlaceInfo.create("place", TAUModel.PlaceType.NON_DISC_COURSE.ordinal());
+    testPlaceAgent.init();
+    testKit.send(Messages.PlaceMessage.class, msg -> msg.placeInfo = placeInfo)
+        .to(testPlaceAgent.getID());
+    testKit.testAction(testPlaceAgent, PlaceAgent.receivePlace);
+
+    testKit.send(Messages.IAmPresentMsg.class, 1L).to(testPlaceAgent.getID());
+    testKit.send(Messages.IAmPresentMsg.class, 2L).to(testPlaceAgent.getID());
+    TestResult result = testKit.testAction(testPlaceAgent, PlaceAgent.receivePresence);
+    assertThat(result.getMessagesOfType(Messages.RequestTransmissibilityMsg.class)).isEmpty();
+
+    result = testKit.testAction(testPlaceAgent, PlaceAgent.generateContactsAndInfect);
+
+    assertThat(result.getMessagesOfType(Messages.InfectionMsg.class)).isEmpty();
+    assertThat(result.getMessagesOfType(Messages.PlaceInfections.class).get(0).totalInPlace)
+        .isEqualTo(2);
+    // Occupancy for contact tracing still includes everyone present
+    assertThat(rosterAt(testPlaceAgent, 0)).containsExactly(1L, 2L).inOrder();
+  }
+
+  @Test
+  public void testNumShards() {
+    Globals globals = testKit.getGlobals();
+    globals.placeShardMinCapacity = 500;
+    globals.numPlaceShards = 3;
+
+    assertThat(PlaceAgent.numShards(placeWithCapacity(499), globals)).isEqualTo(1);
+    assertThat(PlaceAgent.numShards(placeWithCapacity(500), globals)).isEqualTo(3);
+    assertThat(PlaceAgent.numShards(
+        PlaceInfo.create("star", 0, PlaceInfo.NetworkType.STAR, 0, "", 1000), globals))
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void testShardedPlaceInfoRoutesPeopleStably() {
+    PlaceInfo shardedPlace = placeWithCapacity(1000);
+    shardedPlace.setNumShards(3);
+    shardedPlace.receivePlaceAgent(10);
+    shardedPlace.receiveShardAgent(1, 11);
+    shardedPlace.receiveShardAgent(2, 12);
+
+    assertThat(shardedPlace.isSharded()).isTrue();
+    assertThat(shardedPlace.placeId()).isEqualTo(10);
+    assertThat(shardedPlace.allPlaceIds()).containsExactly(10L, 11L, 12L).inOrder();
+    Set<Long> shardsUsed = new HashSet<>();
+    for (long personId = 0; personId < 300; personId++) {
+      long shardId = shardedPlace.placeIdFor(personId);
+      assertThat(shardedPlace.placeIdFor(personId)).isEqualTo(shardId);
+      shardsUsed.add(shardId);
+    }
+    assertThat(shardsUsed).containsExactly(10L, 11L, 12L);
+  }
+
+  @Test
+  public void testCrossShardMixing() {
+    testKit.getGlobals().crossShardMixing = 1.0;
+    testKit.getGlobals().baseInfectivity = 1.0;
+    PlaceAgent otherShard = testKit.addAgent(PlaceAgent.class);
+    PlaceInfo shardedPlace = placeWithCapacity(1000);
+    shardedPlace.setNumShards(2);
+    shardedPlace.receivePlaceAgent(testPlaceAgent.getID());
+    shardedPlace.receiveShardAgent(1, otherShard.getID());
+    testPlaceAgent.setPlaceInfo(shardedPlace);
+    otherShard.setPlaceInfo(shardedPlace);
+
+    // An infectious person with far more contacts than there are people at the place
+    Person.PersonTransmissibilityInfo infectious = Person.PersonTransmissibilityInfo.create(
+        Person.InfectionStatus.INFECTED, true, false, Person.MaskType.NONE, 0, 100, 0, 0);
+    testKit.send(Messages.IAmHereMsg.class, msg -> msg.transmissibilityInfo = infectious, 1L)
+        .to(testPlaceAgent.getID());
+    TestResult result = testKit.testAction(testPlaceAgent, PlaceAgent.receivePresence);
+
+    List<Messages.ShardPressureMsg> pressure =
+        result.getMessagesOfType(Messages.ShardPressureMsg.class);
+    assertThat(pressure).hasSize(1);
+    assertThat(pressure.get(0).getTo()).isEqualTo(otherShard.getID());
+    assertThat(pressure.get(0).numOccupants).isEqualTo(1);
+    assertThat(pressure.get(0).infectiousIds).isEqualTo(new long[] {1L});
+
+    testKit.send(Messages.ShardPressureMsg.class, msg -> {
+      msg.numOccupants = 1;
+      msg.infectiousIds = new long[] {1L};
+      msg.infectiousInfos = new Person.PersonTransmissibilityInfo[] {infectious};
+    }, testPlaceAgent.getID()).to(otherShard.getID());
+    sendIAmHereMsgWithPersonId(testKit, otherShard, 2);
+    result = testKit.testAction(otherShard, PlaceAgent.generateContactsAndInfect);
+
+    assertThat(result.getMessagesOfType(Messages.InfectionMsg.class)).hasSize(1);
+    assertThat(result.getMessagesOfType(Messages.InfectionMsg.class).get(0).getTo())
+        .isEqualTo(2);
+    assertThat(result.getMessagesOfType(Messages.YouInfectedSomeoneMsg.class).get(0).getTo())
+        .isEqualTo(1);
+    assertThat(result.getMessagesOfType(Messages.PlaceInfections.class).get(0).numGotInfected)
+        .isEqualTo(1);
+  }
+
+  private static List<Long> rosterAt(PlaceAgent placeAgent, int i) {
+    List<Long> roster = new ArrayList<>();
+    placeAgent.occupancyHistory().snapshot().addOccupantsTo(i, roster);
+    return roster;
+  }
+
+  private static PlaceInfo placeWithCapacity(int capacity) {
+    return PlaceInfo.create("gym", 0, PlaceInfo.NetworkType.FULLY_CONNECTED, -1, "", capacity);
+  }
+
   private static void sendIAmHereMsgWithPersonId(TestKit<Globals> testKit, PlaceAgent placeAgent, long personId) {
     testKit.send(Messages.IAmHereMsg.class, msg ->
     {
@@ -0,0 +1,74 @@
+package core;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PlaceHistoryTest {
+
+  @Test
+  public void testRecord_keepsMostRecentSteps() {
+    PlaceHistory history = new PlaceHistory();
+
+    for (int step = 0; step < 5; step++) {
+      history.record(step, new int[] {step, step + 10, -1}, 2, 3);
+    }
+
+    assertThat(history.size()).isEqualTo(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(history.step(i)).isEqualTo(i + 2);
+      assertThat(history.placeIndices(i)).isEqualTo(new int[] {i + 2, i + 12});
+    }
+  }
+
+  @Test
+  public void testRecord_growsRowForMorePlaces() {
+    PlaceHistory history = new PlaceHistory();
+    history.record(0, new int[] {1}, 1, 2);
+    history.record(1, new int[] {2}, 1, 2);
+
+    history.record(2, new int[] {3, 4, 5, 6, 7, 8}, 6, 2);
+
+    assertThat(history.step(0)).isEqualTo(1);
+    assertThat(history.placeIndices(1)).isEqualTo(new int[] {3, 4, 5, 6, 7, 8});
+    assertThat(history.numPlaces(1)).isEqualTo(6);
+  }
+
+  @Test
+  public void testRecord_shrinkingKeepsNewestSteps() {
+    PlaceHistory history = new PlaceHistory();
+    for (int step = 0; step < 4; step++) {
+      history.record(step, new int[] {step}, 1, 4);
+    }
+
+    history.record(4, new int[] {4}, 1, 2);
+
+    assertThat(history.size()).isEqualTo(2);
+    assertThat(history.step(0)).isEqualTo(3);
+    assertThat(history.placeIndex(1, 0)).isEqualTo(4);
+  }
+
+  @Test
+  public void testRecord_placeInfosReuseRows() {
+    PlaceHistory history = new PlaceHistory();
+    PlaceInfo home = PlaceInfo.create("home", 0);
+    PlaceInfo work = PlaceInfo.create("work", 0);
+    history.record(0, new PlaceInfo[] {home, work}, 2, 1);
+
+    history.record(1, new PlaceInfo[] {work, null}, 1, 1);
+
+    assertThat(history.size()).isEqualTo(1);
+    assertThat(history.step(0)).isEqualTo(1);
+    assertThat(history.numPlaces(0)).isEqualTo(1);
+    assertThat(history.place(0, 0)).isSameAs(work);
+  }
+
+  @Test
+  public void testRecord_zeroCapacityKeepsNothing() {
+    PlaceHistory history = new PlaceHistory();
+
+    history.record(0, new int[] {1}, 1, 0);
+
+    assertThat(history.size()).isEqualTo(0);
+  }
+}
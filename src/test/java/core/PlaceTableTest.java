@@ -0,0 +1,65 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PlaceTableTest {
+
+  @Test
+  public void testOf_numbersPlacesInOrder() {
+    PlaceInfo first = PlaceInfo.create("first", 0);
+    PlaceInfo second = PlaceInfo.create("first", 0);
+    PlaceTable table = PlaceTable.of(ImmutableList.of(first, second));
+
+    assertThat(table.size()).isEqualTo(2);
+    assertThat(table.indexOf(first)).isEqualTo(0);
+    // Equal PlaceInfos are still different places
+    assertThat(table.indexOf(second)).isEqualTo(1);
+    assertThat(table.place(1)).isSameAs(second);
+    assertThat(table.indexOf(PlaceInfo.create("other", 0))).isEqualTo(-1);
+  }
+
+  @Test
+  public void testPlaceIdFor_readsAgentIdsAssignedAfterBuilding() {
+    PlaceInfo place = PlaceInfo.create("place", 0);
+    PlaceInfo sharded = PlaceInfo.create("sharded", 0);
+    sharded.setNumShards(3);
+    PlaceTable table = PlaceTable.of(ImmutableList.of(place, sharded));
+
+    place.receivePlaceAgent(10);
+    sharded.receivePlaceAgent(20);
+    sharded.receiveShardAgent(1, 21);
+    sharded.receiveShardAgent(2, 22);
+
+    assertThat(table.numPlaceIds(0)).isEqualTo(1);
+    assertThat(table.placeIdFor(0, 1234L)).isEqualTo(10L);
+    assertThat(table.numPlaceIds(1)).isEqualTo(3);
+    assertThat(table.placeId(1, 2)).isEqualTo(22L);
+    for (long personId = 0; personId < 20; personId++) {
+      assertThat(table.placeIdFor(1, personId)).isEqualTo(sharded.placeIdFor(personId));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testPlaceIdFor_throwsWithoutAgent() {
+    PlaceTable table = PlaceTable.of(ImmutableList.of(PlaceInfo.create("place", 0)));
+
+    table.placeIdFor(0, 1L);
+  }
+
+  @Test
+  public void testPlaceIndexOf_addsUnknownPlaces() {
+    Globals globals = new Globals();
+    PlaceInfo known = PlaceInfo.create("known", 0);
+    globals.setPlaceTable(PlaceTable.of(ImmutableList.of(known)));
+    PlaceInfo unknown = PlaceInfo.create("unknown", 0);
+
+    assertThat(globals.placeIndexOf(known)).isEqualTo(0);
+    assertThat(globals.placeIndexOf(unknown)).isEqualTo(1);
+    assertThat(globals.placeIndexOf(unknown)).isEqualTo(1);
+    assertThat(globals.getPlaceTable().size()).isEqualTo(2);
+    assertThat(globals.getPlaceTable().place(0)).isSameAs(known);
+  }
+}
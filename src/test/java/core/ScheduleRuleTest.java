@@ -0,0 +1,56 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ScheduleRuleTest {
+  private final PlaceInfo place = PlaceInfo.create("place", 0);
+
+  @Test
+  public void testCovering_findsWeeklyPattern() {
+    // Monday, Wednesday and Friday of a two week cycle, one step per day
+    ImmutableList<ScheduleRule> rules =
+        ScheduleRule.covering(place, new int[] {0, 2, 4, 7, 9, 11}, 14);
+
+    assertThat(rules).hasSize(3);
+    for (ScheduleRule rule : rules) {
+      assertThat(rule.period()).isEqualTo(7);
+      assertThat(rule.place()).isSameAs(place);
+    }
+    assertThat(rules.get(1).offset()).isEqualTo(2);
+  }
+
+  @Test
+  public void testCovering_everyDayIsOneRule() {
+    ImmutableList<ScheduleRule> rules =
+        ScheduleRule.covering(
+            place, new int[] {1, 3, 5, 7, 9, 11, 13, 15, 17, 19, 21, 23, 25, 27}, 28);
+
+    assertThat(rules).hasSize(1);
+    assertThat(rules.get(0).period()).isEqualTo(2);
+    assertThat(rules.get(0).offset()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCovering_irregularStepsRepeatOncePerCycle() {
+    // Every third day does not fit into a two week cycle
+    ImmutableList<ScheduleRule> rules =
+        ScheduleRule.covering(place, new int[] {0, 3, 6, 9, 12}, 14);
+
+    assertThat(rules).hasSize(5);
+    assertThat(rules.get(4).period()).isEqualTo(14);
+    assertThat(rules.get(4).offset()).isEqualTo(12);
+  }
+
+  @Test
+  public void testCovering_noSteps() {
+    assertThat(ScheduleRule.covering(place, new int[0], 14)).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEvery_rejectsOffsetOutsidePeriod() {
+    ScheduleRule.every(7, 7, place);
+  }
+}
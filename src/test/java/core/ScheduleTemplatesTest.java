@@ -0,0 +1,147 @@
+package core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ScheduleTemplatesTest {
+  private final PlaceInfo home = PlaceInfo.create("home", 0);
+  private final PlaceInfo work = PlaceInfo.create("work", 1);
+  private final PlaceInfo gym = PlaceInfo.create("gym", 2);
+
+  @Test
+  public void testIntern_sharesIdenticalSchedules() {
+    ScheduleTemplates templates = new ScheduleTemplates();
+
+    ScheduleTemplate first =
+        templates.intern(ImmutableMap.of(0, ImmutableList.of(home), 1, ImmutableList.of(work)));
+    ScheduleTemplate second =
+        templates.intern(ImmutableMap.of(0, ImmutableList.of(home), 1, ImmutableList.of(work)));
+    ScheduleTemplate third =
+        templates.intern(ImmutableMap.of(0, ImmutableList.of(home), 1, ImmutableList.of(gym)));
+
+    assertThat(second).isSameAs(first);
+    assertThat(third).isNotSameAs(first);
+    assertThat(templates.numTemplates()).isEqualTo(2);
+    assertThat(templates.get(third.id())).isSameAs(third);
+    // The step both schedules have in common is shared between them
+    assertThat(third.placesAt(0)).isSameAs(first.placesAt(0));
+  }
+
+  @Test
+  public void testPlacesAt_wrapsAroundAndKeepsOrder() {
+    ScheduleTemplate template =
+        ScheduleTemplate.of(
+            ImmutableMap.of(0, ImmutableList.of(work, home), 1, ImmutableList.of(), 2,
+                ImmutableList.of(gym)));
+
+    assertThat(template.numSteps()).isEqualTo(3);
+    assertThat(template.placesAt(0)).containsExactly(work, home).inOrder();
+    assertThat(template.placesAt(4)).isEmpty();
+    assertThat(template.placesAt(5)).containsExactly(gym);
+    assertThat(template.placesAtStepMap())
+        .isEqualTo(ImmutableMap.of(0, ImmutableList.of(work, home), 1, ImmutableList.of(), 2,
+            ImmutableList.of(gym)));
+  }
+
+  @Test
+  public void testIntern_keepsEqualPlacesApart() {
+    ScheduleTemplates templates = new ScheduleTemplates();
+    PlaceInfo otherHome = PlaceInfo.create("home", 0);
+
+    ScheduleTemplate template = templates.intern(ImmutableMap.of(0, ImmutableList.of(home)));
+    ScheduleTemplate other = templates.intern(ImmutableMap.of(0, ImmutableList.of(otherHome)));
+
+    // Equal PlaceInfos are still different places
+    assertThat(other).isNotSameAs(template);
+    assertThat(other.placesAt(0).get(0)).isSameAs(otherHome);
+  }
+
+  @Test
+  public void testPlaceIndicesByPlaceId_pointIntoPlaceTable() {
+    Globals globals = new Globals();
+    PlaceInfo otherHome = PlaceInfo.create("home", 0);
+    home.receivePlaceAgent(12);
+    otherHome.receivePlaceAgent(11);
+    work.receivePlaceAgent(10);
+    globals.setPlaceTable(PlaceTable.of(ImmutableList.of(home, otherHome, work)));
+    ScheduleStep step =
+        ScheduleTemplate.of(ImmutableMap.of(0, ImmutableList.of(home, otherHome, work))).stepAt(0);
+
+    int[] placeIndices = step.placeIndicesByPlaceId(globals);
+
+    // In order of place id
+    assertThat(placeIndices).asList().containsExactly(2, 1, 0).inOrder();
+    assertThat(step.placeIndicesByPlaceId(globals)).isSameAs(placeIndices);
+    assertThat(step.isPlacesByPlaceId(step.placesByPlaceId())).isTrue();
+    assertThat(step.isPlacesByPlaceId(step.places)).isFalse();
+  }
+
+  @Test
+  public void testIntern_reinternsTemplateFromAnotherRegistry() {
+    ScheduleTemplates templates = new ScheduleTemplates();
+    ScheduleTemplate own = ScheduleTemplate.of(ImmutableMap.of(0, ImmutableList.of(home)));
+
+    ScheduleTemplate interned = templates.intern(own);
+
+    assertThat(interned.templates()).isSameAs(templates);
+    assertThat(templates.intern(interned)).isSameAs(interned);
+    assertThat(interned.placesAtStepMap()).isEqualTo(own.placesAtStepMap());
+  }
+
+  @Test
+  public void testInternRules_resolvesStepsInRuleOrder() {
+    ScheduleTemplates templates = new ScheduleTemplates();
+    ImmutableList<ScheduleRule> rules =
+        ImmutableList.of(
+            ScheduleRule.every(2, 0, work),
+            ScheduleRule.every(1, 0, home),
+            ScheduleRule.every(4, 3, gym));
+
+    ScheduleTemplate template = templates.intern(rules, 4);
+
+    assertThat(template.isRuleBased()).isTrue();
+    assertThat(template.numSteps()).isEqualTo(4);
+    assertThat(template.placesAtStepMap())
+        .isEqualTo(
+            ImmutableMap.of(
+                0, ImmutableList.of(work, home),
+                1, ImmutableList.of(home),
+                2, ImmutableList.of(work, home),
+                3, ImmutableList.of(home, gym)));
+    assertThat(templates.intern(rules, 4)).isSameAs(template);
+    assertThat(templates.intern(rules, 8)).isNotSameAs(template);
+  }
+
+  @Test
+  public void testInternRules_sharesResolvedStepsWithListedSchedules() {
+    ScheduleTemplates templates = new ScheduleTemplates();
+    ScheduleTemplate listed =
+        templates.intern(ImmutableMap.of(0, ImmutableList.of(work, home), 1, ImmutableList.of()));
+    ScheduleTemplate ruled =
+        templates.intern(
+            ImmutableList.of(ScheduleRule.every(2, 0, work), ScheduleRule.every(2, 0, home)), 2);
+
+    // Each step is worked out once, so is the same list every time round the cycle
+    for (int step = 0; step < 4 * ruled.numSteps(); step++) {
+      assertThat(ruled.placesAt(step)).isSameAs(listed.placesAt(step));
+      assertThat(ruled.placesAt(step)).isSameAs(ruled.placesAt(step));
+    }
+    assertThat(ruled.stepAt(0)).isSameAs(listed.stepAt(0));
+  }
+
+  @Test
+  public void testIntern_reinternsRuleTemplateFromAnotherRegistry() {
+    ScheduleTemplate own =
+        new ScheduleTemplates().intern(ImmutableList.of(ScheduleRule.every(3, 1, gym)), 6);
+    ScheduleTemplates templates = new ScheduleTemplates();
+
+    ScheduleTemplate interned = templates.intern(own);
+
+    assertThat(interned.templates()).isSameAs(templates);
+    assertThat(interned.isRuleBased()).isTrue();
+    assertThat(interned.placesAtStepMap()).isEqualTo(own.placesAtStepMap());
+  }
+}
@@ -0,0 +1,77 @@
+package core;
+
+import com.google.common.collect.Range;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SuppressionRegistryTest {
+
+  @Test
+  public void testSet_movesBetweenGroups() {
+    SuppressionRegistry registry = new SuppressionRegistry();
+    registry.set(1L, false);
+    registry.set(2L, true);
+    registry.set(3L, false);
+    registry.set(1L, true);
+    registry.set(1L, true);
+
+    assertThat(registry.numActive()).isEqualTo(1);
+    assertThat(registry.numSuppressed()).isEqualTo(2);
+    assertThat(registry.isSuppressed(1L)).isTrue();
+    assertThat(registry.isSuppressed(3L)).isFalse();
+    assertThat(registry.isSuppressed(4L)).isFalse();
+  }
+
+  @Test
+  public void testSwitchRandomly_switchesOnlyTheDelta() {
+    SuppressionRegistry registry = new SuppressionRegistry();
+    for (long id = 0; id < 100; id++) {
+      registry.set(id, id % 2 == 0);
+    }
+
+    long[] switched = registry.switchRandomly(10, true, new Random(1));
+
+    assertThat(switched).hasLength(10);
+    for (long id : switched) {
+      assertThat(id % 2).isEqualTo(0L);
+      assertThat(registry.isSuppressed(id)).isFalse();
+    }
+    assertThat(registry.numActive()).isEqualTo(60);
+    assertThat(registry.numSuppressed()).isEqualTo(40);
+  }
+
+  @Test
+  public void testSwitchRandomly_switchesWholeGroupIfTooFew() {
+    SuppressionRegistry registry = new SuppressionRegistry();
+    registry.set(1L, false);
+    registry.set(2L, false);
+    registry.set(3L, true);
+
+    long[] switched = registry.switchRandomly(5, false, new Random(1));
+
+    assertThat(switched).asList().containsExactly(1L, 2L);
+    assertThat(registry.numActive()).isEqualTo(0);
+    assertThat(registry.numSuppressed()).isEqualTo(3);
+  }
+
+  @Test
+  public void testSwitchRandomly_isUniform() {
+    int[] counts = new int[10];
+    Random random = new Random(7);
+    for (int trial = 0; trial < 10000; trial++) {
+      SuppressionRegistry registry = new SuppressionRegistry();
+      for (long id = 0; id < 10; id++) {
+        registry.set(id, false);
+      }
+      for (long id : registry.switchRandomly(3, false, random)) {
+        counts[(int) id]++;
+      }
+    }
+    for (int count : counts) {
+      assertThat(count).isIn(Range.closed(2700, 3300));
+    }
+  }
+}
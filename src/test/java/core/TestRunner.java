@@ -95,6 +95,9 @@ public class TestRunner {
 
   public void moveAndInfect() {
     run(people, Person.executeMovement);
+    run(places, PlaceAgent.receivePresence);
+    run(places, PlaceAgent.collectShardPressure);
+    run(people, Person.sendTransmissibilityInfo);
     run(places, PlaceAgent.generateContactsAndInfect);
     run(people, Person.infectedByCOVID);
     run(centralAgent, CentralAgent.processPlaceInfectionRates); // Not sure this action works in tests
@@ -118,6 +121,18 @@ public class TestRunner {
   }
 
   public void doInterviews() {
+    if (testKit.getGlobals().useExposureIndex) {
+      run(centralAgent, CentralAgent.traceContactsFromExposureIndex);
+      run(people, Person.receiveQuarantineStartOrStopAndAdministerTest);
+      run(centralAgent, CentralAgent.processInfectionStatus);
+      return;
+    }
+    if (testKit.getGlobals().useContactLog) {
+      run(centralAgent, CentralAgent.traceContactsFromLog);
+      run(people, Person.receiveQuarantineStartOrStopAndAdministerTest);
+      run(centralAgent, CentralAgent.processInfectionStatus);
+      return;
+    }
     run(centralAgent, CentralAgent.startInterviews);
     run(people, Person.requestOccupancyFromPlacesVisited);
     run(places, PlaceAgent.sendOccupancy);
@@ -0,0 +1,73 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimingWheelTest {
+
+  @Test
+  public void testAdvanceTo_firesOnlyDueEventsInOrder() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.schedule(2, "a");
+    wheel.schedule(1, "b");
+    wheel.schedule(2, "c");
+    wheel.schedule(3, "d");
+    List<String> fired = new ArrayList<>();
+
+    wheel.advanceTo(0, fired::add);
+    assertThat(fired).isEmpty();
+
+    wheel.advanceTo(2, fired::add);
+    assertThat(fired).containsExactly("b", "a", "c").inOrder();
+    assertThat(wheel.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAdvanceTo_holdsEventsMoreThanOneTurnAhead() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.advanceTo(0, event -> { });
+    wheel.schedule(2, "soon");
+    wheel.schedule(6, "next turn");
+    List<String> fired = new ArrayList<>();
+
+    for (int step = 1; step <= 5; step++) {
+      wheel.advanceTo(step, fired::add);
+    }
+    assertThat(fired).containsExactly("soon");
+
+    wheel.advanceTo(6, fired::add);
+    assertThat(fired).containsExactly("soon", "next turn").inOrder();
+  }
+
+  @Test
+  public void testAdvanceTo_jumpOverSeveralTurns() {
+    TimingWheel<Integer> wheel = new TimingWheel<>(4);
+    wheel.advanceTo(0, event -> { });
+    for (int step = 9; step >= 1; step--) {
+      wheel.schedule(step, step);
+    }
+    List<Integer> fired = new ArrayList<>();
+
+    wheel.advanceTo(7, fired::add);
+
+    assertThat(fired).containsExactly(1, 2, 3, 4, 5, 6, 7).inOrder();
+    assertThat(wheel.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSchedule_pastStepFiresOnNextAdvance() {
+    TimingWheel<String> wheel = new TimingWheel<>(4);
+    wheel.advanceTo(5, event -> { });
+    wheel.schedule(5, "late");
+    List<String> fired = new ArrayList<>();
+
+    wheel.advanceTo(5, fired::add);
+
+    assertThat(fired).containsExactly("late");
+    assertThat(wheel.size()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,79 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TracingEngineTest {
+  private ContactLog contactLog;
+  private List<long[]> notified;
+  private LongHashSet traced;
+
+  @Before
+  public void setUp() {
+    // 1 meets 2 at step 0 and 3 at step 2; 2 meets 4 at step 1; 3 meets 5 at step 1 and 6 at step 3
+    contactLog = new ContactLog(10);
+    contactLog.record(0, 100, new long[] {1, 2}, 2);
+    contactLog.record(1, 101, new long[] {2, 4}, 2);
+    contactLog.record(1, 102, new long[] {3, 5}, 2);
+    contactLog.record(2, 100, new long[] {1, 3}, 2);
+    contactLog.record(3, 103, new long[] {3, 6}, 2);
+    notified = new ArrayList<>();
+    traced = new LongHashSet();
+  }
+
+  private TracingEngine.Notifier recordingNotifier() {
+    return (contact, exposureStep, hop) -> {
+      notified.add(new long[] {contact, exposureStep, hop});
+      return traced.add(contact);
+    };
+  }
+
+  @Test
+  public void testTrace_oneHopMostRecentFirst() {
+    int numTraced = new TracingEngine(contactLog, 1, Integer.MAX_VALUE)
+        .trace(1, 0, 3, 1.0, new Random(1), recordingNotifier());
+
+    assertThat(numTraced).isEqualTo(2);
+    assertThat(notified).hasSize(2);
+    assertThat(notified.get(0)).isEqualTo(new long[] {3, 2, 1});
+    assertThat(notified.get(1)).isEqualTo(new long[] {2, 0, 1});
+  }
+
+  @Test
+  public void testTrace_secondHopOnlyAfterExposure() {
+    int numTraced = new TracingEngine(contactLog, 2, Integer.MAX_VALUE)
+        .trace(1, 0, 3, 1.0, new Random(1), recordingNotifier());
+
+    // 3 met 5 at step 1, before 3 was exposed at step 2, so 5 is not traced
+    assertThat(numTraced).isEqualTo(4);
+    assertThat(notified.get(2)).isEqualTo(new long[] {6, 3, 2});
+    assertThat(notified.get(3)).isEqualTo(new long[] {4, 1, 2});
+  }
+
+  @Test
+  public void testTrace_skipsContactsNotNewlyTraced() {
+    traced.add(3);
+
+    int numTraced = new TracingEngine(contactLog, 2, Integer.MAX_VALUE)
+        .trace(1, 0, 3, 1.0, new Random(1), recordingNotifier());
+
+    assertThat(numTraced).isEqualTo(2);
+    assertThat(traced.contains(6)).isFalse();
+    assertThat(traced.contains(4)).isTrue();
+  }
+
+  @Test
+  public void testTrace_stopsAtMaxContactsPerCase() {
+    int numTraced = new TracingEngine(contactLog, 3, 3)
+        .trace(1, 0, 3, 1.0, new Random(1), recordingNotifier());
+
+    assertThat(numTraced).isEqualTo(3);
+    assertThat(notified).hasSize(3);
+  }
+}
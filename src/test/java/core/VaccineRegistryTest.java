@@ -0,0 +1,81 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class VaccineRegistryTest {
+
+  @Test
+  public void testSelect_takesLowerTiersFirst() {
+    VaccineRegistry registry = new VaccineRegistry();
+    registry.register(1L, 2, false);
+    registry.register(2L, 0, false);
+    registry.register(3L, 1, false);
+    registry.register(4L, 1, false);
+
+    assertThat(asSet(registry.select(1, new Random(0)))).containsExactly(2L);
+    assertThat(asSet(registry.select(2, new Random(0)))).containsExactly(3L, 4L);
+    assertThat(asSet(registry.select(5, new Random(0)))).containsExactly(1L);
+    assertThat(registry.numEligible()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSelect_neverPicksAnyoneTwice() {
+    VaccineRegistry registry = new VaccineRegistry();
+    for (long id = 0; id < 100; id++) {
+      registry.register(id, 0, false);
+    }
+    Random random = new Random(42);
+    Set<Long> selected = new HashSet<>();
+
+    for (int round = 0; round < 10; round++) {
+      long[] picked = registry.select(15, random);
+      for (long id : picked) {
+        assertThat(selected.add(id)).isTrue();
+      }
+    }
+    assertThat(selected).hasSize(100);
+    assertThat(registry.select(15, random)).isEmpty();
+  }
+
+  @Test
+  public void testSetSuppressed_excludesUntilUnsuppressed() {
+    VaccineRegistry registry = new VaccineRegistry();
+    registry.register(1L, 0, true);
+    registry.register(2L, 0, false);
+    registry.setSuppressed(2L, true);
+
+    assertThat(registry.numEligible()).isEqualTo(0);
+    assertThat(registry.select(2, new Random(0))).isEmpty();
+
+    registry.setSuppressed(1L, false);
+    registry.setSuppressed(1L, false);
+    assertThat(registry.numEligible()).isEqualTo(1);
+    assertThat(asSet(registry.select(2, new Random(0)))).containsExactly(1L);
+  }
+
+  @Test
+  public void testRemove_dropsRegistration() {
+    VaccineRegistry registry = new VaccineRegistry();
+    registry.register(1L, 0, false);
+    registry.register(2L, 0, true);
+    registry.remove(1L);
+    registry.remove(2L);
+    registry.setSuppressed(2L, false);
+
+    assertThat(registry.numEligible()).isEqualTo(0);
+    assertThat(registry.select(2, new Random(0))).isEmpty();
+  }
+
+  private static Set<Long> asSet(long[] ids) {
+    Set<Long> set = new HashSet<>();
+    Arrays.stream(ids).forEach(set::add);
+    return set;
+  }
+}
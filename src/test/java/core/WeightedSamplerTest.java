@@ -0,0 +1,122 @@
+package core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Longs;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class WeightedSamplerTest {
+
+  @Test
+  public void testSample_sameAsScanningInOrder() {
+    Random random = new Random(5);
+    Map<Long, Double> weights = new LinkedHashMap<>();
+    for (long id = 0; id < 200; id++) {
+      weights.put(id * 7, 0.01 + 3 * random.nextDouble());
+    }
+    WeightedSampler sampler = WeightedSampler.of(weights);
+
+    Random samplerRandom = new Random(11);
+    long[] sampled =
+        sampler.sampleWithoutReplacement(50, bound -> samplerRandom.nextDouble() * bound);
+
+    Random scanRandom = new Random(11);
+    Map<Long, Double> remaining = new LinkedHashMap<>(weights);
+    double remainingWeight = weights.values().stream().reduce(0.0, Double::sum);
+    for (long id : sampled) {
+      double selection = scanRandom.nextDouble() * remainingWeight;
+      double sum = 0;
+      long expected = -1;
+      for (Map.Entry<Long, Double> entry : remaining.entrySet()) {
+        sum += entry.getValue();
+        if (selection < sum) {
+          expected = entry.getKey();
+          break;
+        }
+      }
+      assertThat(id).isEqualTo(expected);
+      remainingWeight -= remaining.remove(id);
+    }
+  }
+
+  @Test
+  public void testSample_distinctAndLeavesWeightsUnchanged() {
+    WeightedSampler sampler = new WeightedSampler();
+    for (long id = 0; id < 100; id++) {
+      sampler.put(id, 1.0);
+    }
+    Random random = new Random(1);
+
+    long[] first = sampler.sampleWithoutReplacement(100, bound -> random.nextDouble() * bound);
+    long[] second = sampler.sampleWithoutReplacement(10, bound -> random.nextDouble() * bound);
+
+    assertThat(first).hasLength(100);
+    assertThat(new HashSet<>(Longs.asList(first)))
+        .hasSize(100);
+    assertThat(second).hasLength(10);
+    assertThat(sampler.totalWeight()).isEqualTo(100.0);
+  }
+
+  @Test
+  public void testSample_followsWeights() {
+    WeightedSampler sampler = new WeightedSampler();
+    sampler.put(1, 1.0);
+    sampler.put(2, 3.0);
+    sampler.put(3, 0.0);
+    Random random = new Random(2);
+
+    int[] counts = new int[4];
+    for (int i = 0; i < 40000; i++) {
+      counts[(int) sampler.sampleWithoutReplacement(1, bound -> random.nextDouble() * bound)[0]]++;
+    }
+
+    assertThat(counts[3]).isEqualTo(0);
+    assertThat(counts[2] / (double) counts[1]).isWithin(0.2).of(3.0);
+  }
+
+  @Test
+  public void testPutAndRemove() {
+    WeightedSampler sampler = new WeightedSampler();
+    for (long id = 0; id < 40; id++) {
+      sampler.put(id, 1.0);
+    }
+    for (long id = 0; id < 40; id += 2) {
+      sampler.remove(id);
+    }
+    sampler.put(100, 5.0);
+    sampler.put(3, 0.0);
+
+    assertThat(sampler.size()).isEqualTo(21);
+    assertThat(sampler.totalWeight()).isEqualTo(24.0);
+    assertThat(sampler.asMap()).containsEntry(100L, 5.0);
+    assertThat(sampler.asMap()).doesNotContainKey(2L);
+    assertThat(sampler.remove(2)).isFalse();
+    Random random = new Random(3);
+    for (int i = 0; i < 100; i++) {
+      long id = sampler.sampleWithoutReplacement(1, bound -> random.nextDouble() * bound)[0];
+      assertThat(id % 2 == 1 || id == 100).isTrue();
+      assertThat(id).isNotEqualTo(3L);
+    }
+  }
+
+  @Test
+  public void testSample_stopsWhenOnlyZeroWeightsLeft() {
+    WeightedSampler sampler = WeightedSampler.of(ImmutableMap.of(1L, 1.0, 2L, 0.0));
+
+    assertThat(sampler.sampleWithoutReplacement(2, bound -> 0.5 * bound)).isEqualTo(new long[] {1});
+  }
+
+  @Test
+  public void testOf_returnsSamplerBehindView() {
+    WeightedSampler sampler = new WeightedSampler();
+    sampler.put(4, 2.0);
+
+    assertThat(WeightedSampler.of(sampler.asMap())).isSameAs(sampler);
+  }
+}